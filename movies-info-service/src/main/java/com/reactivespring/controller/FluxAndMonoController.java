@@ -11,18 +11,24 @@ import java.time.Duration;
 @RestController
 public class FluxAndMonoController {
 
+    // one timer for every /stream client; it starts with the first subscriber, stops with the last,
+    // and a late joiner immediately receives the current tick
+    private final Flux<Long> ticker = Flux.interval(Duration.ofSeconds(1))
+            .replay(1)
+            .refCount();
+
     @GetMapping("/flux")
     public Flux<Integer> flux() {
-        return Flux.just(1, 2, 3).log();
+        return Flux.just(1, 2, 3);
     }
 
     @GetMapping("/mono")
     public Mono<String> mono() {
-        return Mono.just("Hello World").log();
+        return Mono.just("Hello World");
     }
 
     @GetMapping(value = "/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
     public Flux<Long> stream() {
-        return Flux.interval(Duration.ofSeconds(1)).log();
+        return ticker.onBackpressureLatest();
     }
 }
@@ -1,31 +1,138 @@
 package com.reactivespring.controller;
 
 import com.reactivespring.domain.MovieInfo;
+import com.reactivespring.domain.MovieInfoBatchResult;
+import com.reactivespring.domain.MovieInfoChange;
+import com.reactivespring.domain.ProjectedMovieInfo;
+import com.reactivespring.service.MovieInfoBatchService;
 import com.reactivespring.service.MovieInfoService;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ResponseStatusException;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+
 @RestController
 @RequestMapping("/v1")
 public class MovieInfoController {
 
     private MovieInfoService movieInfoService;
 
-    public MovieInfoController(MovieInfoService movieInfoService) {
+    private MovieInfoBatchService movieInfoBatchService;
+
+    public MovieInfoController(MovieInfoService movieInfoService, MovieInfoBatchService movieInfoBatchService) {
         this.movieInfoService = movieInfoService;
+        this.movieInfoBatchService = movieInfoBatchService;
     }
 
+    // the body is only subscribed to when the ETag does not match If-None-Match
     @GetMapping("/movieinfos")
-    public Flux<MovieInfo> getAllMovieInfos() {
-        return movieInfoService.getAllMovieInfos();
+    public Mono<ResponseEntity<Flux<MovieInfo>>> getAllMovieInfos(@RequestParam(value = "limit", required = false) Integer limit,
+                                                                  @RequestParam(value = "after", required = false) String after,
+                                                                  @RequestParam(value = "fields", required = false) String fields) {
+        if (limit != null && limit < 1) {
+            return Mono.error(new ResponseStatusException(HttpStatus.BAD_REQUEST, "limit must be a positive value"));
+        }
+        var projection = projection(fields);
+        if (projection != null && projection.isEmpty()) {
+            return Mono.error(invalidFields());
+        }
+        var movieInfos = movieInfos(limit, after, projection);
+        return movieInfoService.getCollectionETag()
+                .map(eTag -> ResponseEntity.ok().eTag(withProjection(eTag, projection)).body(movieInfos));
+    }
+
+    @GetMapping(value = "/movieinfos", params = "ids")
+    public Flux<MovieInfo> getMovieInfosByIds(@RequestParam("ids") List<String> ids) {
+        if (ids.isEmpty() || ids.size() > MovieInfoService.MAX_PAGE_SIZE) {
+            return Flux.error(new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                    "ids must hold between 1 and " + MovieInfoService.MAX_PAGE_SIZE + " values"));
+        }
+        return movieInfoService.getMovieInfosByIds(new LinkedHashSet<>(ids));
     }
 
+    // takes the same limit, after and fields as the JSON variant, without the collection ETag
+    @GetMapping(value = "/movieinfos", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public Flux<MovieInfo> streamAllMovieInfos(@RequestParam(value = "limit", required = false) Integer limit,
+                                               @RequestParam(value = "after", required = false) String after,
+                                               @RequestParam(value = "fields", required = false) String fields) {
+        if (limit != null && limit < 1) {
+            return Flux.error(new ResponseStatusException(HttpStatus.BAD_REQUEST, "limit must be a positive value"));
+        }
+        var projection = projection(fields);
+        if (projection != null && projection.isEmpty()) {
+            return Flux.error(invalidFields());
+        }
+        if (limit == null && after == null && projection == null) {
+            return movieInfoService.streamAllMovieInfos();
+        }
+        return movieInfos(limit, after, projection);
+    }
+
+    @GetMapping(value = "/movieinfos/stream", produces = {MediaType.TEXT_EVENT_STREAM_VALUE, MediaType.APPLICATION_NDJSON_VALUE})
+    public Flux<MovieInfoChange> getMovieInfoChanges() {
+        return movieInfoService.getMovieInfoChanges();
+    }
+
+    @GetMapping("/movieinfos/search/year")
+    public Flux<MovieInfo> getMovieInfosByYear(@RequestParam(value = "from", defaultValue = "0") Integer fromYear,
+                                               @RequestParam(value = "to", defaultValue = "9999") Integer toYear) {
+        return movieInfoService.getMovieInfosByYear(fromYear, toYear);
+    }
+
+    @GetMapping("/movieinfos/search/name")
+    public Flux<MovieInfo> getMovieInfosByName(@RequestParam(value = "name", required = false) String name,
+                                               @RequestParam(value = "prefix", required = false) String prefix) {
+        if (name != null) {
+            return movieInfoService.getMovieInfosByName(name);
+        }
+        if (prefix != null && !prefix.isEmpty()) {
+            return movieInfoService.getMovieInfosByNamePrefix(prefix);
+        }
+        return Flux.error(new ResponseStatusException(HttpStatus.BAD_REQUEST, "name or prefix must be present"));
+    }
+
+    @GetMapping("/movieinfos/search/cast")
+    public Flux<MovieInfo> getMovieInfosByCast(@RequestParam("member") String castMember) {
+        return movieInfoService.getMovieInfosByCast(castMember);
+    }
 
     @GetMapping("/movieinfos/{id}")
-    public Mono<MovieInfo> getMovieInfoById(@PathVariable String id) {
-        return movieInfoService.getMovieInfoById(id);
+    public Mono<ResponseEntity<MovieInfo>> getMovieInfoById(@PathVariable String id,
+                                                            @RequestParam(value = "fields", required = false) String fields,
+                                                            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
+        var projection = projection(fields);
+        if (projection != null && projection.isEmpty()) {
+            return Mono.error(invalidFields());
+        }
+        var movieInfo = projection == null
+                ? movieInfoService.getMovieInfoById(id)
+                : movieInfoService.getMovieInfoById(id, projection).<MovieInfo>map(ProjectedMovieInfo::new);
+        var fullResponse = movieInfo
+                .map(found -> {
+                    var response = ResponseEntity.ok();
+                    if (found.getVersion() != null) {
+                        response.eTag(withProjection(eTag(found.getVersion()), projection));
+                    }
+                    return response.body(found);
+                });
+        if (ifNoneMatch == null) {
+            return fullResponse;
+        }
+        // a matching version is answered from the cache or a projection, the document itself is not read
+        return movieInfoService.getMovieInfoVersion(id)
+                .map(version -> withProjection(eTag(version), projection))
+                .filter(eTag -> matchesAny(ifNoneMatch, eTag))
+                .map(eTag -> ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(eTag).<MovieInfo>build())
+                .switchIfEmpty(fullResponse);
     }
 
     @PostMapping("/movieinfos")
@@ -34,15 +141,95 @@ public class MovieInfoController {
         return movieInfoService.addMovieInfo(movieInfo);
     }
 
+    @PostMapping(value = "/movieinfos/batch", consumes = MediaType.APPLICATION_NDJSON_VALUE, produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public Flux<MovieInfoBatchResult> addMovieInfos(@RequestBody Flux<MovieInfo> movieInfos) {
+        return movieInfoBatchService.addMovieInfos(movieInfos);
+    }
+
 
     @PutMapping("/movieinfos/{id}")
     public Mono<MovieInfo> updateMovieInfo(@RequestBody MovieInfo updatedMovieInfo, @PathVariable String id) {
         return movieInfoService.updateMovieInfo(updatedMovieInfo, id);
     }
 
+    @PatchMapping("/movieinfos/{id}")
+    public Mono<MovieInfo> patchMovieInfo(@RequestBody MovieInfo movieInfoPatch, @PathVariable String id) {
+        return movieInfoService.patchMovieInfo(movieInfoPatch, id);
+    }
+
     @DeleteMapping("/movieinfos/{id}")
     @ResponseStatus(HttpStatus.NO_CONTENT)
     public Mono<Void> deleteMovieInfo(@PathVariable String id) {
         return movieInfoService.deleteMovieInfo(id);
     }
+
+    private static String eTag(Long version) {
+        return "\"" + version + "\"";
+    }
+
+    // If-None-Match is "*" or a list of entity tags, each compared whole and weakly, so W/"1" matches "1"
+    static boolean matchesAny(String ifNoneMatch, String eTag) {
+        if (ifNoneMatch.trim().equals("*")) {
+            return true;
+        }
+        int start = 0;
+        boolean quoted = false;
+        for (int i = 0; i <= ifNoneMatch.length(); i++) {
+            if (i == ifNoneMatch.length() || (ifNoneMatch.charAt(i) == ',' && !quoted)) {
+                var candidate = ifNoneMatch.substring(start, i).trim();
+                if (candidate.startsWith("W/")) {
+                    candidate = candidate.substring(2);
+                }
+                if (candidate.equals(eTag)) {
+                    return true;
+                }
+                start = i + 1;
+            } else if (ifNoneMatch.charAt(i) == '"') {
+                quoted = !quoted;
+            }
+        }
+        return false;
+    }
+
+    // every movie info, or a keyset page of them once limit or after is given
+    private Flux<MovieInfo> movieInfos(Integer limit, String after, Set<String> projection) {
+        if (limit == null && after == null) {
+            return projection == null
+                    ? movieInfoService.getAllMovieInfos()
+                    : movieInfoService.getAllMovieInfos(projection).map(ProjectedMovieInfo::new);
+        }
+        var pageSize = limit == null ? MovieInfoService.MAX_PAGE_SIZE : limit;
+        return projection == null
+                ? movieInfoService.getMovieInfos(after, pageSize)
+                : movieInfoService.getMovieInfos(after, pageSize, projection).map(ProjectedMovieInfo::new);
+    }
+
+    // null when no projection was asked for, empty when it names an unknown field
+    private static Set<String> projection(String fields) {
+        if (fields == null) {
+            return null;
+        }
+        var properties = new TreeSet<String>();
+        for (var field : fields.split(",")) {
+            var property = MovieInfoService.PROJECTABLE_FIELDS.get(field.trim());
+            if (property == null) {
+                return Set.of();
+            }
+            properties.add(property);
+        }
+        return properties;
+    }
+
+    private static ResponseStatusException invalidFields() {
+        return new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                "fields must be a comma separated list of " + new TreeSet<>(MovieInfoService.PROJECTABLE_FIELDS.keySet()));
+    }
+
+    // each projection is its own representation, so it gets its own tag
+    private static String withProjection(String eTag, Set<String> projection) {
+        if (projection == null) {
+            return eTag;
+        }
+        return eTag.substring(0, eTag.length() - 1) + "-" + String.join(".", projection) + "\"";
+    }
 }
@@ -5,9 +5,12 @@ import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 import org.springframework.data.annotation.Id;
+import org.springframework.data.annotation.Version;
+import org.springframework.data.mongodb.core.index.Indexed;
 import org.springframework.data.mongodb.core.mapping.Document;
 import org.springframework.data.mongodb.core.mapping.Field;
 
+import java.time.Instant;
 import java.time.LocalDate;
 import java.util.List;
 
@@ -20,13 +23,25 @@ public class MovieInfo {
     @Id
     private String movieInfoId;
 
+    @Indexed
     private String name;
 
+    @Indexed
     private Integer year;
 
+    @Indexed
     private List<String> cast;
 
     @JsonProperty("release_date")
     private LocalDate releaseDate;
 
+    @Version
+    private Long version;
+
+    @Indexed
+    private Instant lastModified;
+
+    public MovieInfo(String movieInfoId, String name, Integer year, List<String> cast, LocalDate releaseDate) {
+        this(movieInfoId, name, year, cast, releaseDate, null, null);
+    }
 }
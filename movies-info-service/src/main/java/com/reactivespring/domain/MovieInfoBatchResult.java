@@ -0,0 +1,42 @@
+package com.reactivespring.domain;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class MovieInfoBatchResult {
+
+    public static final String CREATED = "CREATED";
+    public static final String FAILED = "FAILED";
+    public static final String SUMMARY = "SUMMARY";
+
+    private String status;
+
+    // position of the document in the uploaded stream
+    private Long index;
+
+    private String movieInfoId;
+
+    private String error;
+
+    private Long created;
+
+    private Long failed;
+
+    public static MovieInfoBatchResult created(long index, String movieInfoId) {
+        return new MovieInfoBatchResult(CREATED, index, movieInfoId, null, null, null);
+    }
+
+    public static MovieInfoBatchResult failed(long index, String movieInfoId, String error) {
+        return new MovieInfoBatchResult(FAILED, index, movieInfoId, error, null, null);
+    }
+
+    public static MovieInfoBatchResult summary(long created, long failed) {
+        return new MovieInfoBatchResult(SUMMARY, null, null, null, created, failed);
+    }
+}
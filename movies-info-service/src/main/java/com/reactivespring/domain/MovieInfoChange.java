@@ -0,0 +1,20 @@
+package com.reactivespring.domain;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+// one event of /v1/movieinfos/stream; a removed movie info only carries its movieInfoId
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class MovieInfoChange {
+
+    private ChangeType type;
+
+    private MovieInfo movieInfo;
+
+    public static MovieInfoChange removed(String movieInfoId) {
+        return new MovieInfoChange(ChangeType.REMOVED, new MovieInfo(movieInfoId, null, null, null, null));
+    }
+}
@@ -0,0 +1,13 @@
+package com.reactivespring.domain;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+// a movie info read with fields=, the fields left out of the projection are omitted instead of written as null
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class ProjectedMovieInfo extends MovieInfo {
+
+    public ProjectedMovieInfo(MovieInfo movieInfo) {
+        super(movieInfo.getMovieInfoId(), movieInfo.getName(), movieInfo.getYear(), movieInfo.getCast(),
+                movieInfo.getReleaseDate(), movieInfo.getVersion(), movieInfo.getLastModified());
+    }
+}
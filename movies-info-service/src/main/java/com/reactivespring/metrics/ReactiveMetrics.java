@@ -0,0 +1,124 @@
+package com.reactivespring.metrics;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.SignalType;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.DoubleSupplier;
+import java.util.logging.Level;
+
+@Component
+public class ReactiveMetrics {
+
+    public static final String SERVICE = "movieinfo.service";
+
+    public static final String REPOSITORY = "movieinfo.repository";
+
+    public static final String SIGNAL_LOG_CATEGORY = "com.reactivespring.signals";
+
+    private final MeterRegistry meterRegistry;
+
+    // share of service calls whose signals are logged at DEBUG under SIGNAL_LOG_CATEGORY, 0 disables it
+    private final double signalLogSampleRate;
+
+    private final DoubleSupplier random;
+
+    private final Map<String, AtomicInteger> inFlight = new ConcurrentHashMap<>();
+
+    @Autowired
+    public ReactiveMetrics(MeterRegistry meterRegistry,
+                           @Value("${movieinfo.debug.signal-log-sample-rate:0.0}") double signalLogSampleRate) {
+        this(meterRegistry, signalLogSampleRate, () -> ThreadLocalRandom.current().nextDouble());
+    }
+
+    ReactiveMetrics(MeterRegistry meterRegistry, double signalLogSampleRate, DoubleSupplier random) {
+        this.meterRegistry = meterRegistry;
+        this.signalLogSampleRate = signalLogSampleRate;
+        this.random = random;
+    }
+
+    public <T> Mono<T> service(String operation, Mono<T> mono) {
+        return Mono.defer(() -> sampled(operation) ? mono.log(SIGNAL_LOG_CATEGORY + "." + operation, Level.FINE) : mono)
+                .transform(source -> instrument(SERVICE, operation, source));
+    }
+
+    public <T> Flux<T> service(String operation, Flux<T> flux) {
+        return Flux.defer(() -> sampled(operation) ? flux.log(SIGNAL_LOG_CATEGORY + "." + operation, Level.FINE) : flux)
+                .transform(source -> instrument(SERVICE, operation, source));
+    }
+
+    public <T> Mono<T> repository(String operation, Mono<T> mono) {
+        return instrument(REPOSITORY, operation, mono);
+    }
+
+    public <T> Flux<T> repository(String operation, Flux<T> flux) {
+        return instrument(REPOSITORY, operation, flux);
+    }
+
+    private <T> Mono<T> instrument(String component, String operation, Mono<T> mono) {
+        return Mono.defer(() -> {
+            var sample = start(component, operation);
+            return mono
+                    .doOnError(ex -> recordError(component, operation, ex))
+                    .doFinally(signalType -> stop(component, operation, sample, signalType));
+        });
+    }
+
+    private <T> Flux<T> instrument(String component, String operation, Flux<T> flux) {
+        return Flux.defer(() -> {
+            var sample = start(component, operation);
+            return flux
+                    .doOnError(ex -> recordError(component, operation, ex))
+                    .doFinally(signalType -> stop(component, operation, sample, signalType));
+        });
+    }
+
+    private boolean sampled(String operation) {
+        return signalLogSampleRate > 0 && random.getAsDouble() < signalLogSampleRate;
+    }
+
+    private Timer.Sample start(String component, String operation) {
+        inFlight(component, operation).incrementAndGet();
+        return Timer.start(meterRegistry);
+    }
+
+    private void stop(String component, String operation, Timer.Sample sample, SignalType signalType) {
+        inFlight(component, operation).decrementAndGet();
+        sample.stop(Timer.builder(component + ".calls")
+                .tag("operation", operation)
+                .tag("outcome", outcome(signalType))
+                .publishPercentileHistogram()
+                .register(meterRegistry));
+    }
+
+    private void recordError(String component, String operation, Throwable ex) {
+        meterRegistry.counter(component + ".errors", "operation", operation, "exception", ex.getClass().getSimpleName())
+                .increment();
+    }
+
+    private AtomicInteger inFlight(String component, String operation) {
+        return inFlight.computeIfAbsent(component + "/" + operation,
+                key -> meterRegistry.gauge(component + ".inflight", Tags.of("operation", operation), new AtomicInteger()));
+    }
+
+    private static String outcome(SignalType signalType) {
+        switch (signalType) {
+            case ON_COMPLETE:
+                return "success";
+            case ON_ERROR:
+                return "error";
+            default:
+                return "cancelled";
+        }
+    }
+}
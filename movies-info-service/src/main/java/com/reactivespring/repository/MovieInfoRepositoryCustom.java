@@ -0,0 +1,36 @@
+package com.reactivespring.repository;
+
+import com.reactivespring.domain.MovieInfo;
+import org.springframework.data.mongodb.core.query.Update;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+public interface MovieInfoRepositoryCustom {
+
+    Mono<MovieInfo> findAndModifyById(String id, Long expectedVersion, Update update);
+
+    Flux<MovieInfo> findByYearRange(Integer fromYear, Integer toYear);
+
+    Flux<MovieInfo> findByName(String name);
+
+    // expects an anchored pattern such as ^Batman so the name index can bound the scan
+    Flux<MovieInfo> findByNameMatching(String pattern);
+
+    Flux<MovieInfo> findByCast(String castMember);
+
+    Mono<Map<Integer, String>> insertUnordered(List<MovieInfo> movieInfos);
+
+    Flux<String> ensureIndexes();
+
+    Mono<Long> incrementCollectionVersion();
+
+    Mono<Long> findCollectionVersion();
+
+    Mono<MovieInfo> findProjectedById(String id, Collection<String> fields);
+
+    Flux<MovieInfo> findProjected(String after, int limit, Collection<String> fields);
+}
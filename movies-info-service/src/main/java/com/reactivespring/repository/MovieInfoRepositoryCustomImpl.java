@@ -0,0 +1,165 @@
+package com.reactivespring.repository;
+
+import com.mongodb.MongoBulkWriteException;
+import com.mongodb.bulk.BulkWriteError;
+import com.mongodb.client.model.InsertManyOptions;
+import com.reactivespring.domain.MovieInfo;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.index.MongoPersistentEntityIndexResolver;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+public class MovieInfoRepositoryCustomImpl implements MovieInfoRepositoryCustom {
+
+    private static final String COLLECTION_VERSIONS = "collectionVersions";
+
+    private ReactiveMongoTemplate reactiveMongoTemplate;
+
+    public MovieInfoRepositoryCustomImpl(ReactiveMongoTemplate reactiveMongoTemplate) {
+        this.reactiveMongoTemplate = reactiveMongoTemplate;
+    }
+
+    // single findAndModify round trip; empty when the id is unknown or the expected version is stale
+    @Override
+    public Mono<MovieInfo> findAndModifyById(String id, Long expectedVersion, Update update) {
+        var criteria = Criteria.where("movieInfoId").is(id);
+        if (expectedVersion != null) {
+            criteria = criteria.and("version").is(expectedVersion);
+        }
+        return reactiveMongoTemplate.findAndModify(Query.query(criteria),
+                update.inc("version", 1),
+                FindAndModifyOptions.options().returnNew(true),
+                MovieInfo.class);
+    }
+
+    @Override
+    public Flux<MovieInfo> findByYearRange(Integer fromYear, Integer toYear) {
+        return reactiveMongoTemplate.find(byYearRange(fromYear, toYear), MovieInfo.class);
+    }
+
+    @Override
+    public Flux<MovieInfo> findByName(String name) {
+        return reactiveMongoTemplate.find(byName(name), MovieInfo.class);
+    }
+
+    @Override
+    public Flux<MovieInfo> findByNameMatching(String pattern) {
+        return reactiveMongoTemplate.find(byNameMatching(pattern), MovieInfo.class);
+    }
+
+    @Override
+    public Flux<MovieInfo> findByCast(String castMember) {
+        return reactiveMongoTemplate.find(byCast(castMember), MovieInfo.class);
+    }
+
+    // the queries of the finders above, also explained by the index tests so they check what is actually sent
+    static Query byYearRange(Integer fromYear, Integer toYear) {
+        return Query.query(Criteria.where("year").gte(fromYear).lte(toYear));
+    }
+
+    static Query byName(String name) {
+        return Query.query(Criteria.where("name").is(name));
+    }
+
+    static Query byNameMatching(String pattern) {
+        return Query.query(Criteria.where("name").regex(pattern));
+    }
+
+    static Query byCast(String castMember) {
+        return Query.query(Criteria.where("cast").is(castMember));
+    }
+
+    // one unordered insertMany per batch; the result maps failed positions in the batch to their error
+    @Override
+    public Mono<Map<Integer, String>> insertUnordered(List<MovieInfo> movieInfos) {
+        var now = Instant.now();
+        var documents = movieInfos.stream()
+                .map(movieInfo -> {
+                    if (movieInfo.getMovieInfoId() == null) {
+                        movieInfo.setMovieInfoId(ObjectId.get().toHexString());
+                    }
+                    movieInfo.setVersion(0L);
+                    movieInfo.setLastModified(now);
+                    var document = new Document();
+                    reactiveMongoTemplate.getConverter().write(movieInfo, document);
+                    return document;
+                })
+                .collect(Collectors.toList());
+        return reactiveMongoTemplate.getCollection(reactiveMongoTemplate.getCollectionName(MovieInfo.class))
+                .flatMap(collection -> Mono.from(collection.insertMany(documents, new InsertManyOptions().ordered(false))))
+                .map(insertManyResult -> Map.<Integer, String>of())
+                .onErrorResume(MongoBulkWriteException.class, ex -> Mono.just(ex.getWriteErrors().stream()
+                        .collect(Collectors.toMap(BulkWriteError::getIndex, BulkWriteError::getMessage))));
+    }
+
+    // creates the indexes declared with @Indexed on MovieInfo, a no-op for the ones that already exist
+    @Override
+    public Flux<String> ensureIndexes() {
+        var indexOperations = reactiveMongoTemplate.indexOps(MovieInfo.class);
+        var indexResolver = new MongoPersistentEntityIndexResolver(reactiveMongoTemplate.getConverter().getMappingContext());
+        return Flux.fromIterable(indexResolver.resolveIndexFor(MovieInfo.class))
+                .concatMap(indexOperations::ensureIndex);
+    }
+
+    // one $inc on a single counter document per collection, created on the first write
+    @Override
+    public Mono<Long> incrementCollectionVersion() {
+        return reactiveMongoTemplate.findAndModify(byCollection(),
+                        new Update().inc("version", 1),
+                        FindAndModifyOptions.options().returnNew(true).upsert(true),
+                        Document.class,
+                        COLLECTION_VERSIONS)
+                .map(MovieInfoRepositoryCustomImpl::version);
+    }
+
+    // 0 until the first write
+    @Override
+    public Mono<Long> findCollectionVersion() {
+        return reactiveMongoTemplate.findOne(byCollection(), Document.class, COLLECTION_VERSIONS)
+                .map(MovieInfoRepositoryCustomImpl::version)
+                .defaultIfEmpty(0L);
+    }
+
+    private Query byCollection() {
+        return Query.query(Criteria.where("_id").is(reactiveMongoTemplate.getCollectionName(MovieInfo.class)));
+    }
+
+    private static long version(Document document) {
+        return ((Number) document.get("version")).longValue();
+    }
+
+    // only the listed fields leave the database; movieInfoId and version are always returned
+    @Override
+    public Mono<MovieInfo> findProjectedById(String id, Collection<String> fields) {
+        return reactiveMongoTemplate.findOne(project(Query.query(Criteria.where("movieInfoId").is(id)), fields), MovieInfo.class);
+    }
+
+    // keyset page ordered by movieInfoId like findByMovieInfoIdGreaterThan; a limit of 0 returns everything
+    @Override
+    public Flux<MovieInfo> findProjected(String after, int limit, Collection<String> fields) {
+        var query = after == null
+                ? new Query()
+                : Query.query(Criteria.where("movieInfoId").gt(after));
+        query.with(Sort.by("movieInfoId")).limit(limit);
+        return reactiveMongoTemplate.find(project(query, fields), MovieInfo.class);
+    }
+
+    private static Query project(Query query, Collection<String> fields) {
+        query.fields().include("version");
+        fields.forEach(field -> query.fields().include(field));
+        return query;
+    }
+}
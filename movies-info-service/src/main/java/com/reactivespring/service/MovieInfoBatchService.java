@@ -0,0 +1,122 @@
+package com.reactivespring.service;
+
+import com.reactivespring.domain.ChangeType;
+import com.reactivespring.domain.MovieInfo;
+import com.reactivespring.domain.MovieInfoBatchResult;
+import com.reactivespring.metrics.ReactiveMetrics;
+import com.reactivespring.repository.MovieInfoRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.util.function.Tuple2;
+import reactor.util.function.Tuples;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+@Service
+public class MovieInfoBatchService {
+
+    // merged into the upload to close a batch on time, never written
+    private static final Tuple2<Long, MovieInfo> TICK = Tuples.of(-1L, new MovieInfo());
+
+    private MovieInfoRepository movieInfoRepository;
+
+    private MovieInfoCache movieInfoCache;
+
+    private MovieInfoChangeFeed movieInfoChangeFeed;
+
+    private ReactiveMetrics metrics;
+
+    private int maxBatchSize;
+
+    private Duration maxBatchWait;
+
+    public MovieInfoBatchService(MovieInfoRepository movieInfoRepository,
+                                 MovieInfoCache movieInfoCache,
+                                 MovieInfoChangeFeed movieInfoChangeFeed,
+                                 ReactiveMetrics metrics,
+                                 @Value("${movieinfo.batch.max-size:500}") int maxBatchSize,
+                                 @Value("${movieinfo.batch.max-wait:1s}") Duration maxBatchWait) {
+        this.movieInfoRepository = movieInfoRepository;
+        this.movieInfoCache = movieInfoCache;
+        this.movieInfoChangeFeed = movieInfoChangeFeed;
+        this.metrics = metrics;
+        this.maxBatchSize = maxBatchSize;
+        this.maxBatchWait = maxBatchWait;
+    }
+
+    // one result per uploaded document followed by a summary; at most one batch is written at a time,
+    // so a slow database stops demand on the request body instead of buffering it
+    public Flux<MovieInfoBatchResult> addMovieInfos(Flux<MovieInfo> movieInfos) {
+        return metrics.service("addMovieInfos", Flux.defer(() -> {
+            var created = new AtomicLong();
+            var failed = new AtomicLong();
+            return batches(movieInfos.index())
+                    .concatMap(this::insertBatch, 1)
+                    .doOnNext(result -> (MovieInfoBatchResult.CREATED.equals(result.getStatus()) ? created : failed).incrementAndGet())
+                    .concatWith(Mono.fromSupplier(() -> MovieInfoBatchResult.summary(created.get(), failed.get())));
+        }));
+    }
+
+    // closes a batch on count, on a tick every maxBatchWait and at the end of the upload. The ticks come from
+    // a timer, so a stalled upload still gets the documents it sent so far written and answered.
+    // Ticks that arrive while a batch is being written are dropped, the next one closes the batch
+    private Flux<List<Tuple2<Long, MovieInfo>>> batches(Flux<Tuple2<Long, MovieInfo>> indexedMovieInfos) {
+        return indexedMovieInfos.publish(upload -> {
+            var batchSize = new AtomicInteger();
+            var ticks = Flux.interval(maxBatchWait)
+                    .onBackpressureDrop()
+                    .map(tick -> TICK)
+                    .takeUntilOther(upload.ignoreElements());
+            return Flux.merge(upload, ticks)
+                    .bufferUntil(element -> {
+                        if (element != TICK && batchSize.incrementAndGet() < maxBatchSize) {
+                            return false;
+                        }
+                        batchSize.set(0);
+                        return true;
+                    })
+                    .doOnNext(batch -> batch.removeIf(element -> element == TICK))
+                    .filter(batch -> !batch.isEmpty());
+        });
+    }
+
+    private Flux<MovieInfoBatchResult> insertBatch(List<Tuple2<Long, MovieInfo>> batch) {
+        var movieInfos = batch.stream()
+                .map(Tuple2::getT2)
+                .collect(Collectors.toList());
+        return metrics.repository("insertUnordered", movieInfoRepository.insertUnordered(movieInfos))
+                .onErrorResume(ex -> Mono.just(IntStream.range(0, batch.size())
+                        .boxed()
+                        .collect(Collectors.toMap(i -> i, i -> String.valueOf(ex.getMessage())))))
+                // one collection version per batch that inserted anything
+                .flatMap(failures -> failures.size() < batch.size()
+                        ? metrics.repository("incrementCollectionVersion", movieInfoRepository.incrementCollectionVersion()).thenReturn(failures)
+                        : Mono.just(failures))
+                .flatMapIterable(failures -> toResults(batch, failures));
+    }
+
+    private List<MovieInfoBatchResult> toResults(List<Tuple2<Long, MovieInfo>> batch, Map<Integer, String> failures) {
+        return IntStream.range(0, batch.size())
+                .mapToObj(i -> {
+                    var index = batch.get(i).getT1();
+                    var movieInfo = batch.get(i).getT2();
+                    var movieInfoId = movieInfo.getMovieInfoId();
+                    if (failures.containsKey(i)) {
+                        return MovieInfoBatchResult.failed(index, movieInfoId, failures.get(i));
+                    }
+                    // drops a cached "not found" for ids that exist now
+                    movieInfoCache.invalidate(movieInfoId);
+                    movieInfoChangeFeed.publish(ChangeType.ADDED, movieInfo);
+                    return MovieInfoBatchResult.created(index, movieInfoId);
+                })
+                .collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,82 @@
+package com.reactivespring.service;
+
+import com.github.benmanes.caffeine.cache.AsyncCache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.reactivespring.domain.MovieInfo;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
+
+@Component
+public class MovieInfoCache {
+
+    // Optional.empty() marks a cached "not found" so repeated misses do not hit Mongo
+    private final AsyncCache<String, Optional<MovieInfo>> cache;
+
+    public MovieInfoCache(@Value("${movieinfo.cache.maximum-size:10000}") long maximumSize,
+                          @Value("${movieinfo.cache.ttl:5m}") Duration ttl,
+                          @Value("${movieinfo.cache.negative-ttl:5s}") Duration negativeTtl,
+                          MeterRegistry meterRegistry) {
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfter(new Expiry<String, Optional<MovieInfo>>() {
+                    @Override
+                    public long expireAfterCreate(String id, Optional<MovieInfo> movieInfo, long currentTime) {
+                        return movieInfo.isPresent() ? ttl.toNanos() : negativeTtl.toNanos();
+                    }
+
+                    @Override
+                    public long expireAfterUpdate(String id, Optional<MovieInfo> movieInfo, long currentTime, long currentDuration) {
+                        return expireAfterCreate(id, movieInfo, currentTime);
+                    }
+
+                    @Override
+                    public long expireAfterRead(String id, Optional<MovieInfo> movieInfo, long currentTime, long currentDuration) {
+                        return currentDuration;
+                    }
+                })
+                .recordStats()
+                .buildAsync();
+        CaffeineCacheMetrics.monitor(meterRegistry, cache.synchronous(), "movieInfo");
+    }
+
+    // concurrent misses for the same id join the future of the first one
+    public Mono<MovieInfo> get(String id, Function<String, Mono<MovieInfo>> loader) {
+        return Mono.defer(() -> Mono.fromCompletionStage(cache.get(id, (key, executor) -> loader.apply(key)
+                                .map(Optional::of)
+                                .defaultIfEmpty(Optional.empty())
+                                .toFuture())
+                        // a cancelled subscriber must not cancel the load other callers are waiting on
+                        .minimalCompletionStage()))
+                .flatMap(movieInfo -> Mono.justOrEmpty(movieInfo));
+    }
+
+    // never loads; empty when the id is not cached or its load has not completed yet
+    public Optional<MovieInfo> getIfCached(String id) {
+        var future = cache.getIfPresent(id);
+        if (future == null || !future.isDone() || future.isCompletedExceptionally()) {
+            return Optional.empty();
+        }
+        return future.join();
+    }
+
+    public void put(MovieInfo movieInfo) {
+        cache.put(movieInfo.getMovieInfoId(), CompletableFuture.completedFuture(Optional.of(movieInfo)));
+    }
+
+    public void invalidate(String id) {
+        cache.synchronous().invalidate(id);
+    }
+
+    public void invalidateAll() {
+        cache.synchronous().invalidateAll();
+    }
+}
@@ -0,0 +1,118 @@
+package com.reactivespring.service;
+
+import com.reactivespring.domain.ChangeType;
+import com.reactivespring.domain.MovieInfo;
+import com.reactivespring.domain.MovieInfoChange;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import reactor.core.Disposable;
+import reactor.core.publisher.BufferOverflowStrategy;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Sinks;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+import reactor.util.concurrent.Queues;
+
+import javax.annotation.PreDestroy;
+
+@Component
+@Slf4j
+public class MovieInfoChangeFeed {
+
+    public enum OverflowPolicy {
+        DROP_OLDEST,
+        DISCONNECT
+    }
+
+    // every subscriber requests unbounded from the sink through its own bounded buffer,
+    // so one slow subscriber never holds back the others
+    private final Sinks.Many<MovieInfoChange> sink = Sinks.many().multicast().directBestEffort();
+
+    // writers only enqueue here; the feed thread hands each change to the subscribers, so their buffers
+    // and the SSE or NDJSON encoding never run on the event loop of a save or on the batch importer
+    private final Sinks.Many<MovieInfoChange> handoff;
+
+    private final Scheduler scheduler;
+
+    private final Disposable dispatcher;
+
+    private final int bufferSize;
+
+    private final OverflowPolicy overflowPolicy;
+
+    private final Counter droppedEvents;
+
+    private final Counter disconnectedSubscribers;
+
+    @Autowired
+    public MovieInfoChangeFeed(@Value("${movieinfo.stream.buffer-size:256}") int bufferSize,
+                               @Value("${movieinfo.stream.overflow-policy:DROP_OLDEST}") OverflowPolicy overflowPolicy,
+                               MeterRegistry meterRegistry) {
+        this(bufferSize, overflowPolicy, meterRegistry, Schedulers.newSingle("movieinfo-change-feed"));
+    }
+
+    MovieInfoChangeFeed(int bufferSize, OverflowPolicy overflowPolicy, MeterRegistry meterRegistry, Scheduler scheduler) {
+        this.bufferSize = bufferSize;
+        this.overflowPolicy = overflowPolicy;
+        this.droppedEvents = meterRegistry.counter("movieinfo.stream.dropped");
+        this.disconnectedSubscribers = meterRegistry.counter("movieinfo.stream.disconnected");
+        Gauge.builder("movieinfo.stream.subscribers", sink, Sinks.Many::currentSubscriberCount)
+                .register(meterRegistry);
+        this.handoff = Sinks.many().unicast().onBackpressureBuffer(Queues.<MovieInfoChange>get(bufferSize).get());
+        this.scheduler = scheduler;
+        this.dispatcher = handoff.asFlux()
+                .publishOn(scheduler, bufferSize)
+                .subscribe(this::dispatch);
+    }
+
+    @PreDestroy
+    public void stop() {
+        dispatcher.dispose();
+        scheduler.dispose();
+    }
+
+    public void publish(ChangeType type, MovieInfo movieInfo) {
+        publish(new MovieInfoChange(type, movieInfo));
+    }
+
+    // movie infos are saved on whichever event loop the request came in on, and by the batch importer;
+    // the lock is only held for one offer to the bounded handoff queue, whatever the number of subscribers
+    public void publish(MovieInfoChange change) {
+        Sinks.EmitResult result;
+        synchronized (handoff) {
+            result = handoff.tryEmitNext(change);
+        }
+        if (result == Sinks.EmitResult.FAIL_OVERFLOW) {
+            // the feed thread is bufferSize changes behind
+            droppedEvents.increment();
+        } else if (result.isFailure()) {
+            // the save already happened, a change that cannot be published is dropped rather than failing it
+            log.warn("Movie info {} was not published to the change feed : {}", change.getMovieInfo().getMovieInfoId(), result);
+        }
+    }
+
+    // only ever called on the feed thread, so the sink is never emitted to concurrently
+    private void dispatch(MovieInfoChange change) {
+        var result = sink.tryEmitNext(change);
+        if (result == Sinks.EmitResult.FAIL_OVERFLOW) {
+            // no subscriber had demand left
+            droppedEvents.increment();
+        } else if (result.isFailure() && result != Sinks.EmitResult.FAIL_ZERO_SUBSCRIBER) {
+            log.warn("Movie info {} was not published to the change feed : {}", change.getMovieInfo().getMovieInfoId(), result);
+        }
+    }
+
+    public Flux<MovieInfoChange> stream() {
+        if (overflowPolicy == OverflowPolicy.DISCONNECT) {
+            return sink.asFlux()
+                    .onBackpressureBuffer(bufferSize, change -> disconnectedSubscribers.increment());
+        }
+        return sink.asFlux()
+                .onBackpressureBuffer(bufferSize, change -> droppedEvents.increment(), BufferOverflowStrategy.DROP_OLDEST);
+    }
+}
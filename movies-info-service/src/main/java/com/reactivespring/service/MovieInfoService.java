@@ -1,46 +1,214 @@
 package com.reactivespring.service;
 
+import com.reactivespring.domain.ChangeType;
 import com.reactivespring.domain.MovieInfo;
+import com.reactivespring.domain.MovieInfoChange;
+import com.reactivespring.exception.MovieInfoConflictException;
+import com.reactivespring.metrics.ReactiveMetrics;
 import com.reactivespring.repository.MovieInfoRepository;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.query.Update;
 import org.springframework.stereotype.Service;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
+import java.time.Instant;
+import java.util.Collection;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Pattern;
+
 @Service
 public class MovieInfoService {
 
+    public static final int MAX_PAGE_SIZE = 100;
+
+    // JSON name to MovieInfo property for the fields a caller may project on
+    public static final Map<String, String> PROJECTABLE_FIELDS = Map.of(
+            "name", "name",
+            "year", "year",
+            "cast", "cast",
+            "release_date", "releaseDate",
+            "lastModified", "lastModified");
+
+    private static final Pattern REGEX_METACHARACTERS = Pattern.compile("[\\\\^$.|?*+()\\[\\]{}]");
+
     private MovieInfoRepository movieInfoRepository;
 
-    public MovieInfoService(MovieInfoRepository movieInfoRepository) {
+    private MovieInfoCache movieInfoCache;
+
+    private MovieInfoChangeFeed movieInfoChangeFeed;
+
+    private ReactiveMetrics metrics;
+
+    public MovieInfoService(MovieInfoRepository movieInfoRepository,
+                            MovieInfoCache movieInfoCache,
+                            MovieInfoChangeFeed movieInfoChangeFeed,
+                            ReactiveMetrics metrics) {
         this.movieInfoRepository = movieInfoRepository;
+        this.movieInfoCache = movieInfoCache;
+        this.movieInfoChangeFeed = movieInfoChangeFeed;
+        this.metrics = metrics;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void ensureIndexes() {
+        movieInfoRepository.ensureIndexes().blockLast();
     }
 
     public Mono<MovieInfo> addMovieInfo(MovieInfo movieInfo) {
-        return movieInfoRepository.save(movieInfo).log();
+        movieInfo.setLastModified(Instant.now());
+        return metrics.service("addMovieInfo", metrics.repository("save", movieInfoRepository.save(movieInfo))
+                .flatMap(saved -> incrementCollectionVersion().thenReturn(saved))
+                .doOnNext(movieInfoCache::put)
+                .doOnNext(saved -> movieInfoChangeFeed.publish(ChangeType.ADDED, saved)));
     }
 
     public Flux<MovieInfo> getAllMovieInfos() {
-        return movieInfoRepository.findAll().log();
+        return metrics.service("getAllMovieInfos", metrics.repository("findAll", movieInfoRepository.findAll()));
+    }
+
+    // keyset page ordered by movieInfoId; pass the last id of the previous page as "after"
+    public Flux<MovieInfo> getMovieInfos(String after, int limit) {
+        var page = PageRequest.of(0, Math.min(limit, MAX_PAGE_SIZE), Sort.by("movieInfoId"));
+        if (after == null) {
+            return metrics.service("getMovieInfos", metrics.repository("findAllBy", movieInfoRepository.findAllBy(page)));
+        }
+        return metrics.service("getMovieInfos",
+                metrics.repository("findByMovieInfoIdGreaterThan", movieInfoRepository.findByMovieInfoIdGreaterThan(after, page)));
+    }
+
+    public Flux<MovieInfo> getAllMovieInfos(Set<String> fields) {
+        return metrics.service("getAllMovieInfos", metrics.repository("findProjected", movieInfoRepository.findProjected(null, 0, fields)));
+    }
+
+    public Flux<MovieInfo> getMovieInfos(String after, int limit, Set<String> fields) {
+        return metrics.service("getMovieInfos",
+                metrics.repository("findProjected", movieInfoRepository.findProjected(after, Math.min(limit, MAX_PAGE_SIZE), fields)));
+    }
+
+    // emitted as the cursor produces documents, demand is driven by the subscriber
+    public Flux<MovieInfo> streamAllMovieInfos() {
+        return metrics.service("streamAllMovieInfos", metrics.repository("findAll", movieInfoRepository.findAll()));
+    }
+
+    public Flux<MovieInfoChange> getMovieInfoChanges() {
+        return movieInfoChangeFeed.stream();
+    }
+
+    public Flux<MovieInfo> getMovieInfosByYear(Integer fromYear, Integer toYear) {
+        return metrics.service("getMovieInfosByYear",
+                metrics.repository("findByYearRange", movieInfoRepository.findByYearRange(fromYear, toYear)));
+    }
+
+    public Flux<MovieInfo> getMovieInfosByName(String name) {
+        return metrics.service("getMovieInfosByName", metrics.repository("findByName", movieInfoRepository.findByName(name)));
+    }
+
+    public Flux<MovieInfo> getMovieInfosByNamePrefix(String prefix) {
+        var escapedPrefix = REGEX_METACHARACTERS.matcher(prefix).replaceAll("\\\\$0");
+        return metrics.service("getMovieInfosByNamePrefix",
+                metrics.repository("findByNameMatching", movieInfoRepository.findByNameMatching("^" + escapedPrefix)));
+    }
+
+    public Flux<MovieInfo> getMovieInfosByCast(String castMember) {
+        return metrics.service("getMovieInfosByCast", metrics.repository("findByCast", movieInfoRepository.findByCast(castMember)));
     }
 
     public Mono<MovieInfo> getMovieInfoById(String id) {
-        return movieInfoRepository.findById(id).log();
+        return metrics.service("getMovieInfoById", movieInfoCache.get(id,
+                movieInfoId -> metrics.repository("findById", movieInfoRepository.findById(movieInfoId))));
+    }
+
+    // one $in query for a batch of ids, ids without a document are left out of the result
+    public Flux<MovieInfo> getMovieInfosByIds(Collection<String> ids) {
+        return metrics.service("getMovieInfosByIds", metrics.repository("findAllById", movieInfoRepository.findAllById(ids)));
+    }
+
+    // bypasses the cache, which only holds full documents
+    public Mono<MovieInfo> getMovieInfoById(String id, Set<String> fields) {
+        return metrics.service("getMovieInfoById",
+                metrics.repository("findProjectedById", movieInfoRepository.findProjectedById(id, fields)));
+    }
+
+    // answers conditional requests without reading the full document
+    public Mono<Long> getMovieInfoVersion(String id) {
+        var cached = movieInfoCache.getIfCached(id);
+        if (cached.isPresent()) {
+            return Mono.justOrEmpty(cached.get().getVersion());
+        }
+        return metrics.service("getMovieInfoVersion", metrics.repository("findVersionById", movieInfoRepository.findVersionById(id))
+                .flatMap(movieInfo -> Mono.justOrEmpty(movieInfo.getVersion())));
+    }
+
+    // the collection version is incremented by every insert, update and delete made through this service,
+    // however close together they are; writes made directly in the database do not change it
+    public Mono<String> getCollectionETag() {
+        return metrics.service("getCollectionETag",
+                metrics.repository("findCollectionVersion", movieInfoRepository.findCollectionVersion())
+                        .map(version -> "\"" + version + "\""));
+    }
+
+    // after the write, so a reader may see the new documents under the old ETag but never the reverse
+    private Mono<Long> incrementCollectionVersion() {
+        return metrics.repository("incrementCollectionVersion", movieInfoRepository.incrementCollectionVersion());
     }
 
     public Mono<MovieInfo> updateMovieInfo(MovieInfo updatedMovieInfo, String id) {
-        return movieInfoRepository.findById(id)
-                .flatMap(movieInfo -> {
-                    movieInfo.setCast(updatedMovieInfo.getCast());
-                    movieInfo.setName(updatedMovieInfo.getName());
-                    movieInfo.setYear(updatedMovieInfo.getYear());
-                    movieInfo.setReleaseDate(updatedMovieInfo.getReleaseDate());
-                    return movieInfoRepository.save(movieInfo);
-                });
+        var update = new Update()
+                .set("name", updatedMovieInfo.getName())
+                .set("year", updatedMovieInfo.getYear())
+                .set("cast", updatedMovieInfo.getCast())
+                .set("releaseDate", updatedMovieInfo.getReleaseDate());
+        return metrics.service("updateMovieInfo", modifyMovieInfo(id, updatedMovieInfo.getVersion(), update));
+    }
 
+    public Mono<MovieInfo> patchMovieInfo(MovieInfo movieInfoPatch, String id) {
+        var update = new Update();
+        if (movieInfoPatch.getName() != null) {
+            update.set("name", movieInfoPatch.getName());
+        }
+        if (movieInfoPatch.getYear() != null) {
+            update.set("year", movieInfoPatch.getYear());
+        }
+        if (movieInfoPatch.getCast() != null) {
+            update.set("cast", movieInfoPatch.getCast());
+        }
+        if (movieInfoPatch.getReleaseDate() != null) {
+            update.set("releaseDate", movieInfoPatch.getReleaseDate());
+        }
+        if (update.getUpdateObject().isEmpty()) {
+            return getMovieInfoById(id);
+        }
+        return metrics.service("patchMovieInfo", modifyMovieInfo(id, movieInfoPatch.getVersion(), update));
+    }
 
+    private Mono<MovieInfo> modifyMovieInfo(String id, Long expectedVersion, Update update) {
+        update.set("lastModified", Instant.now());
+        return metrics.repository("findAndModifyById", movieInfoRepository.findAndModifyById(id, expectedVersion, update))
+                .switchIfEmpty(Mono.defer(() -> {
+                    if (expectedVersion == null) {
+                        return Mono.empty();
+                    }
+                    // only a failed conditional update pays for the second round trip
+                    return metrics.repository("existsById", movieInfoRepository.existsById(id))
+                            .flatMap(exists -> exists
+                                    ? Mono.<MovieInfo>error(new MovieInfoConflictException("MovieInfo " + id + " was modified concurrently, expected version " + expectedVersion))
+                                    : Mono.<MovieInfo>empty());
+                }))
+                .flatMap(modified -> incrementCollectionVersion().thenReturn(modified))
+                .doOnNext(movieInfoCache::put)
+                .doOnNext(modified -> movieInfoChangeFeed.publish(ChangeType.UPDATED, modified));
     }
 
     public Mono<Void> deleteMovieInfo(String id) {
-        return movieInfoRepository.deleteById(id);
+        return metrics.service("deleteMovieInfo", metrics.repository("deleteById", movieInfoRepository.deleteById(id))
+                .then(incrementCollectionVersion())
+                .then()
+                .doOnSuccess(deleted -> movieInfoChangeFeed.publish(MovieInfoChange.removed(id)))
+                .doFinally(signalType -> movieInfoCache.invalidate(id)));
     }
 }
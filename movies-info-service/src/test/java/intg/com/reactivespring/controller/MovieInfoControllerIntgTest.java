@@ -1,18 +1,31 @@
 package com.reactivespring.controller;
 
+import com.reactivespring.domain.ChangeType;
 import com.reactivespring.domain.MovieInfo;
+import com.reactivespring.domain.MovieInfoChange;
+import com.reactivespring.domain.MovieInfoBatchResult;
 import com.reactivespring.repository.MovieInfoRepository;
+import com.reactivespring.service.MovieInfoCache;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.reactive.AutoConfigureWebTestClient;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.test.context.ActiveProfiles;
 import org.springframework.test.context.TestPropertySource;
 import org.springframework.test.web.reactive.server.WebTestClient;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+import reactor.test.StepVerifier;
 
+import java.time.Duration;
 import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.Objects;
 
@@ -27,6 +40,9 @@ class MovieInfoControllerIntgTest {
     @Autowired
     MovieInfoRepository movieInfoRepository;
 
+    @Autowired
+    MovieInfoCache movieInfoCache;
+
     @Autowired
     WebTestClient webTestClient;
 
@@ -48,6 +64,8 @@ class MovieInfoControllerIntgTest {
     @AfterEach
     void tearDown() {
         movieInfoRepository.deleteAll().block();
+        // the cache outlives the test, documents written by one test must not be read by the next
+        movieInfoCache.invalidateAll();
     }
 
     @Test
@@ -71,6 +89,48 @@ class MovieInfoControllerIntgTest {
 
     }
 
+    @Test
+    void addMovieInfos_batch() {
+
+        var body = String.join("\n",
+                "{\"movieInfoId\":\"def\", \"name\": \"Inception\", \"year\":2010,\"cast\":[\"Leonardo DiCaprio\"],\"release_date\": \"2010-07-16\"}",
+                "{\"movieInfoId\":\"abc\", \"name\": \"Dark Knight Rises\", \"year\":2012,\"cast\":[\"Christian Bale\"],\"release_date\": \"2012-07-20\"}",
+                "{\"movieInfoId\":null, \"name\": \"Interstellar\", \"year\":2014,\"cast\":[\"Matthew McConaughey\"],\"release_date\": \"2014-11-07\"}");
+
+        var resultFlux = webTestClient
+                .post()
+                .uri(MOVIES_INFO_URL + "/batch")
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .accept(MediaType.APPLICATION_NDJSON)
+                .bodyValue(body)
+                .exchange()
+                .expectStatus()
+                .is2xxSuccessful()
+                .returnResult(MovieInfoBatchResult.class)
+                .getResponseBody();
+
+        StepVerifier.create(resultFlux)
+                .assertNext(result -> assertEquals(MovieInfoBatchResult.CREATED, result.getStatus()))
+                .assertNext(result -> {
+                    assertEquals(MovieInfoBatchResult.FAILED, result.getStatus());
+                    assertEquals(1L, result.getIndex());
+                })
+                .assertNext(result -> assertNotNull(result.getMovieInfoId()))
+                .assertNext(result -> {
+                    assertEquals(MovieInfoBatchResult.SUMMARY, result.getStatus());
+                    assertEquals(2L, result.getCreated());
+                    assertEquals(1L, result.getFailed());
+                })
+                .verifyComplete();
+
+        webTestClient
+                .get()
+                .uri(MOVIES_INFO_URL)
+                .exchange()
+                .expectBodyList(MovieInfo.class)
+                .hasSize(5);
+    }
+
     @Test
     void getAllMovieInfos() {
 
@@ -85,6 +145,238 @@ class MovieInfoControllerIntgTest {
 
     }
 
+    @Test
+    void getAllMovieInfos_paged() {
+
+        var firstPage = webTestClient
+                .get()
+                .uri(MOVIES_INFO_URL + "?limit={limit}", 2)
+                .exchange()
+                .expectStatus()
+                .is2xxSuccessful()
+                .expectBodyList(MovieInfo.class)
+                .hasSize(2)
+                .returnResult()
+                .getResponseBody();
+
+        assert firstPage != null;
+        var after = firstPage.get(1).getMovieInfoId();
+
+        webTestClient
+                .get()
+                .uri(MOVIES_INFO_URL + "?limit={limit}&after={after}", 2, after)
+                .exchange()
+                .expectStatus()
+                .is2xxSuccessful()
+                .expectBodyList(MovieInfo.class)
+                .hasSize(1);
+
+    }
+
+    @Test
+    void getAllMovieInfos_notModified() {
+
+        var eTag = webTestClient
+                .get()
+                .uri(MOVIES_INFO_URL)
+                .exchange()
+                .expectStatus()
+                .isOk()
+                .returnResult(MovieInfo.class)
+                .getResponseHeaders()
+                .getETag();
+
+        assertNotNull(eTag);
+
+        webTestClient
+                .get()
+                .uri(MOVIES_INFO_URL)
+                .header(HttpHeaders.IF_NONE_MATCH, eTag)
+                .exchange()
+                .expectStatus()
+                .isNotModified()
+                .expectBody()
+                .isEmpty();
+
+        webTestClient
+                .post()
+                .uri(MOVIES_INFO_URL)
+                .bodyValue(new MovieInfo(null, "Batman Begins1",
+                        2005, List.of("Christian Bale", "Michael Cane"), LocalDate.parse("2005-06-15")))
+                .exchange()
+                .expectStatus()
+                .isCreated();
+
+        webTestClient
+                .get()
+                .uri(MOVIES_INFO_URL)
+                .header(HttpHeaders.IF_NONE_MATCH, eTag)
+                .exchange()
+                .expectStatus()
+                .isOk()
+                .expectBodyList(MovieInfo.class)
+                .hasSize(4);
+
+    }
+
+    // writes in the same millisecond, and a delete followed by an insert, leave count and latest
+    // modification unchanged, the ETag still has to move
+    @Test
+    void getAllMovieInfos_eTagChangesOnEveryWrite() {
+        var eTags = new ArrayList<String>();
+        eTags.add(collectionETag());
+
+        for (var name : List.of("Dark Knight Rises 1", "Dark Knight Rises 2")) {
+            webTestClient
+                    .patch()
+                    .uri(MOVIES_INFO_URL + "/{id}", "abc")
+                    .bodyValue(new MovieInfo(null, name, null, null, null))
+                    .exchange()
+                    .expectStatus()
+                    .isOk();
+            eTags.add(collectionETag());
+        }
+
+        webTestClient
+                .delete()
+                .uri(MOVIES_INFO_URL + "/{id}", "abc")
+                .exchange()
+                .expectStatus()
+                .isNoContent();
+        webTestClient
+                .post()
+                .uri(MOVIES_INFO_URL)
+                .bodyValue(new MovieInfo(null, "Dark Knight Rises",
+                        2012, List.of("Christian Bale", "Tom Hardy"), LocalDate.parse("2012-07-20")))
+                .exchange()
+                .expectStatus()
+                .isCreated();
+        eTags.add(collectionETag());
+
+        assertEquals(eTags.size(), eTags.stream().distinct().count(), "ETags " + eTags);
+    }
+
+    @Test
+    void getAllMovieInfos_invalidLimit() {
+
+        webTestClient
+                .get()
+                .uri(MOVIES_INFO_URL + "?limit={limit}", 0)
+                .exchange()
+                .expectStatus()
+                .isBadRequest();
+
+    }
+
+    @Test
+    void streamAllMovieInfos() {
+
+        var movieInfoFlux = webTestClient
+                .get()
+                .uri(MOVIES_INFO_URL)
+                .accept(MediaType.APPLICATION_NDJSON)
+                .exchange()
+                .expectStatus()
+                .is2xxSuccessful()
+                .returnResult(MovieInfo.class)
+                .getResponseBody();
+
+        StepVerifier.create(movieInfoFlux)
+                .expectNextCount(3)
+                .verifyComplete();
+
+    }
+
+    @Test
+    void streamAllMovieInfos_limitAfterFields() {
+
+        var firstPage = webTestClient
+                .get()
+                .uri(MOVIES_INFO_URL + "?limit={limit}&fields={fields}", 2, "name")
+                .accept(MediaType.APPLICATION_NDJSON)
+                .exchange()
+                .expectStatus()
+                .isOk()
+                .returnResult(MovieInfo.class)
+                .getResponseBody()
+                .collectList()
+                .block();
+
+        assertEquals(2, firstPage.size());
+        firstPage.forEach(movieInfo -> {
+            assertNotNull(movieInfo.getName());
+            assertNull(movieInfo.getCast());
+        });
+
+        var lastId = firstPage.get(1).getMovieInfoId();
+        var secondPage = webTestClient
+                .get()
+                .uri(MOVIES_INFO_URL + "?limit={limit}&after={after}", 2, lastId)
+                .accept(MediaType.APPLICATION_NDJSON)
+                .exchange()
+                .expectStatus()
+                .isOk()
+                .returnResult(MovieInfo.class)
+                .getResponseBody();
+
+        StepVerifier.create(secondPage)
+                .assertNext(movieInfo -> assertTrue(movieInfo.getMovieInfoId().compareTo(lastId) > 0))
+                .verifyComplete();
+
+        webTestClient
+                .get()
+                .uri(MOVIES_INFO_URL + "?limit={limit}", 0)
+                .accept(MediaType.APPLICATION_NDJSON)
+                .exchange()
+                .expectStatus()
+                .isBadRequest();
+
+        webTestClient
+                .get()
+                .uri(MOVIES_INFO_URL + "?fields={fields}", "budget")
+                .accept(MediaType.APPLICATION_NDJSON)
+                .exchange()
+                .expectStatus()
+                .isBadRequest();
+
+    }
+
+    @Test
+    void getMovieInfoChanges() {
+
+        MovieInfo movieInfo = new MovieInfo(null, "Batman Begins1",
+                2005, List.of("Christian Bale", "Michael Cane"), LocalDate.parse("2005-06-15"));
+
+        // the feed is hot, so the write has to happen after the stream is subscribed
+        Mono.delay(Duration.ofMillis(500), Schedulers.boundedElastic())
+                .subscribe(tick -> webTestClient
+                        .post()
+                        .uri(MOVIES_INFO_URL)
+                        .bodyValue(movieInfo)
+                        .exchange()
+                        .expectStatus()
+                        .isCreated());
+
+        var movieInfoFlux = webTestClient
+                .get()
+                .uri(MOVIES_INFO_URL + "/stream")
+                .exchange()
+                .expectStatus()
+                .is2xxSuccessful()
+                .returnResult(MovieInfoChange.class)
+                .getResponseBody();
+
+        StepVerifier.create(movieInfoFlux)
+                .assertNext(change -> {
+                    assertEquals(ChangeType.ADDED, change.getType());
+                    assertEquals("Batman Begins1", change.getMovieInfo().getName());
+                    assertNotNull(change.getMovieInfo().getMovieInfoId());
+                })
+                .thenCancel()
+                .verify();
+
+    }
+
     @Test
     void getMovieInfoById() {
         //given
@@ -107,6 +399,160 @@ class MovieInfoControllerIntgTest {
 
     }
 
+    @Test
+    void getMovieInfosByIds() {
+        webTestClient
+                .get()
+                .uri(MOVIES_INFO_URL + "?ids={ids}", "abc,unknown,abc")
+                .exchange()
+                .expectStatus()
+                .isOk()
+                .expectBodyList(MovieInfo.class)
+                .hasSize(1)
+                .consumeWith(exchangeResult -> assertEquals("Dark Knight Rises",
+                        exchangeResult.getResponseBody().get(0).getName()));
+    }
+
+    @Test
+    void getMovieInfosByIds_tooMany() {
+        var ids = String.join(",", Collections.nCopies(101, "abc"));
+
+        webTestClient
+                .get()
+                .uri(MOVIES_INFO_URL + "?ids={ids}", ids)
+                .exchange()
+                .expectStatus()
+                .isBadRequest();
+    }
+
+    @Test
+    void getMovieInfoById_fields() {
+        String id = "abc";
+
+        webTestClient
+                .get()
+                .uri(MOVIES_INFO_URL + "/{id}?fields={fields}", id, "name,year")
+                .exchange()
+                .expectStatus()
+                .isOk()
+                .expectBody()
+                .jsonPath("$.movieInfoId").isEqualTo(id)
+                .jsonPath("$.name").isEqualTo("Dark Knight Rises")
+                .jsonPath("$.year").isEqualTo(2012)
+                .jsonPath("$.cast").doesNotExist()
+                .jsonPath("$.release_date").doesNotExist();
+
+        // only projections leave out null fields, a full read keeps them
+        webTestClient
+                .get()
+                .uri(MOVIES_INFO_URL + "/{id}", id)
+                .exchange()
+                .expectStatus()
+                .isOk()
+                .expectBody()
+                .jsonPath("$.lastModified").hasJsonPath()
+                .jsonPath("$.lastModified").isEmpty();
+
+    }
+
+    @Test
+    void getAllMovieInfos_fields() {
+
+        webTestClient
+                .get()
+                .uri(MOVIES_INFO_URL + "?fields={fields}", "name")
+                .exchange()
+                .expectStatus()
+                .isOk()
+                .expectBody()
+                .jsonPath("$.length()").isEqualTo(3)
+                .jsonPath("$[0].name").exists()
+                .jsonPath("$[0].cast").doesNotExist();
+
+        webTestClient
+                .get()
+                .uri(MOVIES_INFO_URL + "?fields={fields}", "name,budget")
+                .exchange()
+                .expectStatus()
+                .isBadRequest();
+
+    }
+
+    @Test
+    void getMovieInfoById_ifNoneMatchList() {
+        String id = "abc";
+
+        // "10" only shares a digit with the current version
+        webTestClient
+                .get()
+                .uri(MOVIES_INFO_URL + "/{id}", id)
+                .header(HttpHeaders.IF_NONE_MATCH, "\"10\"")
+                .exchange()
+                .expectStatus()
+                .isOk();
+
+        webTestClient
+                .get()
+                .uri(MOVIES_INFO_URL + "/{id}", id)
+                .header(HttpHeaders.IF_NONE_MATCH, "\"10\", W/\"0\"")
+                .exchange()
+                .expectStatus()
+                .isNotModified();
+
+        webTestClient
+                .get()
+                .uri(MOVIES_INFO_URL + "/{id}", id)
+                .header(HttpHeaders.IF_NONE_MATCH, "*")
+                .exchange()
+                .expectStatus()
+                .isNotModified();
+    }
+
+    @Test
+    void getMovieInfoById_notModified() {
+        String id = "abc";
+
+        webTestClient
+                .get()
+                .uri(MOVIES_INFO_URL + "/{id}", id)
+                .exchange()
+                .expectStatus()
+                .isOk()
+                .expectHeader()
+                .valueEquals(HttpHeaders.ETAG, "\"0\"");
+
+        webTestClient
+                .get()
+                .uri(MOVIES_INFO_URL + "/{id}", id)
+                .header(HttpHeaders.IF_NONE_MATCH, "\"0\"")
+                .exchange()
+                .expectStatus()
+                .isNotModified()
+                .expectBody()
+                .isEmpty();
+
+        webTestClient
+                .patch()
+                .uri(MOVIES_INFO_URL + "/{id}", id)
+                .bodyValue(new MovieInfo(null, "Dark Knight Rises1", null, null, null))
+                .exchange()
+                .expectStatus()
+                .isOk();
+
+        webTestClient
+                .get()
+                .uri(MOVIES_INFO_URL + "/{id}", id)
+                .header(HttpHeaders.IF_NONE_MATCH, "\"0\"")
+                .exchange()
+                .expectStatus()
+                .isOk()
+                .expectHeader()
+                .valueEquals(HttpHeaders.ETAG, "\"1\"")
+                .expectBody()
+                .jsonPath("$.name").isEqualTo("Dark Knight Rises1");
+
+    }
+
 
     @Test
     void updateMovieInfo() {
@@ -130,6 +576,48 @@ class MovieInfoControllerIntgTest {
 
     }
 
+    @Test
+    void updateMovieInfo_staleVersion() {
+        String id = "abc";
+        MovieInfo movieInfo = new MovieInfo(null, "Dark Knight Rises1",
+                2005, List.of("Christian Bale", "Michael Cane"), LocalDate.parse("2005-06-15"));
+        movieInfo.setVersion(42L);
+
+        webTestClient
+                .put()
+                .uri(MOVIES_INFO_URL + "/{id}", id)
+                .bodyValue(movieInfo)
+                .exchange()
+                .expectStatus()
+                .isEqualTo(HttpStatus.CONFLICT);
+
+    }
+
+    @Test
+    void patchMovieInfo() {
+        String id = "abc";
+        MovieInfo movieInfoPatch = new MovieInfo();
+        movieInfoPatch.setYear(2013);
+        movieInfoPatch.setVersion(0L);
+
+        webTestClient
+                .patch()
+                .uri(MOVIES_INFO_URL + "/{id}", id)
+                .bodyValue(movieInfoPatch)
+                .exchange()
+                .expectStatus()
+                .is2xxSuccessful()
+                .expectBody(MovieInfo.class)
+                .consumeWith(movieInfoEntityExchangeResult -> {
+                    MovieInfo patchedMovieInfo = movieInfoEntityExchangeResult.getResponseBody();
+                    assert patchedMovieInfo != null;
+                    assertEquals("Dark Knight Rises", patchedMovieInfo.getName());
+                    assertEquals(2013, patchedMovieInfo.getYear());
+                    assertEquals(1L, patchedMovieInfo.getVersion());
+                });
+
+    }
+
     @Test
     void deleteMovieInfo() {
         String id = "abc";
@@ -141,4 +629,16 @@ class MovieInfoControllerIntgTest {
                 .expectStatus().isNoContent()
                 .expectBody().isEmpty();
     }
-}
\ No newline at end of file
+
+    private String collectionETag() {
+        return webTestClient
+                .get()
+                .uri(MOVIES_INFO_URL)
+                .exchange()
+                .expectStatus()
+                .isOk()
+                .returnResult(MovieInfo.class)
+                .getResponseHeaders()
+                .getETag();
+    }
+}
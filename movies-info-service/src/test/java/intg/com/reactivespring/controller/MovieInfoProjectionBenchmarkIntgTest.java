@@ -0,0 +1,97 @@
+package com.reactivespring.controller;
+
+import com.reactivespring.domain.MovieInfo;
+import com.reactivespring.repository.MovieInfoRepository;
+import com.reactivespring.service.MovieInfoCache;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.reactive.AutoConfigureWebTestClient;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.web.reactive.server.WebTestClient;
+
+import java.time.LocalDate;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// compares the payload of full and projected reads of movie infos with a wide cast list
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@ActiveProfiles("test")
+@AutoConfigureWebTestClient
+@TestPropertySource(properties = "spring.mongodb.embedded.version=3.5.5")
+class MovieInfoProjectionBenchmarkIntgTest {
+
+    static String MOVIES_INFO_URL = "/v1/movieinfos";
+
+    static int MOVIE_INFOS = 50;
+
+    static int CAST_SIZE = 500;
+
+    @Autowired
+    MovieInfoRepository movieInfoRepository;
+
+    @Autowired
+    MovieInfoCache movieInfoCache;
+
+    @Autowired
+    WebTestClient webTestClient;
+
+    @BeforeEach
+    void setUp() {
+        var cast = IntStream.range(0, CAST_SIZE)
+                .mapToObj(i -> "Cast Member " + i)
+                .collect(Collectors.toList());
+        var movieInfos = IntStream.range(0, MOVIE_INFOS)
+                .mapToObj(i -> new MovieInfo(null, "Movie " + i, 2000 + i % 20, cast, LocalDate.parse("2005-06-15")))
+                .collect(Collectors.toList());
+
+        movieInfoRepository.saveAll(movieInfos)
+                .blockLast();
+    }
+
+    @AfterEach
+    void tearDown() {
+        movieInfoRepository.deleteAll().block();
+        // the cache outlives the test, documents written by one test must not be read by the next
+        movieInfoCache.invalidateAll();
+    }
+
+    @Test
+    void projectedRead() {
+        long fullBytes = read(MOVIES_INFO_URL);
+        long projectedBytes = read(MOVIES_INFO_URL + "?fields=name,year");
+
+        // the cast list makes up nearly all of a full document and is not read for the projection;
+        // latency is not asserted on, it is too noisy on shared build machines
+        assertTrue(projectedBytes * 20 < fullBytes, "projected " + projectedBytes + " bytes, full " + fullBytes + " bytes");
+
+        webTestClient
+                .get()
+                .uri(MOVIES_INFO_URL + "?fields=name,year")
+                .exchange()
+                .expectStatus()
+                .isOk()
+                .expectBody()
+                .jsonPath("$.length()").isEqualTo(MOVIE_INFOS)
+                .jsonPath("$[0].name").exists()
+                .jsonPath("$[0].cast").doesNotExist();
+    }
+
+    private long read(String uri) {
+        var body = webTestClient
+                .get()
+                .uri(uri)
+                .exchange()
+                .expectStatus()
+                .isOk()
+                .expectBody(byte[].class)
+                .returnResult()
+                .getResponseBody();
+        return body == null ? 0 : body.length;
+    }
+}
@@ -0,0 +1,104 @@
+package com.reactivespring.repository;
+
+import com.reactivespring.domain.MovieInfo;
+import org.bson.Document;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.data.mongo.DataMongoTest;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.convert.QueryMapper;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.TestPropertySource;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DataMongoTest
+@TestPropertySource(properties = "spring.mongodb.embedded.version=3.5.5")
+@ActiveProfiles("test")
+class MovieInfoRepositoryIndexIntgTest {
+
+    @Autowired
+    MovieInfoRepository movieInfoRepository;
+
+    @Autowired
+    ReactiveMongoTemplate reactiveMongoTemplate;
+
+    @BeforeEach
+    void setUp() {
+        movieInfoRepository.ensureIndexes().blockLast();
+
+        var movieinfos = List.of(new MovieInfo(null, "Batman Begins",
+                        2005, List.of("Christian Bale", "Michael Cane"), LocalDate.parse("2005-06-15")),
+                new MovieInfo(null, "The Dark Knight",
+                        2008, List.of("Christian Bale", "HeathLedger"), LocalDate.parse("2008-07-18")),
+                new MovieInfo("abc", "Dark Knight Rises",
+                        2012, List.of("Christian Bale", "Tom Hardy"), LocalDate.parse("2012-07-20")));
+
+        movieInfoRepository.saveAll(movieinfos)
+                .blockLast();
+    }
+
+    @AfterEach
+    void tearDown() {
+        movieInfoRepository.deleteAll().block();
+    }
+
+    @Test
+    void findByYearRange() {
+        StepVerifier.create(movieInfoRepository.findByYearRange(2005, 2008))
+                .expectNextCount(2)
+                .verifyComplete();
+
+        assertIndexScan(MovieInfoRepositoryCustomImpl.byYearRange(2005, 2008));
+    }
+
+    @Test
+    void findByName() {
+        StepVerifier.create(movieInfoRepository.findByName("Batman Begins"))
+                .assertNext(movieInfo -> assertEquals(2005, movieInfo.getYear()))
+                .verifyComplete();
+
+        assertIndexScan(MovieInfoRepositoryCustomImpl.byName("Batman Begins"));
+    }
+
+    @Test
+    void findByNameMatching() {
+        StepVerifier.create(movieInfoRepository.findByNameMatching("^Dark"))
+                .assertNext(movieInfo -> assertEquals("abc", movieInfo.getMovieInfoId()))
+                .verifyComplete();
+
+        assertIndexScan(MovieInfoRepositoryCustomImpl.byNameMatching("^Dark"));
+    }
+
+    @Test
+    void findByCast() {
+        StepVerifier.create(movieInfoRepository.findByCast("Tom Hardy"))
+                .assertNext(movieInfo -> assertEquals("Dark Knight Rises", movieInfo.getName()))
+                .verifyComplete();
+
+        assertIndexScan(MovieInfoRepositoryCustomImpl.byCast("Tom Hardy"));
+    }
+
+    // the query the finder sends, mapped the way the template maps it
+    private void assertIndexScan(Query query) {
+        var converter = reactiveMongoTemplate.getConverter();
+        var filter = new QueryMapper(converter)
+                .getMappedObject(query.getQueryObject(), converter.getMappingContext().getPersistentEntity(MovieInfo.class));
+        Document explain = reactiveMongoTemplate.getCollection(reactiveMongoTemplate.getCollectionName(MovieInfo.class))
+                .flatMap(collection -> Mono.from(collection.find(filter).explain()))
+                .block();
+
+        assertNotNull(explain);
+        var winningPlan = explain.get("queryPlanner", Document.class).get("winningPlan", Document.class).toJson();
+        assertTrue(winningPlan.contains("IXSCAN"), winningPlan);
+        assertFalse(winningPlan.contains("COLLSCAN"), winningPlan);
+    }
+}
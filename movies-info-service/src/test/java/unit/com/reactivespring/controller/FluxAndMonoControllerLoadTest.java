@@ -0,0 +1,151 @@
+package com.reactivespring.controller;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import reactor.core.Disposable;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+import reactor.test.StepVerifier;
+import reactor.test.scheduler.VirtualTimeScheduler;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+// ticks run on virtual time, so they are delivered on the test thread and its CPU time is exactly their cost
+class FluxAndMonoControllerLoadTest {
+
+    static final ThreadMXBean THREADS = ManagementFactory.getThreadMXBean();
+
+    static final int TICKS = 100;
+
+    VirtualTimeScheduler virtualTime = VirtualTimeScheduler.create();
+
+    AtomicInteger timers = new AtomicInteger();
+
+    FluxAndMonoController fluxAndMonoController;
+
+    @BeforeEach
+    void setUp() {
+        // Flux.interval runs on the parallel scheduler, which is taken when the controller is created
+        Schedulers.setFactory(new Schedulers.Factory() {
+            @Override
+            public Scheduler newParallel(int parallelism, ThreadFactory threadFactory) {
+                return new TimerCountingScheduler();
+            }
+        });
+        fluxAndMonoController = new FluxAndMonoController();
+    }
+
+    @AfterEach
+    void tearDown() {
+        Schedulers.resetFactory();
+    }
+
+    @Test
+    void stream_cpuPerDeliveryFlatFrom10To10kClients() {
+        assumeTrue(THREADS.isCurrentThreadCpuTimeSupported());
+
+        // the smallest run goes first and warms up the JIT, which can only make it look more expensive
+        double cpuPer10 = cpuNanosPerDelivery(10);
+        double cpuPer1k = cpuNanosPerDelivery(1_000);
+        double cpuPer10k = cpuNanosPerDelivery(10_000);
+
+        // the only work that grows with the clients is handing each of them the tick
+        assertTrue(cpuPer10k <= 2 * cpuPer10, "cpu per delivery 10: " + cpuPer10 + "ns, 10k: " + cpuPer10k + "ns");
+        assertTrue(cpuPer10k <= 2 * cpuPer1k, "cpu per delivery 1k: " + cpuPer1k + "ns, 10k: " + cpuPer10k + "ns");
+        // one timer per run, however many clients it had
+        assertEquals(3, timers.get());
+    }
+
+    @Test
+    void stream_lateJoinerStartsFromCurrentTick() {
+        var firstClient = fluxAndMonoController.stream().subscribe();
+        virtualTime.advanceTimeBy(Duration.ofMillis(2500));
+
+        StepVerifier.create(fluxAndMonoController.stream().take(1))
+                .assertNext(tick -> assertEquals(1L, tick))
+                .expectComplete()
+                .verify(Duration.ofSeconds(1));
+
+        firstClient.dispose();
+        assertEquals(1, timers.get());
+    }
+
+    @Test
+    void stream_timerStopsWithLastClient() {
+        var ticks = new AtomicLong();
+        var client = fluxAndMonoController.stream().subscribe(tick -> ticks.incrementAndGet());
+        virtualTime.advanceTimeBy(Duration.ofSeconds(2));
+        client.dispose();
+
+        virtualTime.advanceTimeBy(Duration.ofSeconds(10));
+        assertEquals(2, ticks.get());
+
+        // the next client starts a new timer from the first tick
+        StepVerifier.create(fluxAndMonoController.stream().take(1))
+                .then(() -> virtualTime.advanceTimeBy(Duration.ofSeconds(1)))
+                .assertNext(tick -> assertEquals(0L, tick))
+                .expectComplete()
+                .verify(Duration.ofSeconds(1));
+        assertEquals(2, timers.get());
+    }
+
+    // CPU time of the test thread for TICKS ticks, divided by the ticks delivered to all clients
+    private double cpuNanosPerDelivery(int clients) {
+        var ticks = new AtomicLong();
+        List<Disposable> subscriptions = IntStream.range(0, clients)
+                .mapToObj(i -> fluxAndMonoController.stream().subscribe(tick -> ticks.incrementAndGet()))
+                .collect(Collectors.toList());
+
+        long cpuBefore = THREADS.getCurrentThreadCpuTime();
+        virtualTime.advanceTimeBy(Duration.ofSeconds(TICKS));
+        long cpu = THREADS.getCurrentThreadCpuTime() - cpuBefore;
+
+        subscriptions.forEach(Disposable::dispose);
+        assertEquals((long) TICKS * clients, ticks.get());
+        return (double) cpu / ticks.get();
+    }
+
+    // Flux.interval takes one worker per subscription, so every worker taken is a timer started
+    class TimerCountingScheduler implements Scheduler {
+
+        @Override
+        public Disposable schedule(Runnable task) {
+            return virtualTime.schedule(task);
+        }
+
+        @Override
+        public Disposable schedule(Runnable task, long delay, TimeUnit unit) {
+            return virtualTime.schedule(task, delay, unit);
+        }
+
+        @Override
+        public Disposable schedulePeriodically(Runnable task, long initialDelay, long period, TimeUnit unit) {
+            timers.incrementAndGet();
+            return virtualTime.schedulePeriodically(task, initialDelay, period, unit);
+        }
+
+        @Override
+        public long now(TimeUnit unit) {
+            return virtualTime.now(unit);
+        }
+
+        @Override
+        public Worker createWorker() {
+            timers.incrementAndGet();
+            return virtualTime.createWorker();
+        }
+    }
+}
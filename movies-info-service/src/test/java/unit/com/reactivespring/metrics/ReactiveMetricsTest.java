@@ -0,0 +1,93 @@
+package com.reactivespring.metrics;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.core.read.ListAppender;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.slf4j.LoggerFactory;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ReactiveMetricsTest {
+
+    SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    ReactiveMetrics reactiveMetrics = new ReactiveMetrics(meterRegistry, 0.0);
+
+    @Test
+    void repository_recordsLatencyAndInFlight() {
+        StepVerifier.create(reactiveMetrics.repository("findAll", Flux.just(1, 2, 3)), 0)
+                .then(() -> assertEquals(1.0, meterRegistry.get("movieinfo.repository.inflight")
+                        .tag("operation", "findAll").gauge().value()))
+                .thenRequest(3)
+                .expectNextCount(3)
+                .verifyComplete();
+
+        assertEquals(1, meterRegistry.get("movieinfo.repository.calls")
+                .tag("operation", "findAll").tag("outcome", "success").timer().count());
+        assertEquals(0.0, meterRegistry.get("movieinfo.repository.inflight")
+                .tag("operation", "findAll").gauge().value());
+    }
+
+    @Test
+    void service_countsErrors() {
+        StepVerifier.create(reactiveMetrics.service("getMovieInfoById", Mono.error(new IllegalStateException("boom"))))
+                .verifyError(IllegalStateException.class);
+
+        assertEquals(1.0, meterRegistry.get("movieinfo.service.errors")
+                .tag("operation", "getMovieInfoById").tag("exception", "IllegalStateException").counter().count());
+        assertEquals(1, meterRegistry.get("movieinfo.service.calls")
+                .tag("operation", "getMovieInfoById").tag("outcome", "error").timer().count());
+    }
+
+    @Test
+    void service_signalLoggingIsSampled() {
+        var logger = (Logger) LoggerFactory.getLogger(ReactiveMetrics.SIGNAL_LOG_CATEGORY);
+        var level = logger.getLevel();
+        var appender = new ListAppender<ILoggingEvent>();
+        appender.start();
+        logger.setLevel(Level.DEBUG);
+        logger.addAppender(appender);
+        try {
+            // draws alternate below and above the rate, so every other call is sampled
+            var draws = new AtomicInteger();
+            var halfLogging = new ReactiveMetrics(meterRegistry, 0.5, () -> draws.getAndIncrement() % 2 == 0 ? 0.25 : 0.75);
+            for (int i = 0; i < 10; i++) {
+                StepVerifier.create(halfLogging.service("getAllMovieInfos", Flux.just(1, 2)))
+                        .expectNext(1, 2)
+                        .verifyComplete();
+            }
+
+            assertEquals(10, draws.get());
+            assertEquals(5, count(appender, "onComplete()"));
+            assertEquals(10, count(appender, "onNext("));
+            assertTrue(appender.list.stream()
+                    .allMatch(event -> event.getLoggerName().equals(ReactiveMetrics.SIGNAL_LOG_CATEGORY + ".getAllMovieInfos")));
+
+            // a rate of 0 never logs
+            appender.list.clear();
+            for (int i = 0; i < 10; i++) {
+                StepVerifier.create(reactiveMetrics.service("getAllMovieInfos", Flux.just(1, 2)))
+                        .expectNext(1, 2)
+                        .verifyComplete();
+            }
+            assertTrue(appender.list.isEmpty());
+        } finally {
+            logger.detachAppender(appender);
+            logger.setLevel(level);
+        }
+    }
+
+    private static long count(ListAppender<ILoggingEvent> appender, String signal) {
+        return appender.list.stream()
+                .filter(event -> event.getFormattedMessage().contains(signal))
+                .count();
+    }
+}
@@ -0,0 +1,79 @@
+package com.reactivespring.service;
+
+import com.reactivespring.domain.MovieInfo;
+import com.reactivespring.domain.MovieInfoBatchResult;
+import com.reactivespring.metrics.ReactiveMetrics;
+import com.reactivespring.repository.MovieInfoRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.Mockito.*;
+
+class MovieInfoBatchServiceTest {
+
+    SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    MovieInfoRepository movieInfoRepository = mock(MovieInfoRepository.class);
+
+    // batches of at most 500 documents, closed after 1s
+    MovieInfoBatchService movieInfoBatchService = new MovieInfoBatchService(movieInfoRepository,
+            new MovieInfoCache(100, Duration.ofMinutes(5), Duration.ofSeconds(5), meterRegistry),
+            mock(MovieInfoChangeFeed.class),
+            new ReactiveMetrics(meterRegistry, 0.0),
+            500,
+            Duration.ofSeconds(1));
+
+    @BeforeEach
+    void setUp() {
+        when(movieInfoRepository.insertUnordered(anyList())).thenReturn(Mono.just(Map.of()));
+        when(movieInfoRepository.incrementCollectionVersion()).thenReturn(Mono.just(1L));
+    }
+
+    // the client sent two documents and then stalls; they are written when the batch is due,
+    // not when a next document arrives
+    @Test
+    void addMovieInfos_stalledUploadFlushedOnTime() {
+        StepVerifier.withVirtualTime(() -> movieInfoBatchService.addMovieInfos(
+                        Flux.just(movieInfo("1"), movieInfo("2")).concatWith(Flux.never())))
+                .expectSubscription()
+                .expectNoEvent(Duration.ofMillis(999))
+                .thenAwait(Duration.ofMillis(1))
+                .assertNext(result -> assertEquals(MovieInfoBatchResult.created(0, "1"), result))
+                .assertNext(result -> assertEquals(MovieInfoBatchResult.created(1, "2"), result))
+                .expectNoEvent(Duration.ofSeconds(10))
+                .thenCancel()
+                .verify(Duration.ofSeconds(5));
+
+        verify(movieInfoRepository).insertUnordered(argThat(movieInfos -> movieInfos.size() == 2));
+    }
+
+    @Test
+    void addMovieInfos_closedOnCountAndAtEnd() {
+        var upload = Flux.range(0, 501).map(i -> movieInfo(String.valueOf(i)));
+
+        StepVerifier.withVirtualTime(() -> movieInfoBatchService.addMovieInfos(upload))
+                .expectNextCount(501)
+                .assertNext(result -> assertEquals(MovieInfoBatchResult.summary(501, 0), result))
+                .expectComplete()
+                .verify(Duration.ofSeconds(5));
+
+        verify(movieInfoRepository).insertUnordered(argThat(movieInfos -> movieInfos.size() == 500));
+        verify(movieInfoRepository).insertUnordered(argThat(movieInfos -> movieInfos.size() == 1));
+    }
+
+    private static MovieInfo movieInfo(String movieInfoId) {
+        return new MovieInfo(movieInfoId, "Batman Begins", 2005, List.of("Christian Bale"), LocalDate.parse("2005-06-15"));
+    }
+}
@@ -0,0 +1,83 @@
+package com.reactivespring.service;
+
+import com.reactivespring.domain.MovieInfo;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MovieInfoCacheTest {
+
+    SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    MovieInfoCache movieInfoCache = new MovieInfoCache(100, Duration.ofMinutes(5), Duration.ofSeconds(5), meterRegistry);
+
+    MovieInfo movieInfo = new MovieInfo("abc", "Dark Knight Rises",
+            2012, List.of("Christian Bale", "Tom Hardy"), LocalDate.parse("2012-07-20"));
+
+    @Test
+    void get_concurrentMissesShareOneLoad() {
+        var loads = new AtomicInteger();
+
+        var movieInfoFlux = Flux.range(0, 10)
+                .flatMap(i -> movieInfoCache.get("abc", id -> {
+                    loads.incrementAndGet();
+                    return Mono.just(movieInfo).delayElement(Duration.ofMillis(100));
+                }));
+
+        StepVerifier.create(movieInfoFlux)
+                .expectNextCount(10)
+                .verifyComplete();
+
+        assertEquals(1, loads.get());
+        assertEquals(9.0, meterRegistry.get("cache.gets").tag("result", "hit").functionCounter().count());
+        assertEquals(1.0, meterRegistry.get("cache.gets").tag("result", "miss").functionCounter().count());
+    }
+
+    @Test
+    void get_notFoundIsCached() {
+        var loads = new AtomicInteger();
+
+        for (int i = 0; i < 3; i++) {
+            StepVerifier.create(movieInfoCache.get("missing", id -> {
+                        loads.incrementAndGet();
+                        return Mono.empty();
+                    }))
+                    .verifyComplete();
+        }
+
+        assertEquals(1, loads.get());
+    }
+
+    @Test
+    void put_refreshesEntry() {
+        movieInfoCache.get("abc", id -> Mono.just(movieInfo)).block();
+
+        var updatedMovieInfo = new MovieInfo("abc", "Dark Knight Rises1",
+                2012, List.of("Christian Bale", "Tom Hardy"), LocalDate.parse("2012-07-20"));
+        movieInfoCache.put(updatedMovieInfo);
+
+        StepVerifier.create(movieInfoCache.get("abc", id -> Mono.error(new IllegalStateException("should be cached"))))
+                .assertNext(cached -> assertEquals("Dark Knight Rises1", cached.getName()))
+                .verifyComplete();
+    }
+
+    @Test
+    void invalidate() {
+        var loads = new AtomicInteger();
+
+        movieInfoCache.get("abc", id -> Mono.just(movieInfo).doOnNext(m -> loads.incrementAndGet())).block();
+        movieInfoCache.invalidate("abc");
+        movieInfoCache.get("abc", id -> Mono.just(movieInfo).doOnNext(m -> loads.incrementAndGet())).block();
+
+        assertEquals(2, loads.get());
+    }
+}
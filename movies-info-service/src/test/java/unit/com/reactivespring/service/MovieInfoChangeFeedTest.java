@@ -0,0 +1,165 @@
+package com.reactivespring.service;
+
+import com.reactivespring.domain.ChangeType;
+import com.reactivespring.domain.MovieInfo;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import reactor.core.Exceptions;
+import reactor.core.scheduler.Schedulers;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MovieInfoChangeFeedTest {
+
+    SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @Test
+    void stream_dropOldest() {
+        var changeFeed = new MovieInfoChangeFeed(2, MovieInfoChangeFeed.OverflowPolicy.DROP_OLDEST, meterRegistry, Schedulers.immediate());
+
+        StepVerifier.create(changeFeed.stream(), 0)
+                .then(() -> {
+                    assertEquals(1.0, meterRegistry.get("movieinfo.stream.subscribers").gauge().value());
+                    for (int i = 0; i < 5; i++) {
+                        changeFeed.publish(ChangeType.ADDED, movieInfo(String.valueOf(i)));
+                    }
+                })
+                .thenRequest(2)
+                .assertNext(change -> assertEquals("3", change.getMovieInfo().getMovieInfoId()))
+                .assertNext(change -> assertEquals("4", change.getMovieInfo().getMovieInfoId()))
+                .thenCancel()
+                .verify();
+
+        assertEquals(3.0, meterRegistry.get("movieinfo.stream.dropped").counter().count());
+        assertEquals(0.0, meterRegistry.get("movieinfo.stream.subscribers").gauge().value());
+    }
+
+    @Test
+    void stream_disconnect() {
+        var changeFeed = new MovieInfoChangeFeed(2, MovieInfoChangeFeed.OverflowPolicy.DISCONNECT, meterRegistry, Schedulers.immediate());
+
+        StepVerifier.create(changeFeed.stream(), 0)
+                .then(() -> {
+                    for (int i = 0; i < 3; i++) {
+                        changeFeed.publish(ChangeType.ADDED, movieInfo(String.valueOf(i)));
+                    }
+                })
+                .thenRequest(2)
+                .expectNextCount(2)
+                .expectErrorMatches(Exceptions::isOverflow)
+                .verify();
+
+        assertEquals(1.0, meterRegistry.get("movieinfo.stream.disconnected").counter().count());
+    }
+
+    @Test
+    void stream_slowSubscriberDoesNotAffectOthers() {
+        var changeFeed = new MovieInfoChangeFeed(1, MovieInfoChangeFeed.OverflowPolicy.DROP_OLDEST, meterRegistry, Schedulers.immediate());
+
+        var fastSubscriber = StepVerifier.create(changeFeed.stream())
+                .expectNextCount(3)
+                .thenCancel()
+                .verifyLater();
+
+        StepVerifier.create(changeFeed.stream(), 0)
+                .then(() -> {
+                    for (int i = 0; i < 3; i++) {
+                        changeFeed.publish(ChangeType.ADDED, movieInfo(String.valueOf(i)));
+                    }
+                })
+                .then(fastSubscriber::verify)
+                .thenRequest(1)
+                .assertNext(change -> assertEquals("2", change.getMovieInfo().getMovieInfoId()))
+                .thenCancel()
+                .verify();
+    }
+
+    // saves on different threads publish at the same moment, none of the changes is lost
+    @Test
+    void publish_concurrent() throws Exception {
+        int publishers = 8;
+        int published = 1_000;
+        var changeFeed = new MovieInfoChangeFeed(publishers * published, MovieInfoChangeFeed.OverflowPolicy.DROP_OLDEST, meterRegistry);
+        var received = changeFeed.stream().take(publishers * published).count().toFuture();
+
+        var start = new CountDownLatch(1);
+        var executor = Executors.newFixedThreadPool(publishers);
+        try {
+            for (int p = 0; p < publishers; p++) {
+                executor.submit(() -> {
+                    start.await();
+                    for (int i = 0; i < published; i++) {
+                        changeFeed.publish(ChangeType.ADDED, movieInfo(String.valueOf(i)));
+                    }
+                    return null;
+                });
+            }
+            start.countDown();
+
+            assertEquals((long) publishers * published, received.get(5, TimeUnit.SECONDS).longValue());
+            assertEquals(0.0, meterRegistry.get("movieinfo.stream.dropped").counter().count());
+        } finally {
+            executor.shutdownNow();
+            changeFeed.stop();
+        }
+    }
+
+    // a subscriber stuck in onNext holds up the feed thread, the saving thread only ever enqueues
+    @Test
+    void publish_doesNotRunSubscribers() throws Exception {
+        var changeFeed = new MovieInfoChangeFeed(4, MovieInfoChangeFeed.OverflowPolicy.DROP_OLDEST, meterRegistry);
+        var feedThread = new AtomicReference<Thread>();
+        var entered = new CountDownLatch(1);
+        var release = new CountDownLatch(1);
+        var received = new AtomicLong();
+        var subscription = changeFeed.stream().subscribe(change -> {
+            feedThread.set(Thread.currentThread());
+            entered.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            received.incrementAndGet();
+        });
+        try {
+            changeFeed.publish(ChangeType.ADDED, movieInfo("0"));
+            assertTrue(entered.await(1, TimeUnit.SECONDS));
+            assertNotSame(Thread.currentThread(), feedThread.get());
+
+            assertTimeoutPreemptively(Duration.ofSeconds(1), () -> {
+                for (int i = 1; i <= 20; i++) {
+                    changeFeed.publish(ChangeType.ADDED, movieInfo(String.valueOf(i)));
+                }
+            });
+            // the handoff queue is bounded, what does not fit is dropped instead of blocking the save
+            long dropped = (long) meterRegistry.get("movieinfo.stream.dropped").counter().count();
+            assertTrue(dropped > 0);
+
+            release.countDown();
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+            while (received.get() + dropped < 21 && System.nanoTime() < deadline) {
+                Thread.sleep(10);
+            }
+            assertEquals(21, received.get() + dropped);
+        } finally {
+            release.countDown();
+            subscription.dispose();
+            changeFeed.stop();
+        }
+    }
+
+    private MovieInfo movieInfo(String id) {
+        return new MovieInfo(id, "Batman Begins", 2005, List.of("Christian Bale"), LocalDate.parse("2005-06-15"));
+    }
+}
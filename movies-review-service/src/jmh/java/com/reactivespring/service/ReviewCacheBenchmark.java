@@ -0,0 +1,56 @@
+package com.reactivespring.service;
+
+import com.reactivespring.domain.Review;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+// lookup cost of the primitive-keyed map against the boxed Map<Long, List<Review>> it replaces
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class ReviewCacheBenchmark {
+
+    @Param("100000")
+    int movies;
+
+    @Param("10")
+    int reviewsPerMovie;
+
+    LongReviewSliceMap sliceMap;
+
+    Map<Long, List<Review>> boxedMap;
+
+    @Setup
+    public void setUp() {
+        sliceMap = new LongReviewSliceMap(movies);
+        boxedMap = new HashMap<>();
+        for (long movieInfoId = 0; movieInfoId < movies; movieInfoId++) {
+            var reviews = ReviewCacheFootprint.reviews(movieInfoId, reviewsPerMovie);
+            sliceMap.put(movieInfoId, ReviewSlice.of(reviews));
+            boxedMap.put(movieInfoId, new ArrayList<>(reviews));
+        }
+    }
+
+    @Benchmark
+    public ReviewSlice sliceMapGet() {
+        return sliceMap.get(ThreadLocalRandom.current().nextLong(movies));
+    }
+
+    @Benchmark
+    public List<Review> boxedMapGet() {
+        return boxedMap.get(ThreadLocalRandom.current().nextLong(movies));
+    }
+
+    // includes materializing the Review objects a response needs
+    @Benchmark
+    public List<Review> sliceMapGetReviews() {
+        long movieInfoId = ThreadLocalRandom.current().nextLong(movies);
+        return sliceMap.get(movieInfoId).toReviews(movieInfoId);
+    }
+}
@@ -0,0 +1,75 @@
+package com.reactivespring.service;
+
+import com.reactivespring.domain.Review;
+
+import java.lang.ref.Reference;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+
+// retained heap of the primitive-keyed map against Map<Long, List<Review>> holding the same reviews.
+// ./gradlew reviewCacheFootprint -Pmovies=100000 -PreviewsPerMovie=10
+public class ReviewCacheFootprint {
+
+    public static void main(String[] args) {
+        int movies = args.length > 0 ? Integer.parseInt(args[0]) : 100_000;
+        int reviewsPerMovie = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+
+        // review ids and comments are shared by both structures and not part of the comparison, so they are built up front
+        var reviews = new ArrayList<List<Review>>(movies);
+        for (long movieInfoId = 0; movieInfoId < movies; movieInfoId++) {
+            reviews.add(reviews(movieInfoId, reviewsPerMovie));
+        }
+
+        long boxed = retained(() -> {
+            Map<Long, List<Review>> boxedMap = new HashMap<>();
+            for (int movieInfoId = 0; movieInfoId < movies; movieInfoId++) {
+                var copies = new ArrayList<Review>(reviewsPerMovie);
+                for (var review : reviews.get(movieInfoId)) {
+                    copies.add(new Review(review.getReviewId(), Long.valueOf(review.getMovieInfoId()), review.getComment(),
+                            Double.valueOf(review.getRating())));
+                }
+                boxedMap.put((long) movieInfoId, copies);
+            }
+            return boxedMap;
+        });
+        long primitive = retained(() -> {
+            var sliceMap = new LongReviewSliceMap(movies);
+            for (int movieInfoId = 0; movieInfoId < movies; movieInfoId++) {
+                sliceMap.put(movieInfoId, ReviewSlice.of(reviews.get(movieInfoId)));
+            }
+            return sliceMap;
+        });
+
+        System.out.printf("%d movies x %d reviews%n", movies, reviewsPerMovie);
+        System.out.printf("Map<Long, List<Review>> : %,d bytes (%.1f per review)%n", boxed, (double) boxed / movies / reviewsPerMovie);
+        System.out.printf("LongReviewSliceMap      : %,d bytes (%.1f per review)%n", primitive, (double) primitive / movies / reviewsPerMovie);
+        System.out.printf("saved                   : %.0f%%%n", 100.0 * (boxed - primitive) / boxed);
+    }
+
+    static List<Review> reviews(long movieInfoId, int reviewsPerMovie) {
+        var reviews = new ArrayList<Review>(reviewsPerMovie);
+        for (int i = 0; i < reviewsPerMovie; i++) {
+            reviews.add(new Review(String.format("%016x%08x", movieInfoId, i), movieInfoId, "Awesome Movie " + i, (double) (i % 10)));
+        }
+        return reviews;
+    }
+
+    private static long retained(Supplier<Object> build) {
+        long before = usedHeap();
+        var retained = build.get();
+        long after = usedHeap();
+        Reference.reachabilityFence(retained);
+        return after - before;
+    }
+
+    private static long usedHeap() {
+        var runtime = Runtime.getRuntime();
+        for (int i = 0; i < 5; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
@@ -0,0 +1,65 @@
+package com.reactivespring.service;
+
+import com.reactivespring.domain.ReviewRanking;
+import com.reactivespring.domain.ReviewStats;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+// update and top-k cost of the leaderboard with one million ranked movies
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class ReviewLeaderboardBenchmark {
+
+    @Param("1000000")
+    int movies;
+
+    @Param({"10", "100"})
+    int k;
+
+    ReviewLeaderboard reviewLeaderboard;
+
+    @Setup
+    public void setUp() {
+        // seeding reads from Mongo, the benchmark fills the leaderboard directly instead
+        reviewLeaderboard = new ReviewLeaderboard(null);
+        var random = ThreadLocalRandom.current();
+        for (long movieInfoId = 0; movieInfoId < movies; movieInfoId++) {
+            long count = 1 + random.nextInt(500);
+            reviewLeaderboard.update(reviewStats(movieInfoId, count, count * random.nextDouble(0, 10)));
+        }
+    }
+
+    @Benchmark
+    @Threads(1)
+    public void update() {
+        var random = ThreadLocalRandom.current();
+        long count = 1 + random.nextInt(500);
+        reviewLeaderboard.update(reviewStats(random.nextLong(movies), count, count * random.nextDouble(0, 10)));
+    }
+
+    // many event loops updating different movies at once
+    @Benchmark
+    @Threads(4)
+    public void updateContended() {
+        update();
+    }
+
+    @Benchmark
+    public List<ReviewRanking> top() {
+        return reviewLeaderboard.top(k, 1);
+    }
+
+    @Benchmark
+    public List<ReviewRanking> topWithMinReviews() {
+        return reviewLeaderboard.top(k, 100);
+    }
+
+    private static ReviewStats reviewStats(long movieInfoId, long count, double sum) {
+        return new ReviewStats(movieInfoId, count, sum, null, null, new HashMap<>(), null);
+    }
+}
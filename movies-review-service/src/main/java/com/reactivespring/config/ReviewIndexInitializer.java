@@ -0,0 +1,27 @@
+package com.reactivespring.config;
+
+import com.reactivespring.repository.ReviewReactiveRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+// creates the indexes declared on Review in the background once the application is up;
+// queries served before they exist fall back to collection scans
+@Slf4j
+@Component
+public class ReviewIndexInitializer {
+
+    private ReviewReactiveRepository reviewReactiveRepository;
+
+    public ReviewIndexInitializer(ReviewReactiveRepository reviewReactiveRepository) {
+        this.reviewReactiveRepository = reviewReactiveRepository;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void ensureIndexes() {
+        reviewReactiveRepository.ensureIndexes()
+                .subscribe(index -> log.info("Review index {} is in place", index),
+                        throwable -> log.error("Could not create the review indexes : {}", throwable.getMessage(), throwable));
+    }
+}
@@ -0,0 +1,17 @@
+package com.reactivespring.domain;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+// reviews created for one movie over the trailing windows, shortest window first
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ReviewActivity {
+
+    private Long movieInfoId;
+    private List<ReviewWindow> windows;
+}
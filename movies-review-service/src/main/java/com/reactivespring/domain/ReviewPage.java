@@ -0,0 +1,27 @@
+package com.reactivespring.domain;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+// reviews of one movie, newest first; nextReviewsToken is null on the last page
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ReviewPage {
+
+    private Long movieInfoId;
+    private List<Review> reviews;
+    private String nextReviewsToken;
+
+    // reviews holds up to limit + 1 entries, the extra one only tells that another page exists
+    public static ReviewPage of(Long movieInfoId, List<Review> reviews, int limit) {
+        if (reviews.size() <= limit) {
+            return new ReviewPage(movieInfoId, reviews, null);
+        }
+        var page = reviews.subList(0, limit);
+        return new ReviewPage(movieInfoId, List.copyOf(page), page.get(limit - 1).getReviewId());
+    }
+}
@@ -0,0 +1,48 @@
+package com.reactivespring.domain;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.Map;
+
+// rating aggregate of one movie, kept up to date by ReviewStatsService as reviews change
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Document
+public class ReviewStats {
+
+    @Id
+    private Long movieInfoId;
+    private long count;
+    private double sum;
+    private Double min;
+    private Double max;
+    // rating rounded down to a whole number -> number of reviews
+    private Map<String, Long> histogram = new HashMap<>();
+    private Instant updatedAt;
+    // incremented by every write of the aggregate, so a reader can tell which of two copies is newer
+    private long version;
+
+    public ReviewStats(Long movieInfoId, long count, double sum, Double min, Double max, Map<String, Long> histogram,
+                       Instant updatedAt) {
+        this(movieInfoId, count, sum, min, max, histogram, updatedAt, 0);
+    }
+
+    public Double getAverage() {
+        return count == 0 ? null : sum / count;
+    }
+
+    public static String bucket(double rating) {
+        return String.valueOf((long) Math.floor(rating));
+    }
+
+    public static ReviewStats empty(Long movieInfoId) {
+        return new ReviewStats(movieInfoId, 0, 0, null, null, new HashMap<>(), null);
+    }
+}
@@ -0,0 +1,18 @@
+package com.reactivespring.domain;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.Duration;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ReviewWindow {
+
+    private Duration window;
+    private long count;
+    private Double averageRating;
+    private double reviewsPerMinute;
+}
@@ -0,0 +1,10 @@
+package com.reactivespring.exception;
+
+public class ReviewQueueFullException extends RuntimeException {
+    private String message;
+
+    public ReviewQueueFullException(String message) {
+        super(message);
+        this.message = message;
+    }
+}
@@ -0,0 +1,10 @@
+package com.reactivespring.exception;
+
+public class ReviewStatsRebuildingException extends RuntimeException {
+    private String message;
+
+    public ReviewStatsRebuildingException(String message) {
+        super(message);
+        this.message = message;
+    }
+}
@@ -0,0 +1,44 @@
+package com.reactivespring.exceptionhandler;
+
+import com.reactivespring.exception.ReviewDataException;
+import com.reactivespring.exception.ReviewNotFoundException;
+import com.reactivespring.exception.ReviewQueueFullException;
+import com.reactivespring.exception.ReviewStatsRebuildingException;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.web.reactive.error.ErrorWebExceptionHandler;
+import org.springframework.core.annotation.Order;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.Mono;
+
+import java.nio.charset.StandardCharsets;
+
+// ahead of Boot's DefaultErrorWebExceptionHandler, which is registered at -1
+@Component
+@Order(-2)
+@Slf4j
+public class GlobalErrorHandler implements ErrorWebExceptionHandler {
+
+    @Override
+    public Mono<Void> handle(ServerWebExchange exchange, Throwable ex) {
+        log.error("Exception caught in GlobalErrorHandler : {} ", ex.getMessage(), ex);
+        var response = exchange.getResponse();
+        if (ex instanceof ReviewDataException) {
+            response.setStatusCode(HttpStatus.BAD_REQUEST);
+        } else if (ex instanceof ReviewNotFoundException) {
+            response.setStatusCode(HttpStatus.NOT_FOUND);
+        } else if (ex instanceof ReviewQueueFullException || ex instanceof ReviewStatsRebuildingException) {
+            response.setStatusCode(HttpStatus.SERVICE_UNAVAILABLE);
+            response.getHeaders().set(HttpHeaders.RETRY_AFTER, "1");
+        } else if (ex instanceof ResponseStatusException) {
+            response.setStatusCode(((ResponseStatusException) ex).getStatus());
+        } else {
+            response.setStatusCode(HttpStatus.INTERNAL_SERVER_ERROR);
+        }
+        var errorMessage = response.bufferFactory().wrap(String.valueOf(ex.getMessage()).getBytes(StandardCharsets.UTF_8));
+        return response.writeWith(Mono.just(errorMessage));
+    }
+}
@@ -0,0 +1,235 @@
+package com.reactivespring.handler;
+
+import com.reactivespring.domain.ChangeType;
+import com.reactivespring.domain.Review;
+import com.reactivespring.domain.ReviewChange;
+import com.reactivespring.domain.ReviewPage;
+import com.reactivespring.exception.ReviewDataException;
+import com.reactivespring.exception.ReviewNotFoundException;
+import com.reactivespring.repository.ReviewReactiveRepository;
+import com.reactivespring.service.ReviewActivityTracker;
+import com.reactivespring.service.ReviewCache;
+import com.reactivespring.service.ReviewChangeFeed;
+import com.reactivespring.service.ReviewLeaderboard;
+import com.reactivespring.service.ReviewStatsService;
+import com.reactivespring.service.ReviewWriteBehind;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.server.ServerRequest;
+import org.springframework.web.reactive.function.server.ServerResponse;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import javax.validation.ConstraintViolation;
+import javax.validation.Validator;
+import java.time.Instant;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+@Component
+public class ReviewHandler {
+
+    public static final int MAX_TOP_K = 1000;
+
+    public static final int MAX_MOVIE_INFO_IDS = 100;
+
+    public static final int MAX_PAGE_SIZE = 100;
+
+    private ReviewReactiveRepository reviewReactiveRepository;
+
+    private ReviewStatsService reviewStatsService;
+
+    private ReviewWriteBehind reviewWriteBehind;
+
+    private ReviewChangeFeed reviewChangeFeed;
+
+    private ReviewLeaderboard reviewLeaderboard;
+
+    private ReviewCache reviewCache;
+
+    private ReviewActivityTracker reviewActivityTracker;
+
+    private Validator validator;
+
+    public ReviewHandler(ReviewReactiveRepository reviewReactiveRepository,
+                         ReviewStatsService reviewStatsService,
+                         ReviewWriteBehind reviewWriteBehind,
+                         ReviewChangeFeed reviewChangeFeed,
+                         ReviewLeaderboard reviewLeaderboard,
+                         ReviewCache reviewCache,
+                         ReviewActivityTracker reviewActivityTracker,
+                         Validator validator) {
+        this.reviewReactiveRepository = reviewReactiveRepository;
+        this.reviewStatsService = reviewStatsService;
+        this.reviewWriteBehind = reviewWriteBehind;
+        this.reviewChangeFeed = reviewChangeFeed;
+        this.reviewLeaderboard = reviewLeaderboard;
+        this.reviewCache = reviewCache;
+        this.reviewActivityTracker = reviewActivityTracker;
+        this.validator = validator;
+    }
+
+    public Mono<ServerResponse> addReview(ServerRequest request) {
+        if (reviewWriteBehind.isEnabled()) {
+            // accepted now, written with the next batch
+            return request.bodyToMono(Review.class)
+                    .doOnNext(this::validate)
+                    .doOnNext(review -> review.setCreatedAt(Instant.now()))
+                    .flatMap(reviewWriteBehind::enqueue)
+                    .flatMap(ServerResponse.status(HttpStatus.ACCEPTED)::bodyValue);
+        }
+        return request.bodyToMono(Review.class)
+                .doOnNext(this::validate)
+                .doOnNext(review -> review.setCreatedAt(Instant.now()))
+                .flatMap(review -> reviewStatsService.guardWrite(reviewReactiveRepository.save(review)
+                        .doOnNext(savedReview -> reviewCache.invalidate(savedReview.getMovieInfoId()))
+                        .doOnNext(reviewActivityTracker::record)
+                        .flatMap(savedReview -> reviewStatsService.recordAdded(savedReview).thenReturn(savedReview))))
+                .doOnNext(savedReview -> reviewChangeFeed.publish(ChangeType.ADDED, savedReview))
+                .flatMap(ServerResponse.status(HttpStatus.CREATED)::bodyValue);
+    }
+
+    // served from the movieInfoId index when the query parameter is present
+    public Mono<ServerResponse> getReviews(ServerRequest request) {
+        var movieInfoId = request.queryParam("movieInfoId");
+        if (movieInfoId.isPresent()) {
+            return parseMovieInfoId(movieInfoId.get())
+                    .flatMap(id -> buildReviewsResponse(reviewCache.findReviewsByMovieInfoId(id, reviewReactiveRepository::findReviewsByMovieInfoId)));
+        }
+        var movieInfoIds = request.queryParam("movieInfoIds");
+        if (movieInfoIds.isPresent()) {
+            return Flux.fromArray(movieInfoIds.get().split(","))
+                    .concatMap(this::parseMovieInfoId)
+                    .collect(Collectors.toCollection(LinkedHashSet::new))
+                    .filter(ids -> !ids.isEmpty() && ids.size() <= MAX_MOVIE_INFO_IDS)
+                    .switchIfEmpty(Mono.error(new ReviewDataException("movieInfoIds must hold between 1 and " + MAX_MOVIE_INFO_IDS + " values")))
+                    .flatMap(ids -> buildReviewsResponse(reviewReactiveRepository.findReviewsByMovieInfoIdIn(ids)));
+        }
+        return buildReviewsResponse(reviewReactiveRepository.findAll());
+    }
+
+    // one extra review is fetched to tell whether another page follows, the rest are never read
+    public Mono<ServerResponse> getReviewsPage(ServerRequest request) {
+        int limit;
+        try {
+            limit = Integer.parseInt(request.queryParam("limit").orElse("10"));
+        } catch (NumberFormatException ex) {
+            return Mono.error(new ReviewDataException("limit must be a number"));
+        }
+        if (limit < 1 || limit > MAX_PAGE_SIZE) {
+            return Mono.error(new ReviewDataException("limit must be between 1 and " + MAX_PAGE_SIZE));
+        }
+        var afterReviewId = request.queryParam("after").orElse(null);
+        return request.queryParam("movieInfoId")
+                .map(this::parseMovieInfoId)
+                .orElseGet(() -> Mono.error(new ReviewDataException("movieInfoId must be present")))
+                .flatMap(id -> reviewReactiveRepository.findReviewsPage(id, afterReviewId, limit + 1)
+                        .collectList()
+                        .map(reviews -> ReviewPage.of(id, reviews, limit)))
+                .flatMap(ServerResponse.ok()::bodyValue);
+    }
+
+    public Mono<ServerResponse> getReviewsStream(ServerRequest request) {
+        var movieInfoId = request.queryParam("movieInfoId");
+        var changes = movieInfoId.isPresent()
+                ? parseMovieInfoId(movieInfoId.get()).flatMapMany(reviewChangeFeed::stream)
+                : reviewChangeFeed.stream();
+        return ServerResponse.ok()
+                .contentType(MediaType.TEXT_EVENT_STREAM)
+                .body(changes, ReviewChange.class);
+    }
+
+    // one findAndModify; the stats delta is taken from the rating it replaced, not from an earlier read
+    public Mono<ServerResponse> updateReview(ServerRequest request) {
+        var reviewId = request.pathVariable("id");
+        return request.bodyToMono(Review.class)
+                // movieInfoId and the id come from the stored review, only the rating is checked
+                .doOnNext(reqReview -> reject(validator.validateProperty(reqReview, "rating")))
+                .flatMap(reqReview -> reviewStatsService.guardWrite(reviewReactiveRepository.findAndUpdateById(reviewId, reqReview.getComment(), reqReview.getRating())
+                        .switchIfEmpty(Mono.error(new ReviewNotFoundException("Review not found for the given Review id " + reviewId)))
+                        .flatMap(previousReview -> {
+                            var savedReview = new Review(previousReview.getReviewId(), previousReview.getMovieInfoId(),
+                                    reqReview.getComment(), reqReview.getRating(), previousReview.getCreatedAt());
+                            reviewCache.invalidate(savedReview.getMovieInfoId());
+                            return reviewStatsService.recordUpdated(savedReview.getMovieInfoId(), previousReview.getRating(), savedReview.getRating())
+                                    .thenReturn(savedReview);
+                        })))
+                .doOnNext(savedReview -> reviewChangeFeed.publish(ChangeType.UPDATED, savedReview))
+                .flatMap(ServerResponse.ok()::bodyValue);
+    }
+
+    public Mono<ServerResponse> deleteReview(ServerRequest request) {
+        var reviewId = request.pathVariable("id");
+        return reviewStatsService.guardWrite(reviewReactiveRepository.findAndRemoveById(reviewId)
+                        .doOnNext(removedReview -> reviewCache.invalidate(removedReview.getMovieInfoId()))
+                        .flatMap(removedReview -> reviewStatsService.recordRemoved(removedReview).thenReturn(removedReview)))
+                .doOnNext(removedReview -> reviewChangeFeed.publish(ChangeType.REMOVED, removedReview))
+                .then(ServerResponse.noContent().build());
+    }
+
+    public Mono<ServerResponse> getReviewStats(ServerRequest request) {
+        return request.queryParam("movieInfoId")
+                .map(this::parseMovieInfoId)
+                .orElseGet(() -> Mono.error(new ReviewDataException("movieInfoId must be present")))
+                .flatMap(reviewStatsService::getReviewStats)
+                .flatMap(ServerResponse.ok()::bodyValue);
+    }
+
+    // served from memory, Mongo is not queried
+    public Mono<ServerResponse> getTopRatedMovies(ServerRequest request) {
+        int k;
+        long minReviews;
+        try {
+            k = Integer.parseInt(request.queryParam("k").orElse("10"));
+            minReviews = Long.parseLong(request.queryParam("minReviews").orElse("1"));
+        } catch (NumberFormatException ex) {
+            return Mono.error(new ReviewDataException("k and minReviews must be numbers"));
+        }
+        if (k < 1 || k > MAX_TOP_K) {
+            return Mono.error(new ReviewDataException("k must be between 1 and " + MAX_TOP_K));
+        }
+        return ServerResponse.ok().bodyValue(reviewLeaderboard.top(k, minReviews));
+    }
+
+    public Mono<ServerResponse> getReviewActivity(ServerRequest request) {
+        return request.queryParam("movieInfoId")
+                .map(this::parseMovieInfoId)
+                .orElseGet(() -> Mono.error(new ReviewDataException("movieInfoId must be present")))
+                .map(reviewActivityTracker::getReviewActivity)
+                .flatMap(ServerResponse.ok()::bodyValue);
+    }
+
+    public Mono<ServerResponse> rebuildReviewStats(ServerRequest request) {
+        return reviewStatsService.rebuildReviewStats()
+                .flatMap(rebuilt -> ServerResponse.ok().bodyValue(Map.of("rebuilt", rebuilt)));
+    }
+
+    private Mono<ServerResponse> buildReviewsResponse(Flux<Review> reviews) {
+        return ServerResponse.ok().body(reviews, Review.class);
+    }
+
+    private Mono<Long> parseMovieInfoId(String movieInfoId) {
+        try {
+            return Mono.just(Long.valueOf(movieInfoId));
+        } catch (NumberFormatException ex) {
+            return Mono.error(new ReviewDataException("movieInfoId must be a number : " + movieInfoId));
+        }
+    }
+
+    private void validate(Review review) {
+        reject(validator.validate(review));
+    }
+
+    private void reject(Set<ConstraintViolation<Review>> constraintViolations) {
+        if (!constraintViolations.isEmpty()) {
+            var errorMessage = constraintViolations.stream()
+                    .map(ConstraintViolation::getMessage)
+                    .sorted()
+                    .collect(Collectors.joining(","));
+            throw new ReviewDataException(errorMessage);
+        }
+    }
+}
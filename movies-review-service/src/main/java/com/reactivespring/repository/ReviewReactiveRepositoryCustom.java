@@ -0,0 +1,26 @@
+package com.reactivespring.repository;
+
+import com.reactivespring.domain.Review;
+import com.reactivespring.domain.ReviewStats;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+import java.util.Map;
+
+public interface ReviewReactiveRepositoryCustom {
+
+    Flux<String> ensureIndexes();
+
+    Mono<Map<Integer, String>> insertUnordered(List<Review> reviews);
+
+    Mono<Review> findAndRemoveById(String reviewId);
+
+    Mono<Review> findAndUpdateById(String reviewId, String comment, Double rating);
+
+    Mono<ReviewStats> findRatingRange(Long movieInfoId);
+
+    Flux<Review> findReviewsPage(Long movieInfoId, String afterReviewId, int limit);
+
+    Flux<ReviewStats> aggregateReviewStats();
+}
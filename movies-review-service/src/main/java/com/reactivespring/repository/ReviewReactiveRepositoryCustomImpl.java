@@ -0,0 +1,152 @@
+package com.reactivespring.repository;
+
+import com.mongodb.MongoBulkWriteException;
+import com.mongodb.bulk.BulkWriteError;
+import com.mongodb.client.model.InsertManyOptions;
+import com.reactivespring.domain.Review;
+import com.reactivespring.domain.ReviewStats;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.aggregation.AggregationOperation;
+import org.springframework.data.mongodb.core.aggregation.AggregationOptions;
+import org.springframework.data.mongodb.core.index.MongoPersistentEntityIndexResolver;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+public class ReviewReactiveRepositoryCustomImpl implements ReviewReactiveRepositoryCustom {
+
+    private ReactiveMongoTemplate reactiveMongoTemplate;
+
+    public ReviewReactiveRepositoryCustomImpl(ReactiveMongoTemplate reactiveMongoTemplate) {
+        this.reactiveMongoTemplate = reactiveMongoTemplate;
+    }
+
+    // creates the indexes declared on Review, a no-op for the ones that already exist
+    @Override
+    public Flux<String> ensureIndexes() {
+        var indexOperations = reactiveMongoTemplate.indexOps(Review.class);
+        var indexResolver = new MongoPersistentEntityIndexResolver(reactiveMongoTemplate.getConverter().getMappingContext());
+        return Flux.fromIterable(indexResolver.resolveIndexFor(Review.class))
+                .concatMap(indexOperations::ensureIndex);
+    }
+
+    // one unordered insertMany per batch; the result maps failed positions in the batch to their error
+    @Override
+    public Mono<Map<Integer, String>> insertUnordered(List<Review> reviews) {
+        var documents = reviews.stream()
+                .map(review -> {
+                    if (review.getReviewId() == null) {
+                        review.setReviewId(ObjectId.get().toHexString());
+                    }
+                    var document = new Document();
+                    reactiveMongoTemplate.getConverter().write(review, document);
+                    return document;
+                })
+                .collect(Collectors.toList());
+        return reactiveMongoTemplate.getCollection(reactiveMongoTemplate.getCollectionName(Review.class))
+                .flatMap(collection -> Mono.from(collection.insertMany(documents, new InsertManyOptions().ordered(false))))
+                .map(insertManyResult -> Map.<Integer, String>of())
+                .onErrorResume(MongoBulkWriteException.class, ex -> Mono.just(ex.getWriteErrors().stream()
+                        .collect(Collectors.toMap(BulkWriteError::getIndex, BulkWriteError::getMessage))));
+    }
+
+    // returns the removed review, so callers know what was deleted without a separate read
+    @Override
+    public Mono<Review> findAndRemoveById(String reviewId) {
+        return reactiveMongoTemplate.findAndRemove(Query.query(Criteria.where("reviewId").is(reviewId)), Review.class);
+    }
+
+    // returns the review as it was right before this update, so the caller's rating delta is exact
+    // even when the same review is updated concurrently
+    @Override
+    public Mono<Review> findAndUpdateById(String reviewId, String comment, Double rating) {
+        var update = new Update()
+                .set("comment", comment)
+                .set("rating", rating);
+        return reactiveMongoTemplate.findAndModify(Query.query(Criteria.where("reviewId").is(reviewId)),
+                update,
+                FindAndModifyOptions.options().returnNew(false),
+                Review.class);
+    }
+
+    // lowest and highest rating of one movie, read through the movieInfoId index
+    @Override
+    public Mono<ReviewStats> findRatingRange(Long movieInfoId) {
+        AggregationOperation match = context -> new Document("$match", new Document("movieInfoId", movieInfoId)
+                .append("rating", new Document("$ne", null)));
+        AggregationOperation group = context -> new Document("$group", new Document("_id", "$movieInfoId")
+                .append("min", new Document("$min", "$rating"))
+                .append("max", new Document("$max", "$rating")));
+        return reactiveMongoTemplate.aggregate(Aggregation.newAggregation(match, group), Review.class, Document.class)
+                .next()
+                .map(document -> {
+                    var range = ReviewStats.empty(movieInfoId);
+                    range.setMin(document.getDouble("min"));
+                    range.setMax(document.getDouble("max"));
+                    return range;
+                });
+    }
+
+    // newest first by id, which is creation order for generated ids; only limit documents are read from the
+    // movieInfoId_reviewId index, starting below afterReviewId when given
+    @Override
+    public Flux<Review> findReviewsPage(Long movieInfoId, String afterReviewId, int limit) {
+        var criteria = Criteria.where("movieInfoId").is(movieInfoId);
+        if (afterReviewId != null) {
+            criteria = criteria.and("reviewId").lt(afterReviewId);
+        }
+        var query = Query.query(criteria)
+                .with(Sort.by(Sort.Direction.DESC, "reviewId"))
+                .limit(limit);
+        return reactiveMongoTemplate.find(query, Review.class);
+    }
+
+    // one aggregate per movie, streamed from the server cursor; groups spill to disk instead of failing on large collections
+    @Override
+    public Flux<ReviewStats> aggregateReviewStats() {
+        AggregationOperation match = context -> new Document("$match", new Document("movieInfoId", new Document("$ne", null))
+                .append("rating", new Document("$ne", null)));
+        AggregationOperation groupByBucket = context -> new Document("$group", new Document("_id", new Document("movieInfoId", "$movieInfoId")
+                        .append("bucket", new Document("$floor", "$rating")))
+                .append("count", new Document("$sum", 1))
+                .append("sum", new Document("$sum", "$rating"))
+                .append("min", new Document("$min", "$rating"))
+                .append("max", new Document("$max", "$rating")));
+        AggregationOperation groupByMovie = context -> new Document("$group", new Document("_id", "$_id.movieInfoId")
+                .append("count", new Document("$sum", "$count"))
+                .append("sum", new Document("$sum", "$sum"))
+                .append("min", new Document("$min", "$min"))
+                .append("max", new Document("$max", "$max"))
+                .append("histogram", new Document("$push", new Document("bucket", "$_id.bucket").append("count", "$count"))));
+        var aggregation = Aggregation.newAggregation(match, groupByBucket, groupByMovie)
+                .withOptions(AggregationOptions.builder().allowDiskUse(true).build());
+        return reactiveMongoTemplate.aggregate(aggregation, Review.class, Document.class)
+                .map(ReviewReactiveRepositoryCustomImpl::toReviewStats);
+    }
+
+    private static ReviewStats toReviewStats(Document document) {
+        var histogram = new HashMap<String, Long>();
+        document.getList("histogram", Document.class, List.of())
+                .forEach(bucket -> histogram.put(ReviewStats.bucket(((Number) bucket.get("bucket")).doubleValue()),
+                        ((Number) bucket.get("count")).longValue()));
+        return new ReviewStats(((Number) document.get("_id")).longValue(),
+                ((Number) document.get("count")).longValue(),
+                ((Number) document.get("sum")).doubleValue(),
+                document.getDouble("min"),
+                document.getDouble("max"),
+                histogram,
+                null);
+    }
+}
@@ -0,0 +1,18 @@
+package com.reactivespring.repository;
+
+import com.reactivespring.domain.ReviewStats;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Instant;
+
+public interface ReviewStatsRepositoryCustom {
+
+    Mono<ReviewStats> applyDelta(ReviewStats delta);
+
+    Mono<ReviewStats> setRange(Long movieInfoId, long count, double sum, Double min, Double max);
+
+    Mono<ReviewStats> replace(ReviewStats reviewStats);
+
+    Flux<ReviewStats> removeUpdatedBefore(Instant updatedAt);
+}
@@ -0,0 +1,93 @@
+package com.reactivespring.repository;
+
+import com.reactivespring.domain.ReviewStats;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Instant;
+
+public class ReviewStatsRepositoryCustomImpl implements ReviewStatsRepositoryCustom {
+
+    private ReactiveMongoTemplate reactiveMongoTemplate;
+
+    public ReviewStatsRepositoryCustomImpl(ReactiveMongoTemplate reactiveMongoTemplate) {
+        this.reactiveMongoTemplate = reactiveMongoTemplate;
+    }
+
+    // one atomic findAndModify; min and max of the delta are only ever pushed outwards with $min/$max
+    @Override
+    public Mono<ReviewStats> applyDelta(ReviewStats delta) {
+        var update = new Update()
+                .inc("count", delta.getCount())
+                .inc("sum", delta.getSum())
+                .inc("version", 1)
+                .set("updatedAt", Instant.now());
+        delta.getHistogram().forEach((bucket, count) -> update.inc("histogram." + bucket, count));
+        if (delta.getMin() != null) {
+            update.min("min", delta.getMin());
+        }
+        if (delta.getMax() != null) {
+            update.max("max", delta.getMax());
+        }
+        return reactiveMongoTemplate.findAndModify(byMovieInfoId(delta.getMovieInfoId()),
+                update,
+                // a removal must not create the aggregate of a movie that was never counted
+                FindAndModifyOptions.options().returnNew(true).upsert(delta.getCount() > 0),
+                ReviewStats.class);
+    }
+
+    // only overwrites min and max while count and sum are still the ones the range was read at,
+    // empty when a delta was applied in between
+    @Override
+    public Mono<ReviewStats> setRange(Long movieInfoId, long count, double sum, Double min, Double max) {
+        var update = new Update().inc("version", 1);
+        if (min == null) {
+            update.unset("min");
+        } else {
+            update.set("min", min);
+        }
+        if (max == null) {
+            update.unset("max");
+        } else {
+            update.set("max", max);
+        }
+        var query = Query.query(Criteria.where("movieInfoId").is(movieInfoId)
+                .and("count").is(count)
+                .and("sum").is(sum));
+        return reactiveMongoTemplate.findAndModify(query,
+                update,
+                FindAndModifyOptions.options().returnNew(true),
+                ReviewStats.class);
+    }
+
+    @Override
+    public Mono<ReviewStats> replace(ReviewStats reviewStats) {
+        var update = new Update()
+                .set("count", reviewStats.getCount())
+                .set("sum", reviewStats.getSum())
+                .set("min", reviewStats.getMin())
+                .set("max", reviewStats.getMax())
+                .set("histogram", reviewStats.getHistogram())
+                .inc("version", 1)
+                .set("updatedAt", Instant.now());
+        return reactiveMongoTemplate.findAndModify(byMovieInfoId(reviewStats.getMovieInfoId()),
+                update,
+                FindAndModifyOptions.options().returnNew(true).upsert(true),
+                ReviewStats.class);
+    }
+
+    // emits the removed aggregates so in-memory views can drop them too
+    @Override
+    public Flux<ReviewStats> removeUpdatedBefore(Instant updatedAt) {
+        return reactiveMongoTemplate.findAllAndRemove(Query.query(Criteria.where("updatedAt").lt(updatedAt)), ReviewStats.class);
+    }
+
+    private static Query byMovieInfoId(Long movieInfoId) {
+        return Query.query(Criteria.where("movieInfoId").is(movieInfoId));
+    }
+}
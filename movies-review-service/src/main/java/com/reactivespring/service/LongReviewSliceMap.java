@@ -0,0 +1,131 @@
+package com.reactivespring.service;
+
+import java.util.Arrays;
+
+// open-addressing map from a primitive long to a ReviewSlice: linear probing, backward-shift deletion,
+// and CLOCK eviction once maxEntries is reached. Not thread safe, callers guard it.
+final class LongReviewSliceMap {
+
+    private static final double LOAD_FACTOR = 0.75;
+
+    private final long[] keys;
+
+    // a null value marks a free slot, so every long, 0 included, is a valid key
+    private final ReviewSlice[] values;
+
+    private final boolean[] referenced;
+
+    private final int mask;
+
+    private final int maxEntries;
+
+    private int size;
+
+    private int clockHand;
+
+    LongReviewSliceMap(int maxEntries) {
+        int capacity = Integer.highestOneBit((int) Math.ceil(maxEntries / LOAD_FACTOR) - 1) << 1;
+        this.keys = new long[Math.max(capacity, 2)];
+        this.values = new ReviewSlice[keys.length];
+        this.referenced = new boolean[keys.length];
+        this.mask = keys.length - 1;
+        this.maxEntries = maxEntries;
+    }
+
+    ReviewSlice get(long key) {
+        for (int slot = slot(key); values[slot] != null; slot = (slot + 1) & mask) {
+            if (keys[slot] == key) {
+                referenced[slot] = true;
+                return values[slot];
+            }
+        }
+        return null;
+    }
+
+    void put(long key, ReviewSlice value) {
+        int slot = slot(key);
+        for (; values[slot] != null; slot = (slot + 1) & mask) {
+            if (keys[slot] == key) {
+                values[slot] = value;
+                referenced[slot] = true;
+                return;
+            }
+        }
+        if (size == maxEntries) {
+            evict();
+            // the eviction may have shifted entries into the probe chain, look for a free slot again
+            slot = slot(key);
+            while (values[slot] != null) {
+                slot = (slot + 1) & mask;
+            }
+        }
+        keys[slot] = key;
+        values[slot] = value;
+        referenced[slot] = false;
+        size++;
+    }
+
+    boolean remove(long key) {
+        for (int slot = slot(key); values[slot] != null; slot = (slot + 1) & mask) {
+            if (keys[slot] == key) {
+                removeAt(slot);
+                return true;
+            }
+        }
+        return false;
+    }
+
+    void clear() {
+        Arrays.fill(values, null);
+        Arrays.fill(referenced, false);
+        size = 0;
+    }
+
+    int size() {
+        return size;
+    }
+
+    // second chance: referenced entries get their bit cleared and are skipped once, the first unreferenced one goes
+    private void evict() {
+        while (true) {
+            int slot = clockHand;
+            clockHand = (clockHand + 1) & mask;
+            if (values[slot] == null) {
+                continue;
+            }
+            if (referenced[slot]) {
+                referenced[slot] = false;
+            } else {
+                removeAt(slot);
+                return;
+            }
+        }
+    }
+
+    // shifts later entries of the probe chain back into the gap, so lookups never need tombstones
+    private void removeAt(int slot) {
+        int gap = slot;
+        for (int next = (slot + 1) & mask; values[next] != null; next = (next + 1) & mask) {
+            int ideal = slot(keys[next]);
+            if (((next - ideal) & mask) >= ((next - gap) & mask)) {
+                keys[gap] = keys[next];
+                values[gap] = values[next];
+                referenced[gap] = referenced[next];
+                gap = next;
+            }
+        }
+        values[gap] = null;
+        referenced[gap] = false;
+        size--;
+    }
+
+    private int slot(long key) {
+        // murmur3 finalizer, consecutive movie ids would otherwise cluster
+        key ^= key >>> 33;
+        key *= 0xff51afd7ed558ccdL;
+        key ^= key >>> 33;
+        key *= 0xc4ceb9fe1a85ec53L;
+        key ^= key >>> 33;
+        return (int) key & mask;
+    }
+}
@@ -0,0 +1,90 @@
+package com.reactivespring.service;
+
+import com.reactivespring.domain.ReviewWindow;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.DoubleAdder;
+import java.util.concurrent.atomic.LongAdder;
+
+// sliding window of review counts and rating sums in fixed time buckets. Writers only CAS a slot when its bucket
+// is from an earlier lap of the ring and otherwise add to striped adders, so concurrent writers never wait on a lock.
+final class RatingWindowRing {
+
+    private final Duration window;
+
+    private final long resolutionMillis;
+
+    private final AtomicReferenceArray<Bucket> buckets;
+
+    RatingWindowRing(Duration window, Duration resolution) {
+        this.window = window;
+        this.resolutionMillis = resolution.toMillis();
+        this.buckets = new AtomicReferenceArray<>((int) (window.toMillis() / resolutionMillis));
+    }
+
+    void record(long epochMillis, Double rating) {
+        long epoch = epochMillis / resolutionMillis;
+        int slot = (int) (epoch % buckets.length());
+        while (true) {
+            var bucket = buckets.get(slot);
+            if (bucket != null && bucket.epoch == epoch) {
+                bucket.count.increment();
+                if (rating != null) {
+                    bucket.rated.increment();
+                    bucket.ratingSum.add(rating);
+                }
+                return;
+            }
+            if (bucket != null && bucket.epoch > epoch) {
+                // older than the window, nothing to count it in
+                return;
+            }
+            buckets.compareAndSet(slot, bucket, new Bucket(epoch));
+        }
+    }
+
+    ReviewWindow snapshot(long nowMillis) {
+        long newest = nowMillis / resolutionMillis;
+        long oldest = newest - buckets.length() + 1;
+        long count = 0;
+        long rated = 0;
+        double ratingSum = 0;
+        for (int slot = 0; slot < buckets.length(); slot++) {
+            var bucket = buckets.get(slot);
+            if (bucket != null && bucket.epoch >= oldest && bucket.epoch <= newest) {
+                count += bucket.count.sum();
+                rated += bucket.rated.sum();
+                ratingSum += bucket.ratingSum.sum();
+            }
+        }
+        return new ReviewWindow(window, count, rated == 0 ? null : ratingSum / rated, count / (window.toMillis() / 60_000.0));
+    }
+
+    // true when no bucket of the ring is inside the window any more
+    boolean isIdle(long nowMillis) {
+        long oldest = nowMillis / resolutionMillis - buckets.length() + 1;
+        for (int slot = 0; slot < buckets.length(); slot++) {
+            var bucket = buckets.get(slot);
+            if (bucket != null && bucket.epoch >= oldest) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static final class Bucket {
+
+        private final long epoch;
+
+        private final LongAdder count = new LongAdder();
+
+        private final LongAdder rated = new LongAdder();
+
+        private final DoubleAdder ratingSum = new DoubleAdder();
+
+        private Bucket(long epoch) {
+            this.epoch = epoch;
+        }
+    }
+}
@@ -0,0 +1,104 @@
+package com.reactivespring.service;
+
+import com.reactivespring.domain.Review;
+import com.reactivespring.domain.ReviewActivity;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+
+import javax.annotation.PreDestroy;
+import java.time.Clock;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+
+// per-movie review rate and average rating over the last 5 minutes and the last hour, for spotting review bombing
+@Component
+public class ReviewActivityTracker {
+
+    static final Duration SHORT_WINDOW = Duration.ofMinutes(5);
+
+    static final Duration SHORT_RESOLUTION = Duration.ofSeconds(10);
+
+    static final Duration LONG_WINDOW = Duration.ofHours(1);
+
+    static final Duration LONG_RESOLUTION = Duration.ofMinutes(1);
+
+    private final ConcurrentHashMap<Long, MovieActivity> activities = new ConcurrentHashMap<>();
+
+    private final Clock clock;
+
+    private Disposable sweeper;
+
+    public ReviewActivityTracker(MeterRegistry meterRegistry) {
+        this(Clock.systemUTC(), meterRegistry);
+    }
+
+    ReviewActivityTracker(Clock clock, MeterRegistry meterRegistry) {
+        this.clock = clock;
+        Gauge.builder("reviews.activity.movies", activities, ConcurrentHashMap::size)
+                .register(meterRegistry);
+    }
+
+    // movies without a review in the last hour hold no memory
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        sweeper = Flux.interval(LONG_RESOLUTION)
+                .subscribe(tick -> sweep());
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (sweeper != null) {
+            sweeper.dispose();
+        }
+    }
+
+    public void record(Review review) {
+        var createdAt = review.getCreatedAt() == null ? clock.millis() : review.getCreatedAt().toEpochMilli();
+        while (true) {
+            var activity = activities.computeIfAbsent(review.getMovieInfoId(), movieInfoId -> new MovieActivity());
+            activity.record(createdAt, review.getRating());
+            if (activities.get(review.getMovieInfoId()) == activity) {
+                return;
+            }
+            // swept while recording, count the review in the entry that replaced it
+        }
+    }
+
+    public ReviewActivity getReviewActivity(Long movieInfoId) {
+        var activity = activities.get(movieInfoId);
+        long now = clock.millis();
+        if (activity == null) {
+            activity = new MovieActivity();
+        }
+        return new ReviewActivity(movieInfoId, List.of(activity.shortWindow.snapshot(now), activity.longWindow.snapshot(now)));
+    }
+
+    void sweep() {
+        long now = clock.millis();
+        // remove only if still idle at removal time, a concurrent record keeps its entry
+        activities.forEach((movieInfoId, activity) -> activities.computeIfPresent(movieInfoId,
+                (id, current) -> current.longWindow.isIdle(now) ? null : current));
+    }
+
+    int size() {
+        return activities.size();
+    }
+
+    private static final class MovieActivity {
+
+        private final RatingWindowRing shortWindow = new RatingWindowRing(SHORT_WINDOW, SHORT_RESOLUTION);
+
+        private final RatingWindowRing longWindow = new RatingWindowRing(LONG_WINDOW, LONG_RESOLUTION);
+
+        private void record(long epochMillis, Double rating) {
+            shortWindow.record(epochMillis, rating);
+            longWindow.record(epochMillis, rating);
+        }
+    }
+}
@@ -0,0 +1,108 @@
+package com.reactivespring.service;
+
+import com.reactivespring.domain.Review;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+
+import java.util.function.Function;
+
+// optional cache of the reviews of hot movies, split into segments so writers on different event loops rarely meet
+@Component
+public class ReviewCache {
+
+    private static final int SEGMENTS = 16;
+
+    private final boolean enabled;
+
+    private final int maxReviewsPerMovie;
+
+    private final LongReviewSliceMap[] segments = new LongReviewSliceMap[SEGMENTS];
+
+    // bumped on every invalidation, a load that raced with one is not cached
+    private final long[] invalidations = new long[SEGMENTS];
+
+    private final Counter hits;
+
+    private final Counter misses;
+
+    public ReviewCache(@Value("${reviews.cache.enabled:false}") boolean enabled,
+                       @Value("${reviews.cache.max-movies:100000}") int maxMovies,
+                       @Value("${reviews.cache.max-reviews-per-movie:1000}") int maxReviewsPerMovie,
+                       MeterRegistry meterRegistry) {
+        this.enabled = enabled;
+        this.maxReviewsPerMovie = maxReviewsPerMovie;
+        for (int i = 0; i < SEGMENTS; i++) {
+            segments[i] = new LongReviewSliceMap(Math.max(1, maxMovies / SEGMENTS));
+        }
+        this.hits = meterRegistry.counter("reviews.cache.hits");
+        this.misses = meterRegistry.counter("reviews.cache.misses");
+        Gauge.builder("reviews.cache.size", this, ReviewCache::size)
+                .register(meterRegistry);
+    }
+
+    public Flux<Review> findReviewsByMovieInfoId(Long movieInfoId, Function<Long, Flux<Review>> loader) {
+        if (!enabled) {
+            return loader.apply(movieInfoId);
+        }
+        return Flux.defer(() -> {
+            int segment = segment(movieInfoId);
+            ReviewSlice slice;
+            long invalidation;
+            synchronized (segments[segment]) {
+                slice = segments[segment].get(movieInfoId);
+                invalidation = invalidations[segment];
+            }
+            if (slice != null) {
+                hits.increment();
+                return Flux.fromIterable(slice.toReviews(movieInfoId));
+            }
+            misses.increment();
+            // at most one review past the limit is held to decide; a movie over it is read again and streamed
+            // from Mongo rather than held in memory
+            return loader.apply(movieInfoId)
+                    .take(maxReviewsPerMovie + 1)
+                    .collectList()
+                    .flatMapMany(reviews -> {
+                        if (reviews.size() > maxReviewsPerMovie) {
+                            return loader.apply(movieInfoId);
+                        }
+                        var loaded = ReviewSlice.of(reviews);
+                        synchronized (segments[segment]) {
+                            if (invalidations[segment] == invalidation) {
+                                segments[segment].put(movieInfoId, loaded);
+                            }
+                        }
+                        return Flux.fromIterable(reviews);
+                    });
+        });
+    }
+
+    public void invalidate(Long movieInfoId) {
+        if (!enabled || movieInfoId == null) {
+            return;
+        }
+        int segment = segment(movieInfoId);
+        synchronized (segments[segment]) {
+            segments[segment].remove(movieInfoId);
+            invalidations[segment]++;
+        }
+    }
+
+    public int size() {
+        int size = 0;
+        for (var segment : segments) {
+            synchronized (segment) {
+                size += segment.size();
+            }
+        }
+        return size;
+    }
+
+    private static int segment(long movieInfoId) {
+        return (int) (movieInfoId ^ (movieInfoId >>> 32)) & (SEGMENTS - 1);
+    }
+}
@@ -0,0 +1,122 @@
+package com.reactivespring.service;
+
+import com.reactivespring.domain.ChangeType;
+import com.reactivespring.domain.Review;
+import com.reactivespring.domain.ReviewChange;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import reactor.core.Disposable;
+import reactor.core.publisher.BufferOverflowStrategy;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Sinks;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+import reactor.util.concurrent.Queues;
+
+import javax.annotation.PreDestroy;
+
+@Component
+@Slf4j
+public class ReviewChangeFeed {
+
+    public enum OverflowPolicy {
+        DROP_OLDEST,
+        DISCONNECT
+    }
+
+    // every subscriber requests unbounded from the sink through its own bounded buffer,
+    // so one slow subscriber never holds back the others
+    private final Sinks.Many<ReviewChange> sink = Sinks.many().multicast().directBestEffort();
+
+    // writers only enqueue here; the feed thread hands each change to the subscribers, so their filters,
+    // buffers and SSE encoding never run on a request thread or the write-behind flusher
+    private final Sinks.Many<ReviewChange> handoff;
+
+    private final Scheduler scheduler;
+
+    private final Disposable dispatcher;
+
+    private final int bufferSize;
+
+    private final OverflowPolicy overflowPolicy;
+
+    private final Counter droppedEvents;
+
+    private final Counter disconnectedSubscribers;
+
+    @Autowired
+    public ReviewChangeFeed(@Value("${reviews.stream.buffer-size:256}") int bufferSize,
+                            @Value("${reviews.stream.overflow-policy:DROP_OLDEST}") OverflowPolicy overflowPolicy,
+                            MeterRegistry meterRegistry) {
+        this(bufferSize, overflowPolicy, meterRegistry, Schedulers.newSingle("review-change-feed"));
+    }
+
+    ReviewChangeFeed(int bufferSize, OverflowPolicy overflowPolicy, MeterRegistry meterRegistry, Scheduler scheduler) {
+        this.bufferSize = bufferSize;
+        this.overflowPolicy = overflowPolicy;
+        this.droppedEvents = meterRegistry.counter("reviews.stream.dropped");
+        this.disconnectedSubscribers = meterRegistry.counter("reviews.stream.disconnected");
+        Gauge.builder("reviews.stream.subscribers", sink, Sinks.Many::currentSubscriberCount)
+                .register(meterRegistry);
+        this.handoff = Sinks.many().unicast().onBackpressureBuffer(Queues.<ReviewChange>get(bufferSize).get());
+        this.scheduler = scheduler;
+        this.dispatcher = handoff.asFlux()
+                .publishOn(scheduler, bufferSize)
+                .subscribe(this::dispatch);
+    }
+
+    @PreDestroy
+    public void stop() {
+        dispatcher.dispose();
+        scheduler.dispose();
+    }
+
+    // a review added through POST and a batch written by the write-behind flusher can be published at once;
+    // the lock is only held for one offer to the bounded handoff queue, whatever the number of subscribers
+    public void publish(ChangeType type, Review review) {
+        Sinks.EmitResult result;
+        synchronized (handoff) {
+            result = handoff.tryEmitNext(new ReviewChange(type, review));
+        }
+        if (result == Sinks.EmitResult.FAIL_OVERFLOW) {
+            // the feed thread is bufferSize changes behind
+            droppedEvents.increment();
+        } else if (result.isFailure()) {
+            // the review is stored either way, stream clients only miss it
+            log.warn("Review {} was not published to the change feed : {}", review.getReviewId(), result);
+        }
+    }
+
+    // only ever called on the feed thread, so the sink is never emitted to concurrently
+    private void dispatch(ReviewChange change) {
+        var result = sink.tryEmitNext(change);
+        if (result == Sinks.EmitResult.FAIL_OVERFLOW) {
+            droppedEvents.increment();
+        } else if (result.isFailure() && result != Sinks.EmitResult.FAIL_ZERO_SUBSCRIBER) {
+            log.warn("Review {} was not published to the change feed : {}", change.getReview().getReviewId(), result);
+        }
+    }
+
+    public Flux<ReviewChange> stream() {
+        return bounded(sink.asFlux());
+    }
+
+    // filtered ahead of the buffer, so it only ever holds reviews this subscriber asked for
+    public Flux<ReviewChange> stream(Long movieInfoId) {
+        return bounded(sink.asFlux().filter(change -> movieInfoId.equals(change.getReview().getMovieInfoId())));
+    }
+
+    private Flux<ReviewChange> bounded(Flux<ReviewChange> changes) {
+        if (overflowPolicy == OverflowPolicy.DISCONNECT) {
+            return changes
+                    .onBackpressureBuffer(bufferSize, change -> disconnectedSubscribers.increment());
+        }
+        return changes
+                .onBackpressureBuffer(bufferSize, change -> droppedEvents.increment(), BufferOverflowStrategy.DROP_OLDEST);
+    }
+}
@@ -0,0 +1,120 @@
+package com.reactivespring.service;
+
+import com.reactivespring.domain.ReviewRanking;
+import com.reactivespring.domain.ReviewStats;
+import com.reactivespring.repository.ReviewStatsRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+
+// movies ordered by average rating, kept in step with ReviewStats so the top k are read without touching Mongo
+@Component
+@Slf4j
+public class ReviewLeaderboard {
+
+    private static final Comparator<Entry> BEST_FIRST = Comparator.comparingDouble(Entry::getAverage).reversed()
+            .thenComparing(Comparator.comparingLong(Entry::getCount).reversed())
+            .thenComparingLong(Entry::getMovieInfoId);
+
+    // entries are immutable, an update replaces the entry of its movie in both structures
+    private final ConcurrentSkipListSet<Entry> ranking = new ConcurrentSkipListSet<>(BEST_FIRST);
+
+    private final ConcurrentHashMap<Long, Entry> entries = new ConcurrentHashMap<>();
+
+    private ReviewStatsRepository reviewStatsRepository;
+
+    public ReviewLeaderboard(ReviewStatsRepository reviewStatsRepository) {
+        this.reviewStatsRepository = reviewStatsRepository;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void seed() {
+        reviewStatsRepository.findAll()
+                .doOnNext(this::update)
+                .blockLast();
+        log.info("Review leaderboard seeded with {} movies", entries.size());
+    }
+
+    // O(log n); compute serializes updates of the same movie, different movies do not contend.
+    // Two writes of a movie can return their stats in either order, the one with the lower version is ignored
+    public void update(ReviewStats reviewStats) {
+        entries.compute(reviewStats.getMovieInfoId(), (movieInfoId, previous) -> {
+            if (previous != null) {
+                if (reviewStats.getVersion() < previous.getVersion()) {
+                    return previous;
+                }
+                ranking.remove(previous);
+            }
+            if (reviewStats.getCount() <= 0) {
+                return null;
+            }
+            var next = new Entry(movieInfoId, reviewStats.getSum() / reviewStats.getCount(), reviewStats.getCount(),
+                    reviewStats.getVersion());
+            ranking.add(next);
+            return next;
+        });
+    }
+
+    public void remove(Long movieInfoId) {
+        entries.computeIfPresent(movieInfoId, (id, previous) -> {
+            ranking.remove(previous);
+            return null;
+        });
+    }
+
+    // walks the ranking from the top: O(k) unless many of the best rated movies have fewer than minReviews
+    public List<ReviewRanking> top(int k, long minReviews) {
+        var top = new ArrayList<ReviewRanking>(k);
+        for (var entry : ranking) {
+            if (top.size() == k) {
+                break;
+            }
+            if (entry.getCount() >= minReviews) {
+                top.add(new ReviewRanking(entry.getMovieInfoId(), entry.getAverage(), entry.getCount()));
+            }
+        }
+        return top;
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    private static final class Entry {
+
+        private final long movieInfoId;
+        private final double average;
+        private final long count;
+        private final long version;
+
+        private Entry(long movieInfoId, double average, long count, long version) {
+            this.movieInfoId = movieInfoId;
+            this.average = average;
+            this.count = count;
+            this.version = version;
+        }
+
+        private long getMovieInfoId() {
+            return movieInfoId;
+        }
+
+        private double getAverage() {
+            return average;
+        }
+
+        private long getCount() {
+            return count;
+        }
+
+        private long getVersion() {
+            return version;
+        }
+    }
+}
@@ -0,0 +1,61 @@
+package com.reactivespring.service;
+
+import com.reactivespring.domain.Review;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+// the reviews of one movie as parallel arrays: no Review objects, no boxed ratings, and the movieInfoId is the map key
+final class ReviewSlice {
+
+    private static final double NO_RATING = Double.NaN;
+
+    private static final long NO_CREATED_AT = Long.MIN_VALUE;
+
+    private final String[] reviewIds;
+
+    private final String[] comments;
+
+    private final double[] ratings;
+
+    // epoch milliseconds
+    private final long[] createdAt;
+
+    private ReviewSlice(String[] reviewIds, String[] comments, double[] ratings, long[] createdAt) {
+        this.reviewIds = reviewIds;
+        this.comments = comments;
+        this.ratings = ratings;
+        this.createdAt = createdAt;
+    }
+
+    static ReviewSlice of(List<Review> reviews) {
+        int size = reviews.size();
+        var reviewIds = new String[size];
+        var comments = new String[size];
+        var ratings = new double[size];
+        var createdAt = new long[size];
+        for (int i = 0; i < size; i++) {
+            var review = reviews.get(i);
+            reviewIds[i] = review.getReviewId();
+            comments[i] = review.getComment();
+            ratings[i] = review.getRating() == null ? NO_RATING : review.getRating();
+            createdAt[i] = review.getCreatedAt() == null ? NO_CREATED_AT : review.getCreatedAt().toEpochMilli();
+        }
+        return new ReviewSlice(reviewIds, comments, ratings, createdAt);
+    }
+
+    List<Review> toReviews(long movieInfoId) {
+        var reviews = new ArrayList<Review>(reviewIds.length);
+        for (int i = 0; i < reviewIds.length; i++) {
+            reviews.add(new Review(reviewIds[i], movieInfoId, comments[i],
+                    Double.isNaN(ratings[i]) ? null : ratings[i],
+                    createdAt[i] == NO_CREATED_AT ? null : Instant.ofEpochMilli(createdAt[i])));
+        }
+        return reviews;
+    }
+
+    int size() {
+        return reviewIds.length;
+    }
+}
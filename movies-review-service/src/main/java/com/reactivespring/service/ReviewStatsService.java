@@ -0,0 +1,204 @@
+package com.reactivespring.service;
+
+import com.reactivespring.domain.Review;
+import com.reactivespring.domain.ReviewStats;
+import com.reactivespring.exception.ReviewStatsRebuildingException;
+import com.reactivespring.repository.ReviewReactiveRepository;
+import com.reactivespring.repository.ReviewStatsRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+@Service
+@Slf4j
+public class ReviewStatsService {
+
+    private static final int WRITE_CONCURRENCY = 16;
+
+    private static final Duration DRAIN_POLL_INTERVAL = Duration.ofMillis(10);
+
+    private static final int RANGE_ATTEMPTS = 5;
+
+    private final Duration writeWait;
+
+    // completes when the running rebuild is done, null while none runs
+    private final AtomicReference<Sinks.Empty<Void>> rebuilding = new AtomicReference<>();
+
+    private final AtomicInteger writesInFlight = new AtomicInteger();
+
+    private ReviewStatsRepository reviewStatsRepository;
+
+    private ReviewReactiveRepository reviewReactiveRepository;
+
+    private ReviewLeaderboard reviewLeaderboard;
+
+    public ReviewStatsService(ReviewStatsRepository reviewStatsRepository,
+                              ReviewReactiveRepository reviewReactiveRepository,
+                              ReviewLeaderboard reviewLeaderboard,
+                              @Value("${reviews.stats.rebuild.write-wait:5s}") Duration writeWait) {
+        this.writeWait = writeWait;
+        this.reviewStatsRepository = reviewStatsRepository;
+        this.reviewReactiveRepository = reviewReactiveRepository;
+        this.reviewLeaderboard = reviewLeaderboard;
+    }
+
+    // a single document read, independent of how many reviews the movie has
+    public Mono<ReviewStats> getReviewStats(Long movieInfoId) {
+        return reviewStatsRepository.findById(movieInfoId)
+                .defaultIfEmpty(ReviewStats.empty(movieInfoId));
+    }
+
+    public Mono<ReviewStats> recordAdded(Review review) {
+        if (review.getRating() == null) {
+            return Mono.empty();
+        }
+        var rating = review.getRating();
+        return reviewStatsRepository.applyDelta(new ReviewStats(review.getMovieInfoId(), 1, rating, rating, rating,
+                        Map.of(ReviewStats.bucket(rating), 1L), null))
+                .doOnNext(reviewLeaderboard::update);
+    }
+
+    // one $inc per movie in the batch rather than one per review
+    public Flux<ReviewStats> recordAddedAll(List<Review> reviews) {
+        var deltas = new LinkedHashMap<Long, ReviewStats>();
+        reviews.stream()
+                .filter(review -> review.getRating() != null)
+                .forEach(review -> {
+                    var rating = review.getRating();
+                    var delta = deltas.computeIfAbsent(review.getMovieInfoId(),
+                            movieInfoId -> new ReviewStats(movieInfoId, 0, 0, rating, rating, new HashMap<>(), null));
+                    delta.setCount(delta.getCount() + 1);
+                    delta.setSum(delta.getSum() + rating);
+                    delta.setMin(Math.min(delta.getMin(), rating));
+                    delta.setMax(Math.max(delta.getMax(), rating));
+                    delta.getHistogram().merge(ReviewStats.bucket(rating), 1L, Long::sum);
+                });
+        return Flux.fromIterable(deltas.values())
+                .flatMap(reviewStatsRepository::applyDelta, WRITE_CONCURRENCY)
+                .doOnNext(reviewLeaderboard::update);
+    }
+
+    public Mono<ReviewStats> recordRemoved(Review review) {
+        if (review.getRating() == null) {
+            return Mono.empty();
+        }
+        var rating = review.getRating();
+        return reviewStatsRepository.applyDelta(new ReviewStats(review.getMovieInfoId(), -1, -rating, null, null,
+                        Map.of(ReviewStats.bucket(rating), -1L), null))
+                .flatMap(reviewStats -> refreshRange(reviewStats, rating))
+                .doOnNext(reviewLeaderboard::update);
+    }
+
+    public Mono<ReviewStats> recordUpdated(Long movieInfoId, Double previousRating, Double rating) {
+        if (Objects.equals(previousRating, rating)) {
+            return Mono.empty();
+        }
+        if (previousRating == null) {
+            return recordAdded(new Review(null, movieInfoId, null, rating));
+        }
+        if (rating == null) {
+            return recordRemoved(new Review(null, movieInfoId, null, previousRating));
+        }
+        var histogram = new HashMap<String, Long>();
+        histogram.merge(ReviewStats.bucket(previousRating), -1L, Long::sum);
+        histogram.merge(ReviewStats.bucket(rating), 1L, Long::sum);
+        histogram.values().removeIf(count -> count == 0);
+        return reviewStatsRepository.applyDelta(new ReviewStats(movieInfoId, 0, rating - previousRating, rating, rating, histogram, null))
+                .flatMap(reviewStats -> refreshRange(reviewStats, previousRating))
+                .doOnNext(reviewLeaderboard::update);
+    }
+
+    // $inc cannot shrink min/max, so when the rating that held one of them goes away it is looked up again
+    private Mono<ReviewStats> refreshRange(ReviewStats reviewStats, double removedRating) {
+        if (!Objects.equals(reviewStats.getMin(), removedRating) && !Objects.equals(reviewStats.getMax(), removedRating)) {
+            return Mono.just(reviewStats);
+        }
+        return setRange(reviewStats, 1);
+    }
+
+    // the range is only written while no other delta landed since reviewStats was read; a review added or
+    // changed in between may hold a new min or max that the range read missed, so it is read again then
+    private Mono<ReviewStats> setRange(ReviewStats reviewStats, int attempt) {
+        var movieInfoId = reviewStats.getMovieInfoId();
+        return reviewReactiveRepository.findRatingRange(movieInfoId)
+                .defaultIfEmpty(ReviewStats.empty(movieInfoId))
+                .flatMap(range -> reviewStatsRepository.setRange(movieInfoId, reviewStats.getCount(), reviewStats.getSum(),
+                        range.getMin(), range.getMax()))
+                .switchIfEmpty(Mono.defer(() -> reviewStatsRepository.findById(movieInfoId)
+                        .flatMap(current -> {
+                            if (attempt < RANGE_ATTEMPTS) {
+                                return setRange(current, attempt + 1);
+                            }
+                            // left as pushed outwards by the deltas, the next rebuild narrows it again
+                            log.warn("Rating range of movie {} not refreshed after {} attempts", movieInfoId, attempt);
+                            return Mono.just(current);
+                        })));
+    }
+
+    // a review write together with its stats delta; it waits while a rebuild runs, up to writeWait,
+    // and is counted as in flight so that a rebuild only starts once it is done
+    public <T> Mono<T> guardWrite(Mono<T> write) {
+        return Mono.defer(() -> {
+            var rebuild = rebuilding.get();
+            if (rebuild != null) {
+                return rebuild.asMono()
+                        .timeout(writeWait, Mono.error(() -> new ReviewStatsRebuildingException("Review stats are being rebuilt, retry later")))
+                        .then(guardWrite(write));
+            }
+            writesInFlight.incrementAndGet();
+            if (rebuilding.get() != null) {
+                // a rebuild started in between and may already be waiting for the writes in flight
+                writesInFlight.decrementAndGet();
+                return guardWrite(write);
+            }
+            return write.doFinally(signalType -> writesInFlight.decrementAndGet());
+        });
+    }
+
+    // replace would drop a $inc that lands between the aggregation and the replace of the same movie,
+    // so the rebuild runs with writes quiesced: new writes wait in guardWrite, the ones in flight finish first
+    public Mono<Long> rebuildReviewStats() {
+        return Mono.defer(() -> {
+            var rebuild = Sinks.<Void>empty();
+            if (!rebuilding.compareAndSet(null, rebuild)) {
+                return Mono.error(new ReviewStatsRebuildingException("Review stats are already being rebuilt"));
+            }
+            return Flux.interval(Duration.ZERO, DRAIN_POLL_INTERVAL)
+                    .filter(tick -> writesInFlight.get() == 0)
+                    .next()
+                    .timeout(writeWait, Mono.error(() -> new ReviewStatsRebuildingException("Review writes are still in flight, retry the rebuild later")))
+                    .then(Mono.defer(this::replaceAll))
+                    .doFinally(signalType -> {
+                        rebuilding.set(null);
+                        rebuild.tryEmitEmpty();
+                    });
+        });
+    }
+
+    // recomputes every aggregate from the reviews, then drops aggregates of movies that no longer have rated reviews
+    private Mono<Long> replaceAll() {
+        var rebuildStart = Instant.now();
+        return reviewReactiveRepository.aggregateReviewStats()
+                .flatMap(reviewStatsRepository::replace, WRITE_CONCURRENCY)
+                .doOnNext(reviewLeaderboard::update)
+                .count()
+                .flatMap(rebuilt -> reviewStatsRepository.removeUpdatedBefore(rebuildStart)
+                        .doOnNext(removed -> reviewLeaderboard.remove(removed.getMovieInfoId()))
+                        .count()
+                        .doOnNext(removed -> log.info("Rebuilt review stats of {} movies, removed {} stale", rebuilt, removed))
+                        .thenReturn(rebuilt));
+    }
+}
@@ -0,0 +1,208 @@
+package com.reactivespring.service;
+
+import com.reactivespring.domain.ChangeType;
+import com.reactivespring.domain.Review;
+import com.reactivespring.exception.ReviewQueueFullException;
+import com.reactivespring.exception.ReviewStatsRebuildingException;
+import com.reactivespring.repository.ReviewReactiveRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.types.ObjectId;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+
+import javax.annotation.PreDestroy;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+// accepted reviews wait in a bounded queue and are written with one unordered insertMany per batch,
+// flushed every flushInterval or as soon as batchSize reviews are waiting
+@Component
+@Slf4j
+public class ReviewWriteBehind {
+
+    private final boolean enabled;
+
+    private final int batchSize;
+
+    private final Duration flushInterval;
+
+    private final Duration shutdownTimeout;
+
+    private final BlockingQueue<Review> queue;
+
+    private final Sinks.Many<Long> flushRequests = Sinks.many().unicast().onBackpressureBuffer();
+
+    private final Sinks.Empty<Void> stopped = Sinks.empty();
+
+    private ReviewReactiveRepository reviewReactiveRepository;
+
+    private ReviewStatsService reviewStatsService;
+
+    private ReviewChangeFeed reviewChangeFeed;
+
+    private ReviewCache reviewCache;
+
+    private ReviewActivityTracker reviewActivityTracker;
+
+    private final Counter rejected;
+
+    private final Counter failed;
+
+    private final DistributionSummary flushBatchSize;
+
+    private final Timer flushLatency;
+
+    private volatile CompletableFuture<Void> flusher;
+
+    public ReviewWriteBehind(@Value("${reviews.write-behind.enabled:false}") boolean enabled,
+                             @Value("${reviews.write-behind.queue-capacity:10000}") int queueCapacity,
+                             @Value("${reviews.write-behind.batch-size:500}") int batchSize,
+                             @Value("${reviews.write-behind.flush-interval:200ms}") Duration flushInterval,
+                             @Value("${reviews.write-behind.shutdown-timeout:10s}") Duration shutdownTimeout,
+                             ReviewReactiveRepository reviewReactiveRepository,
+                             ReviewStatsService reviewStatsService,
+                             ReviewChangeFeed reviewChangeFeed,
+                             ReviewCache reviewCache,
+                             ReviewActivityTracker reviewActivityTracker,
+                             MeterRegistry meterRegistry) {
+        this.enabled = enabled;
+        this.batchSize = batchSize;
+        this.flushInterval = flushInterval;
+        this.shutdownTimeout = shutdownTimeout;
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        this.reviewReactiveRepository = reviewReactiveRepository;
+        this.reviewStatsService = reviewStatsService;
+        this.reviewChangeFeed = reviewChangeFeed;
+        this.reviewCache = reviewCache;
+        this.reviewActivityTracker = reviewActivityTracker;
+        meterRegistry.gauge("reviews.writebehind.queue.depth", queue, BlockingQueue::size);
+        this.rejected = meterRegistry.counter("reviews.writebehind.rejected");
+        this.failed = meterRegistry.counter("reviews.writebehind.failed");
+        this.flushBatchSize = DistributionSummary.builder("reviews.writebehind.batch.size")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+        this.flushLatency = Timer.builder("reviews.writebehind.flush.latency")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        if (!enabled || flusher != null) {
+            return;
+        }
+        // completes once both triggers are stopped and the flush in progress, if any, is done
+        flusher = Flux.merge(Flux.interval(flushInterval).takeUntilOther(stopped.asMono()), flushRequests.asFlux())
+                .onBackpressureLatest()
+                .concatMap(tick -> flush(), 1)
+                .then()
+                .toFuture();
+    }
+
+    // the id is assigned here so the caller can be answered before the review is written
+    public Mono<Review> enqueue(Review review) {
+        return Mono.defer(() -> {
+            if (review.getReviewId() == null) {
+                review.setReviewId(ObjectId.get().toHexString());
+            }
+            if (!queue.offer(review)) {
+                rejected.increment();
+                return Mono.error(new ReviewQueueFullException("Review queue is full, retry later"));
+            }
+            if (queue.size() >= batchSize) {
+                requestFlush();
+            }
+            return Mono.just(review);
+        });
+    }
+
+    // runs after the web server has stopped accepting requests, so nothing is enqueued any more
+    @PreDestroy
+    public void drain() throws Exception {
+        if (flusher == null) {
+            return;
+        }
+        stopped.tryEmitEmpty();
+        flushRequests.tryEmitComplete();
+        flusher.get(shutdownTimeout.toMillis(), TimeUnit.MILLISECONDS);
+        flush().repeat(() -> !queue.isEmpty())
+                .then()
+                .block(shutdownTimeout);
+        log.info("Review write-behind queue drained, {} reviews left", queue.size());
+    }
+
+    int queueDepth() {
+        return queue.size();
+    }
+
+    // a failed emission means another thread is requesting a flush at the same moment
+    private void requestFlush() {
+        flushRequests.tryEmitNext(System.nanoTime());
+    }
+
+    // the batch is taken from the queue only once a stats rebuild is done; while one runs the tick is skipped
+    private Mono<Void> flush() {
+        return reviewStatsService.guardWrite(writeBatch())
+                .onErrorResume(ReviewStatsRebuildingException.class, ex -> Mono.empty());
+    }
+
+    private Mono<Void> writeBatch() {
+        return Mono.defer(() -> {
+            List<Review> batch = new ArrayList<>(batchSize);
+            queue.drainTo(batch, batchSize);
+            if (batch.isEmpty()) {
+                return Mono.empty();
+            }
+            flushBatchSize.record(batch.size());
+            var sample = Timer.start();
+            return reviewReactiveRepository.insertUnordered(batch)
+                    .flatMap(failures -> {
+                        List<Review> written = new ArrayList<>(batch.size());
+                        for (int i = 0; i < batch.size(); i++) {
+                            if (failures.containsKey(i)) {
+                                log.error("Review {} could not be written : {}", batch.get(i).getReviewId(), failures.get(i));
+                            } else {
+                                written.add(batch.get(i));
+                            }
+                        }
+                        failed.increment(failures.size());
+                        written.forEach(review -> {
+                            reviewCache.invalidate(review.getMovieInfoId());
+                            reviewActivityTracker.record(review);
+                            reviewChangeFeed.publish(ChangeType.ADDED, review);
+                        });
+                        return reviewStatsService.recordAddedAll(written).then();
+                    })
+                    // one failed batch must not stop the flusher
+                    .onErrorResume(ex -> {
+                        log.error("Review batch of {} could not be written : {}", batch.size(), ex.getMessage(), ex);
+                        failed.increment(batch.size());
+                        return Mono.empty();
+                    })
+                    .doFinally(signalType -> {
+                        sample.stop(flushLatency);
+                        if (queue.size() >= batchSize) {
+                            requestFlush();
+                        }
+                    });
+        });
+    }
+}
@@ -0,0 +1,89 @@
+package com.reactivespring.repository;
+
+import com.mongodb.client.model.Filters;
+import com.reactivespring.domain.Review;
+import org.bson.Document;
+import org.bson.conversions.Bson;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.data.mongo.DataMongoTest;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.TestPropertySource;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DataMongoTest
+@TestPropertySource(properties = "spring.mongodb.embedded.version=3.5.5")
+@ActiveProfiles("test")
+class ReviewReactiveRepositoryIndexIntgTest {
+
+    @Autowired
+    ReviewReactiveRepository reviewReactiveRepository;
+
+    @Autowired
+    ReactiveMongoTemplate reactiveMongoTemplate;
+
+    @BeforeEach
+    void setUp() {
+        reviewReactiveRepository.ensureIndexes().blockLast();
+
+        var reviewsList = List.of(
+                new Review(null, 1L, "Awesome Movie", 9.0),
+                new Review(null, 1L, "Awesome Movie1", 9.0),
+                new Review(null, 2L, "Excellent Movie", 8.0));
+
+        reviewReactiveRepository.saveAll(reviewsList)
+                .blockLast();
+    }
+
+    @AfterEach
+    void tearDown() {
+        reviewReactiveRepository.deleteAll().block();
+    }
+
+    @Test
+    void findReviewsByMovieInfoId() {
+        StepVerifier.create(reviewReactiveRepository.findReviewsByMovieInfoId(1L))
+                .expectNextCount(2)
+                .verifyComplete();
+
+        assertIndexScan(Filters.eq("movieInfoId", 1L));
+    }
+
+    @Test
+    void findReviewsPage() {
+        reviewReactiveRepository.saveAll(List.of(
+                        new Review(null, 1L, "Awesome Movie2", 9.0),
+                        new Review(null, 1L, "Awesome Movie3", 9.0)))
+                .blockLast();
+
+        var firstPage = reviewReactiveRepository.findReviewsPage(1L, null, 3).collectList().block();
+        assertEquals(List.of("Awesome Movie3", "Awesome Movie2", "Awesome Movie1"), comments(firstPage));
+
+        var secondPage = reviewReactiveRepository.findReviewsPage(1L, firstPage.get(2).getReviewId(), 3).collectList().block();
+        assertEquals(List.of("Awesome Movie"), comments(secondPage));
+    }
+
+    private static List<String> comments(List<Review> reviews) {
+        return reviews.stream().map(Review::getComment).collect(Collectors.toList());
+    }
+
+    private void assertIndexScan(Bson filter) {
+        Document explain = reactiveMongoTemplate.getCollection(reactiveMongoTemplate.getCollectionName(Review.class))
+                .flatMap(collection -> Mono.from(collection.find(filter).explain()))
+                .block();
+
+        assertNotNull(explain);
+        var winningPlan = explain.get("queryPlanner", Document.class).get("winningPlan", Document.class).toJson();
+        assertTrue(winningPlan.contains("IXSCAN"), winningPlan);
+        assertFalse(winningPlan.contains("COLLSCAN"), winningPlan);
+    }
+}
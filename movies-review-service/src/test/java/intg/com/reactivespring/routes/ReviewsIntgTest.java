@@ -1,4 +1,332 @@
 package com.reactivespring.routes;
 
+import com.reactivespring.domain.Review;
+import com.reactivespring.domain.ReviewStats;
+import com.reactivespring.repository.ReviewReactiveRepository;
+import com.reactivespring.repository.ReviewStatsRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.reactive.AutoConfigureWebTestClient;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.web.reactive.server.WebTestClient;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@ActiveProfiles("test")
+@AutoConfigureWebTestClient
+@TestPropertySource(properties = "spring.mongodb.embedded.version=3.5.5")
 public class ReviewsIntgTest {
+
+    static String REVIEWS_URL = "/v1/reviews";
+
+    // generous for an embedded Mongo, yet far below what a collection scan or a blocked event loop would take
+    static Duration RESPONSE_TIMEOUT = Duration.ofSeconds(2);
+
+    @Autowired
+    ReviewReactiveRepository reviewReactiveRepository;
+
+    @Autowired
+    ReviewStatsRepository reviewStatsRepository;
+
+    @Autowired
+    WebTestClient webTestClient;
+
+    @BeforeEach
+    void setUp() {
+        webTestClient = webTestClient.mutate()
+                .responseTimeout(RESPONSE_TIMEOUT)
+                .build();
+
+        var reviewsList = List.of(
+                new Review(null, 1L, "Awesome Movie", 9.0),
+                new Review(null, 1L, "Awesome Movie1", 9.0),
+                new Review("abc", 2L, "Excellent Movie", 8.0));
+
+        reviewReactiveRepository.saveAll(reviewsList)
+                .blockLast();
+    }
+
+    @AfterEach
+    void tearDown() {
+        reviewReactiveRepository.deleteAll().block();
+        reviewStatsRepository.deleteAll().block();
+    }
+
+    @Test
+    void addReview() {
+        var review = new Review(null, 1L, "Awesome Movie", 9.0);
+
+        webTestClient
+                .post()
+                .uri(REVIEWS_URL)
+                .bodyValue(review)
+                .exchange()
+                .expectStatus()
+                .isCreated()
+                .expectBody(Review.class)
+                .consumeWith(reviewEntityExchangeResult -> {
+                    var savedReview = reviewEntityExchangeResult.getResponseBody();
+                    assert savedReview != null && savedReview.getReviewId() != null;
+                });
+    }
+
+    @Test
+    void getReviews() {
+        webTestClient
+                .get()
+                .uri(REVIEWS_URL)
+                .exchange()
+                .expectStatus()
+                .isOk()
+                .expectBodyList(Review.class)
+                .hasSize(3);
+    }
+
+    @Test
+    void getReviewsByMovieInfoId() {
+        var reviews = webTestClient
+                .get()
+                .uri(REVIEWS_URL + "?movieInfoId={movieInfoId}", 1L)
+                .exchange()
+                .expectStatus()
+                .isOk()
+                .returnResult(Review.class)
+                .getResponseBody();
+
+        StepVerifier.create(reviews)
+                .expectNextCount(2)
+                .expectComplete()
+                .verify(RESPONSE_TIMEOUT);
+    }
+
+    @Test
+    void updateReview() {
+        webTestClient
+                .put()
+                .uri(REVIEWS_URL + "/{id}", "abc")
+                .bodyValue(new Review(null, 2L, "Not an Awesome Movie", 8.0))
+                .exchange()
+                .expectStatus()
+                .isOk()
+                .expectBody(Review.class)
+                .consumeWith(reviewEntityExchangeResult -> {
+                    var updatedReview = reviewEntityExchangeResult.getResponseBody();
+                    assertNotNull(updatedReview);
+                    assertEquals("Not an Awesome Movie", updatedReview.getComment());
+                    assertEquals(8.0, updatedReview.getRating());
+                });
+    }
+
+    @Test
+    void updateReview_notFound() {
+        webTestClient
+                .put()
+                .uri(REVIEWS_URL + "/{id}", "def")
+                .bodyValue(new Review(null, 2L, "Not an Awesome Movie", 8.0))
+                .exchange()
+                .expectStatus()
+                .isNotFound();
+    }
+
+    @Test
+    void deleteReview() {
+        webTestClient
+                .delete()
+                .uri(REVIEWS_URL + "/{id}", "abc")
+                .exchange()
+                .expectStatus()
+                .isNoContent();
+
+        StepVerifier.create(reviewReactiveRepository.findById("abc"))
+                .expectComplete()
+                .verify(RESPONSE_TIMEOUT);
+    }
+
+    @Test
+    void reviewStats() {
+        webTestClient
+                .post()
+                .uri(REVIEWS_URL + "/stats/rebuild")
+                .exchange()
+                .expectStatus()
+                .isOk()
+                .expectBody()
+                .jsonPath("$.rebuilt").isEqualTo(2);
+
+        assertReviewStats(1L, 2, 9.0, 9.0);
+
+        webTestClient
+                .get()
+                .uri(REVIEWS_URL + "/top?k={k}", 2)
+                .exchange()
+                .expectStatus()
+                .isOk()
+                .expectBody()
+                .jsonPath("$[0].movieInfoId").isEqualTo(1)
+                .jsonPath("$[0].average").isEqualTo(9.0)
+                .jsonPath("$[1].movieInfoId").isEqualTo(2);
+
+        var added = webTestClient
+                .post()
+                .uri(REVIEWS_URL)
+                .bodyValue(new Review(null, 1L, "Good Movie", 6.0))
+                .exchange()
+                .expectStatus()
+                .isCreated()
+                .expectBody(Review.class)
+                .returnResult()
+                .getResponseBody();
+
+        assertNotNull(added);
+        assertReviewStats(1L, 3, 6.0, 9.0);
+
+        webTestClient
+                .put()
+                .uri(REVIEWS_URL + "/{id}", added.getReviewId())
+                .bodyValue(new Review(null, 1L, "Great Movie", 10.0))
+                .exchange()
+                .expectStatus()
+                .isOk();
+
+        assertReviewStats(1L, 3, 9.0, 10.0);
+
+        webTestClient
+                .delete()
+                .uri(REVIEWS_URL + "/{id}", added.getReviewId())
+                .exchange()
+                .expectStatus()
+                .isNoContent();
+
+        assertReviewStats(1L, 2, 9.0, 9.0);
+    }
+
+    @Test
+    void reviewStats_concurrentUpdates() throws Exception {
+        webTestClient
+                .post()
+                .uri(REVIEWS_URL + "/stats/rebuild")
+                .exchange()
+                .expectStatus()
+                .isOk();
+
+        var executor = Executors.newFixedThreadPool(8);
+        try {
+            var futures = new ArrayList<Future<?>>();
+            for (int i = 0; i < 40; i++) {
+                double rating = i % 10 + 1;
+                futures.add(executor.submit(() -> webTestClient
+                        .put()
+                        .uri(REVIEWS_URL + "/{id}", "abc")
+                        .bodyValue(new Review(null, 2L, "Updated Movie", rating))
+                        .exchange()
+                        .expectStatus()
+                        .isOk()));
+            }
+            for (var future : futures) {
+                future.get(30, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        // every update applied the change from the rating it actually replaced, so the aggregate matches the document
+        var finalRating = reviewReactiveRepository.findById("abc").block().getRating();
+        var reviewStats = reviewStatsRepository.findById(2L).block();
+        assertNotNull(reviewStats);
+        assertEquals(1, reviewStats.getCount());
+        assertEquals(finalRating, reviewStats.getSum(), 1e-9);
+        // buckets that were emptied again stay at zero
+        reviewStats.getHistogram().values().removeIf(count -> count == 0);
+        assertEquals(Map.of(ReviewStats.bucket(finalRating), 1L), reviewStats.getHistogram());
+    }
+
+    // each round removes the review holding the min while a lower rating is added, the stored min must
+    // end up at the added rating whichever of the two writes lands first
+    @Test
+    void reviewStats_removeMinWhileAddingLowerMin() throws Exception {
+        var minReview = reviewReactiveRepository.save(new Review(null, 3L, "Good Movie", 6.0)).block();
+        reviewReactiveRepository.save(new Review(null, 3L, "Great Movie", 9.0)).block();
+        webTestClient
+                .post()
+                .uri(REVIEWS_URL + "/stats/rebuild")
+                .exchange()
+                .expectStatus()
+                .isOk();
+
+        var executor = Executors.newFixedThreadPool(2);
+        try {
+            for (int round = 1; round <= 20; round++) {
+                double lowerRating = 6.0 - round * 0.2;
+                var removedId = minReview.getReviewId();
+                var removed = executor.submit(() -> webTestClient
+                        .delete()
+                        .uri(REVIEWS_URL + "/{id}", removedId)
+                        .exchange()
+                        .expectStatus()
+                        .isNoContent());
+                var added = executor.submit(() -> webTestClient
+                        .post()
+                        .uri(REVIEWS_URL)
+                        .bodyValue(new Review(null, 3L, "Worse Movie", lowerRating))
+                        .exchange()
+                        .expectStatus()
+                        .isCreated()
+                        .expectBody(Review.class)
+                        .returnResult()
+                        .getResponseBody());
+                removed.get(30, TimeUnit.SECONDS);
+                minReview = added.get(30, TimeUnit.SECONDS);
+                assertNotNull(minReview);
+
+                assertReviewStats(3L, 2, lowerRating, 9.0);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void reviewStats_unknownMovie() {
+        webTestClient
+                .get()
+                .uri(REVIEWS_URL + "/stats?movieInfoId={movieInfoId}", 99L)
+                .exchange()
+                .expectStatus()
+                .isOk()
+                .expectBody()
+                .jsonPath("$.count").isEqualTo(0)
+                .jsonPath("$.average").doesNotExist();
+    }
+
+    private void assertReviewStats(Long movieInfoId, long count, double min, double max) {
+        webTestClient
+                .get()
+                .uri(REVIEWS_URL + "/stats?movieInfoId={movieInfoId}", movieInfoId)
+                .exchange()
+                .expectStatus()
+                .isOk()
+                .expectBody(ReviewStats.class)
+                .consumeWith(reviewStatsEntityExchangeResult -> {
+                    var reviewStats = reviewStatsEntityExchangeResult.getResponseBody();
+                    assertNotNull(reviewStats);
+                    assertEquals(count, reviewStats.getCount());
+                    assertEquals(min, reviewStats.getMin());
+                    assertEquals(max, reviewStats.getMax());
+                    assertEquals(count, reviewStats.getHistogram().values().stream().mapToLong(Long::longValue).sum());
+                });
+    }
 }
@@ -1,4 +1,475 @@
 package com.reactivespring.routes;
 
+import com.reactivespring.domain.ChangeType;
+import com.reactivespring.domain.Review;
+import com.reactivespring.domain.ReviewChange;
+import com.reactivespring.domain.ReviewActivity;
+import com.reactivespring.domain.ReviewPage;
+import com.reactivespring.domain.ReviewWindow;
+import com.reactivespring.domain.ReviewRanking;
+import com.reactivespring.domain.ReviewStats;
+import com.reactivespring.exceptionhandler.GlobalErrorHandler;
+import com.reactivespring.handler.ReviewHandler;
+import com.reactivespring.repository.ReviewReactiveRepository;
+import com.reactivespring.router.ReviewRouter;
+import com.reactivespring.exception.ReviewQueueFullException;
+import com.reactivespring.exception.ReviewStatsRebuildingException;
+import com.reactivespring.service.ReviewActivityTracker;
+import com.reactivespring.service.ReviewCache;
+import com.reactivespring.service.ReviewChangeFeed;
+import com.reactivespring.service.ReviewLeaderboard;
+import com.reactivespring.service.ReviewStatsService;
+import com.reactivespring.service.ReviewWriteBehind;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.reactive.AutoConfigureWebTestClient;
+import org.springframework.boot.test.autoconfigure.web.reactive.WebFluxTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.web.reactive.server.WebTestClient;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.LongStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isA;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@WebFluxTest
+@ContextConfiguration(classes = {ReviewRouter.class, ReviewHandler.class, GlobalErrorHandler.class})
+@AutoConfigureWebTestClient
 public class ReviewsUnitTest {
+
+    static String REVIEWS_URL = "/v1/reviews";
+
+    // every call is served by a mock, anything slower points at blocking in the handler
+    static Duration RESPONSE_TIMEOUT = Duration.ofMillis(500);
+
+    @MockBean
+    ReviewReactiveRepository reviewReactiveRepository;
+
+    @MockBean
+    ReviewStatsService reviewStatsService;
+
+    @MockBean
+    ReviewWriteBehind reviewWriteBehind;
+
+    @MockBean
+    ReviewChangeFeed reviewChangeFeed;
+
+    @MockBean
+    ReviewLeaderboard reviewLeaderboard;
+
+    @MockBean
+    ReviewCache reviewCache;
+
+    @MockBean
+    ReviewActivityTracker reviewActivityTracker;
+
+    @Autowired
+    WebTestClient webTestClient;
+
+    @BeforeEach
+    void setUp() {
+        webTestClient = webTestClient.mutate()
+                .responseTimeout(RESPONSE_TIMEOUT)
+                .build();
+
+        // no rebuild is running, writes go straight through
+        when(reviewStatsService.guardWrite(any())).thenAnswer(invocation -> invocation.getArgument(0));
+        when(reviewStatsService.recordAdded(any())).thenReturn(Mono.empty());
+        when(reviewStatsService.recordRemoved(any())).thenReturn(Mono.empty());
+        when(reviewStatsService.recordUpdated(any(), any(), any())).thenReturn(Mono.empty());
+        // a disabled cache goes straight to the loader
+        when(reviewCache.findReviewsByMovieInfoId(any(), any()))
+                .thenAnswer(invocation -> invocation.<Function<Long, Flux<Review>>>getArgument(1).apply(invocation.getArgument(0)));
+    }
+
+    @Test
+    void addReview() {
+        var review = new Review(null, 1L, "Awesome Movie", 9.0);
+
+        when(reviewReactiveRepository.save(isA(Review.class)))
+                .thenReturn(Mono.just(new Review("abc", 1L, "Awesome Movie", 9.0)));
+
+        webTestClient
+                .post()
+                .uri(REVIEWS_URL)
+                .bodyValue(review)
+                .exchange()
+                .expectStatus()
+                .isCreated()
+                .expectBody(Review.class)
+                .consumeWith(reviewEntityExchangeResult -> {
+                    var savedReview = reviewEntityExchangeResult.getResponseBody();
+                    assert savedReview != null && "abc".equals(savedReview.getReviewId());
+                });
+
+        verify(reviewChangeFeed).publish(eq(ChangeType.ADDED), isA(Review.class));
+        verify(reviewActivityTracker).record(isA(Review.class));
+    }
+
+    @Test
+    void addReview_writeBehind() {
+        when(reviewWriteBehind.isEnabled()).thenReturn(true);
+        when(reviewWriteBehind.enqueue(isA(Review.class)))
+                .thenReturn(Mono.just(new Review("abc", 1L, "Awesome Movie", 9.0)));
+
+        webTestClient
+                .post()
+                .uri(REVIEWS_URL)
+                .bodyValue(new Review(null, 1L, "Awesome Movie", 9.0))
+                .exchange()
+                .expectStatus()
+                .isAccepted()
+                .expectBody()
+                .jsonPath("$.reviewId").isEqualTo("abc");
+
+        verify(reviewReactiveRepository, never()).save(any());
+    }
+
+    @Test
+    void addReview_writeBehindQueueFull() {
+        when(reviewWriteBehind.isEnabled()).thenReturn(true);
+        when(reviewWriteBehind.enqueue(isA(Review.class)))
+                .thenReturn(Mono.error(new ReviewQueueFullException("Review queue is full, retry later")));
+
+        webTestClient
+                .post()
+                .uri(REVIEWS_URL)
+                .bodyValue(new Review(null, 1L, "Awesome Movie", 9.0))
+                .exchange()
+                .expectStatus()
+                .isEqualTo(HttpStatus.SERVICE_UNAVAILABLE)
+                .expectHeader()
+                .valueEquals(HttpHeaders.RETRY_AFTER, "1");
+    }
+
+    @Test
+    void addReview_validation() {
+        var review = new Review(null, null, "Awesome Movie", -9.0);
+
+        webTestClient
+                .post()
+                .uri(REVIEWS_URL)
+                .bodyValue(review)
+                .exchange()
+                .expectStatus()
+                .isBadRequest()
+                .expectBody(String.class)
+                .isEqualTo("rating.movieInfoId : must not be null,rating.negative : please pass a non-negative value");
+
+        verify(reviewReactiveRepository, never()).save(any());
+    }
+
+    @Test
+    void getReviews() {
+        when(reviewReactiveRepository.findAll())
+                .thenReturn(Flux.just(new Review("abc", 1L, "Awesome Movie", 9.0),
+                        new Review("def", 2L, "Excellent Movie", 8.0)));
+
+        webTestClient
+                .get()
+                .uri(REVIEWS_URL)
+                .exchange()
+                .expectStatus()
+                .isOk()
+                .expectBodyList(Review.class)
+                .hasSize(2);
+    }
+
+    @Test
+    void getReviewsByMovieInfoId() {
+        when(reviewReactiveRepository.findReviewsByMovieInfoId(1L))
+                .thenReturn(Flux.just(new Review("abc", 1L, "Awesome Movie", 9.0)));
+
+        webTestClient
+                .get()
+                .uri(REVIEWS_URL + "?movieInfoId={movieInfoId}", 1L)
+                .exchange()
+                .expectStatus()
+                .isOk()
+                .expectBodyList(Review.class)
+                .hasSize(1);
+
+        verify(reviewReactiveRepository, never()).findAll();
+    }
+
+    @Test
+    void getReviewsByMovieInfoId_invalid() {
+        webTestClient
+                .get()
+                .uri(REVIEWS_URL + "?movieInfoId={movieInfoId}", "abc")
+                .exchange()
+                .expectStatus()
+                .isBadRequest();
+    }
+
+    @Test
+    void getReviewsByMovieInfoIds() {
+        when(reviewReactiveRepository.findReviewsByMovieInfoIdIn(Set.of(1L, 2L)))
+                .thenReturn(Flux.just(new Review("abc", 1L, "Awesome Movie", 9.0),
+                        new Review("def", 2L, "Excellent Movie", 8.0)));
+
+        webTestClient
+                .get()
+                .uri(REVIEWS_URL + "?movieInfoIds={movieInfoIds}", "1,2,1")
+                .exchange()
+                .expectStatus()
+                .isOk()
+                .expectBodyList(Review.class)
+                .hasSize(2);
+
+        verify(reviewReactiveRepository, never()).findAll();
+    }
+
+    @Test
+    void getReviewsPage() {
+        when(reviewReactiveRepository.findReviewsPage(1L, "ghi", 3))
+                .thenReturn(Flux.just(new Review("def", 1L, "Excellent Movie", 8.0),
+                        new Review("abc", 1L, "Awesome Movie", 9.0),
+                        new Review("aaa", 1L, "Good Movie", 7.0)));
+
+        var page = webTestClient
+                .get()
+                .uri(REVIEWS_URL + "/page?movieInfoId={movieInfoId}&limit={limit}&after={after}", 1L, 2, "ghi")
+                .exchange()
+                .expectStatus()
+                .isOk()
+                .expectBody(ReviewPage.class)
+                .returnResult()
+                .getResponseBody();
+
+        assertEquals(List.of("def", "abc"), page.getReviews().stream().map(Review::getReviewId).collect(Collectors.toList()));
+        assertEquals("abc", page.getNextReviewsToken());
+    }
+
+    @Test
+    void getReviewsPage_lastPage() {
+        when(reviewReactiveRepository.findReviewsPage(1L, null, 11))
+                .thenReturn(Flux.just(new Review("abc", 1L, "Awesome Movie", 9.0)));
+
+        webTestClient
+                .get()
+                .uri(REVIEWS_URL + "/page?movieInfoId={movieInfoId}", 1L)
+                .exchange()
+                .expectStatus()
+                .isOk()
+                .expectBody()
+                .jsonPath("$.reviews.length()").isEqualTo(1)
+                .jsonPath("$.nextReviewsToken").doesNotExist();
+    }
+
+    @Test
+    void getReviewsPage_invalidLimit() {
+        webTestClient
+                .get()
+                .uri(REVIEWS_URL + "/page?movieInfoId={movieInfoId}&limit={limit}", 1L, ReviewHandler.MAX_PAGE_SIZE + 1)
+                .exchange()
+                .expectStatus()
+                .isBadRequest();
+    }
+
+    @Test
+    void getReviewsByMovieInfoIds_invalid() {
+        webTestClient
+                .get()
+                .uri(REVIEWS_URL + "?movieInfoIds={movieInfoIds}", "1,abc")
+                .exchange()
+                .expectStatus()
+                .isBadRequest();
+
+        var tooMany = LongStream.rangeClosed(1, ReviewHandler.MAX_MOVIE_INFO_IDS + 1)
+                .mapToObj(String::valueOf)
+                .collect(Collectors.joining(","));
+        webTestClient
+                .get()
+                .uri(REVIEWS_URL + "?movieInfoIds={movieInfoIds}", tooMany)
+                .exchange()
+                .expectStatus()
+                .isBadRequest();
+    }
+
+    @Test
+    void getReviewsStream() {
+        when(reviewChangeFeed.stream(1L))
+                .thenReturn(Flux.just(new ReviewChange(ChangeType.ADDED, new Review("abc", 1L, "Awesome Movie", 9.0))));
+
+        webTestClient
+                .get()
+                .uri(REVIEWS_URL + "/stream?movieInfoId={movieInfoId}", 1L)
+                .exchange()
+                .expectStatus()
+                .isOk()
+                .expectHeader()
+                .contentTypeCompatibleWith(MediaType.TEXT_EVENT_STREAM)
+                .expectBodyList(ReviewChange.class)
+                .hasSize(1);
+
+        verify(reviewChangeFeed, never()).stream();
+    }
+
+    @Test
+    void updateReview() {
+        when(reviewReactiveRepository.findAndUpdateById("abc", "Not an Awesome Movie", 8.0))
+                .thenReturn(Mono.just(new Review("abc", 1L, "Awesome Movie", 9.0)));
+
+        webTestClient
+                .put()
+                .uri(REVIEWS_URL + "/{id}", "abc")
+                .bodyValue(new Review(null, null, "Not an Awesome Movie", 8.0))
+                .exchange()
+                .expectStatus()
+                .isOk()
+                .expectBody()
+                .jsonPath("$.movieInfoId").isEqualTo(1)
+                .jsonPath("$.comment").isEqualTo("Not an Awesome Movie")
+                .jsonPath("$.rating").isEqualTo(8.0);
+
+        // the delta comes from the rating the update replaced
+        verify(reviewStatsService).recordUpdated(1L, 9.0, 8.0);
+        verify(reviewChangeFeed).publish(ChangeType.UPDATED, new Review("abc", 1L, "Not an Awesome Movie", 8.0));
+        verify(reviewReactiveRepository, never()).save(any());
+    }
+
+    @Test
+    void updateReview_notFound() {
+        when(reviewReactiveRepository.findAndUpdateById("abc", "Not an Awesome Movie", 8.0))
+                .thenReturn(Mono.empty());
+
+        webTestClient
+                .put()
+                .uri(REVIEWS_URL + "/{id}", "abc")
+                .bodyValue(new Review(null, 1L, "Not an Awesome Movie", 8.0))
+                .exchange()
+                .expectStatus()
+                .isNotFound();
+    }
+
+    @Test
+    void updateReview_statsRebuilding() {
+        when(reviewStatsService.guardWrite(any()))
+                .thenReturn(Mono.error(new ReviewStatsRebuildingException("Review stats are being rebuilt, retry later")));
+
+        webTestClient
+                .put()
+                .uri(REVIEWS_URL + "/{id}", "abc")
+                .bodyValue(new Review(null, null, "Not an Awesome Movie", 8.0))
+                .exchange()
+                .expectStatus()
+                .isEqualTo(HttpStatus.SERVICE_UNAVAILABLE)
+                .expectHeader()
+                .valueEquals(HttpHeaders.RETRY_AFTER, "1");
+
+        verify(reviewReactiveRepository, never()).findAndUpdateById(any(), any(), any());
+    }
+
+    @Test
+    void deleteReview() {
+        var review = new Review("abc", 1L, "Awesome Movie", 9.0);
+        when(reviewReactiveRepository.findAndRemoveById("abc"))
+                .thenReturn(Mono.just(review));
+
+        webTestClient
+                .delete()
+                .uri(REVIEWS_URL + "/{id}", "abc")
+                .exchange()
+                .expectStatus()
+                .isNoContent();
+
+        verify(reviewStatsService).recordRemoved(review);
+        verify(reviewChangeFeed).publish(ChangeType.REMOVED, review);
+    }
+
+    @Test
+    void getReviewStats() {
+        when(reviewStatsService.getReviewStats(1L))
+                .thenReturn(Mono.just(new ReviewStats(1L, 2, 17.0, 8.0, 9.0, Map.of("8", 1L, "9", 1L), null)));
+
+        webTestClient
+                .get()
+                .uri(REVIEWS_URL + "/stats?movieInfoId={movieInfoId}", 1L)
+                .exchange()
+                .expectStatus()
+                .isOk()
+                .expectBody()
+                .jsonPath("$.count").isEqualTo(2)
+                .jsonPath("$.average").isEqualTo(8.5)
+                .jsonPath("$.histogram.9").isEqualTo(1);
+
+        verify(reviewReactiveRepository, never()).findReviewsByMovieInfoId(any());
+    }
+
+    @Test
+    void getReviewStats_missingMovieInfoId() {
+        webTestClient
+                .get()
+                .uri(REVIEWS_URL + "/stats")
+                .exchange()
+                .expectStatus()
+                .isBadRequest();
+    }
+
+    @Test
+    void getTopRatedMovies() {
+        when(reviewLeaderboard.top(2, 5))
+                .thenReturn(List.of(new ReviewRanking(1L, 9.5, 10), new ReviewRanking(2L, 9.0, 5)));
+
+        webTestClient
+                .get()
+                .uri(REVIEWS_URL + "/top?k={k}&minReviews={minReviews}", 2, 5)
+                .exchange()
+                .expectStatus()
+                .isOk()
+                .expectBody()
+                .jsonPath("$.length()").isEqualTo(2)
+                .jsonPath("$[0].movieInfoId").isEqualTo(1)
+                .jsonPath("$[1].average").isEqualTo(9.0);
+
+        verify(reviewReactiveRepository, never()).findAll();
+    }
+
+    @Test
+    void getTopRatedMovies_invalidK() {
+        webTestClient
+                .get()
+                .uri(REVIEWS_URL + "/top?k={k}", 0)
+                .exchange()
+                .expectStatus()
+                .isBadRequest();
+    }
+
+    @Test
+    void getReviewActivity() {
+        when(reviewActivityTracker.getReviewActivity(1L))
+                .thenReturn(new ReviewActivity(1L, List.of(new ReviewWindow(Duration.ofMinutes(5), 10, 2.5, 2.0),
+                        new ReviewWindow(Duration.ofHours(1), 12, 3.0, 0.2))));
+
+        webTestClient
+                .get()
+                .uri(REVIEWS_URL + "/activity?movieInfoId={movieInfoId}", 1L)
+                .exchange()
+                .expectStatus()
+                .isOk()
+                .expectBody()
+                .jsonPath("$.movieInfoId").isEqualTo(1)
+                .jsonPath("$.windows[0].count").isEqualTo(10)
+                .jsonPath("$.windows[0].reviewsPerMinute").isEqualTo(2.0)
+                .jsonPath("$.windows[1].averageRating").isEqualTo(3.0);
+    }
 }
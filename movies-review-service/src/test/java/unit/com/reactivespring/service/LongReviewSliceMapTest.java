@@ -0,0 +1,94 @@
+package com.reactivespring.service;
+
+import com.reactivespring.domain.Review;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LongReviewSliceMapTest {
+
+    @Test
+    void putGetRemove() {
+        var map = new LongReviewSliceMap(8);
+        var slice = slice("abc");
+
+        map.put(0L, slice);
+        map.put(-1L, slice("def"));
+
+        assertSame(slice, map.get(0L));
+        assertEquals("def", map.get(-1L).toReviews(-1L).get(0).getReviewId());
+        assertNull(map.get(1L));
+        assertEquals(2, map.size());
+
+        assertTrue(map.remove(0L));
+        assertFalse(map.remove(0L));
+        assertNull(map.get(0L));
+        assertEquals(1, map.size());
+    }
+
+    @Test
+    void evictsUnreferencedFirst() {
+        var map = new LongReviewSliceMap(3);
+        map.put(1L, slice("1"));
+        map.put(2L, slice("2"));
+        map.put(3L, slice("3"));
+        map.get(1L);
+        map.get(3L);
+
+        map.put(4L, slice("4"));
+
+        assertEquals(3, map.size());
+        assertNull(map.get(2L));
+        assertNotNull(map.get(1L));
+        assertNotNull(map.get(3L));
+        assertNotNull(map.get(4L));
+    }
+
+    // random puts and removes against a HashMap, with a bound high enough that nothing is evicted
+    @Test
+    void matchesHashMap() {
+        var random = new Random(42);
+        var map = new LongReviewSliceMap(1_000);
+        var expected = new HashMap<Long, ReviewSlice>();
+
+        for (int i = 0; i < 100_000; i++) {
+            long key = random.nextInt(1_000);
+            if (random.nextInt(3) == 0) {
+                assertEquals(expected.remove(key) != null, map.remove(key));
+            } else {
+                var slice = slice(String.valueOf(i));
+                expected.put(key, slice);
+                map.put(key, slice);
+            }
+            assertEquals(expected.size(), map.size());
+        }
+        for (long key = 0; key < 1_000; key++) {
+            assertSame(expected.get(key), map.get(key));
+        }
+    }
+
+    @Test
+    void staysBounded() {
+        var map = new LongReviewSliceMap(100);
+        for (long key = 0; key < 10_000; key++) {
+            map.put(key, slice(String.valueOf(key)));
+            assertNotNull(map.get(key));
+        }
+        assertEquals(100, map.size());
+    }
+
+    @Test
+    void slice() {
+        var reviews = List.of(new Review("abc", 1L, "Awesome Movie", 9.0), new Review("def", 1L, null, null));
+
+        assertEquals(reviews, ReviewSlice.of(reviews).toReviews(1L));
+    }
+
+    private static ReviewSlice slice(String reviewId) {
+        return ReviewSlice.of(List.of(new Review(reviewId, 1L, "Awesome Movie", 9.0)));
+    }
+}
@@ -0,0 +1,171 @@
+package com.reactivespring.service;
+
+import com.reactivespring.domain.Review;
+import com.reactivespring.domain.ReviewWindow;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ReviewActivityTrackerTest {
+
+    MutableClock clock = new MutableClock(Instant.parse("2026-01-01T00:00:00Z"));
+
+    ReviewActivityTracker reviewActivityTracker = new ReviewActivityTracker(clock, new SimpleMeterRegistry());
+
+    @Test
+    void getReviewActivity() {
+        reviewActivityTracker.record(review(1L, 8.0));
+        reviewActivityTracker.record(review(1L, 6.0));
+        reviewActivityTracker.record(review(1L, null));
+        reviewActivityTracker.record(review(2L, 1.0));
+
+        var windows = reviewActivityTracker.getReviewActivity(1L).getWindows();
+
+        assertWindow(windows.get(0), Duration.ofMinutes(5), 3, 7.0);
+        assertEquals(0.6, windows.get(0).getReviewsPerMinute(), 1e-9);
+        assertWindow(windows.get(1), Duration.ofHours(1), 3, 7.0);
+        assertEquals(0.05, windows.get(1).getReviewsPerMinute(), 1e-9);
+    }
+
+    @Test
+    void getReviewActivity_unknownMovie() {
+        var windows = reviewActivityTracker.getReviewActivity(1L).getWindows();
+
+        assertWindow(windows.get(0), Duration.ofMinutes(5), 0, null);
+        assertWindow(windows.get(1), Duration.ofHours(1), 0, null);
+    }
+
+    @Test
+    void getReviewActivity_windowsSlide() {
+        reviewActivityTracker.record(review(1L, 2.0));
+        clock.advance(Duration.ofMinutes(4));
+        reviewActivityTracker.record(review(1L, 4.0));
+
+        clock.advance(Duration.ofMinutes(2));
+        var windows = reviewActivityTracker.getReviewActivity(1L).getWindows();
+        assertWindow(windows.get(0), Duration.ofMinutes(5), 1, 4.0);
+        assertWindow(windows.get(1), Duration.ofHours(1), 2, 3.0);
+
+        clock.advance(Duration.ofMinutes(55));
+        windows = reviewActivityTracker.getReviewActivity(1L).getWindows();
+        assertWindow(windows.get(0), Duration.ofMinutes(5), 0, null);
+        assertWindow(windows.get(1), Duration.ofHours(1), 1, 4.0);
+    }
+
+    @Test
+    void record_createdAt() {
+        // a review written behind is counted at its creation time, not when it was flushed
+        var review = review(1L, 5.0);
+        review.setCreatedAt(clock.instant().minus(Duration.ofMinutes(10)));
+        reviewActivityTracker.record(review);
+
+        var windows = reviewActivityTracker.getReviewActivity(1L).getWindows();
+        assertWindow(windows.get(0), Duration.ofMinutes(5), 0, null);
+        assertWindow(windows.get(1), Duration.ofHours(1), 1, 5.0);
+    }
+
+    @Test
+    void record_reusedSlot() {
+        reviewActivityTracker.record(review(1L, 2.0));
+        // same slot of both rings one lap later, the old bucket must not be added to the new one
+        clock.advance(Duration.ofHours(1));
+        reviewActivityTracker.record(review(1L, 4.0));
+
+        var windows = reviewActivityTracker.getReviewActivity(1L).getWindows();
+        assertWindow(windows.get(0), Duration.ofMinutes(5), 1, 4.0);
+        assertWindow(windows.get(1), Duration.ofHours(1), 1, 4.0);
+    }
+
+    @Test
+    void sweep() {
+        reviewActivityTracker.record(review(1L, 2.0));
+        clock.advance(Duration.ofMinutes(30));
+        reviewActivityTracker.record(review(2L, 2.0));
+
+        reviewActivityTracker.sweep();
+        assertEquals(2, reviewActivityTracker.size());
+
+        clock.advance(Duration.ofMinutes(31));
+        reviewActivityTracker.sweep();
+        assertEquals(1, reviewActivityTracker.size());
+        assertEquals(1, reviewActivityTracker.getReviewActivity(2L).getWindows().get(1).getCount());
+    }
+
+    @Test
+    void record_concurrentWriters() throws Exception {
+        int writers = 8;
+        int reviewsPerWriter = 10_000;
+        var executor = Executors.newFixedThreadPool(writers);
+        try {
+            var futures = new ArrayList<Future<?>>();
+            for (int i = 0; i < writers; i++) {
+                futures.add(executor.submit(() -> {
+                    for (int j = 0; j < reviewsPerWriter; j++) {
+                        reviewActivityTracker.record(review(1L, 1.0));
+                    }
+                }));
+            }
+            for (var future : futures) {
+                future.get(30, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        var windows = reviewActivityTracker.getReviewActivity(1L).getWindows();
+        assertWindow(windows.get(0), Duration.ofMinutes(5), (long) writers * reviewsPerWriter, 1.0);
+    }
+
+    private static void assertWindow(ReviewWindow window, Duration duration, long count, Double averageRating) {
+        assertEquals(duration, window.getWindow());
+        assertEquals(count, window.getCount());
+        if (averageRating == null) {
+            assertNull(window.getAverageRating());
+        } else {
+            assertEquals(averageRating, window.getAverageRating(), 1e-9);
+        }
+    }
+
+    private static Review review(Long movieInfoId, Double rating) {
+        return new Review(null, movieInfoId, "comment", rating);
+    }
+
+    static class MutableClock extends Clock {
+
+        private volatile Instant instant;
+
+        MutableClock(Instant instant) {
+            this.instant = instant;
+        }
+
+        void advance(Duration duration) {
+            instant = instant.plus(duration);
+        }
+
+        @Override
+        public ZoneId getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            return this;
+        }
+
+        @Override
+        public Instant instant() {
+            return instant;
+        }
+    }
+}
@@ -0,0 +1,116 @@
+package com.reactivespring.service;
+
+import com.reactivespring.domain.Review;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Sinks;
+import reactor.test.StepVerifier;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ReviewCacheTest {
+
+    SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    AtomicInteger loads = new AtomicInteger();
+
+    Function<Long, Flux<Review>> loader = movieInfoId -> Flux.defer(() -> {
+        loads.incrementAndGet();
+        return Flux.just(new Review("abc", movieInfoId, "Awesome Movie", 9.0),
+                new Review("def", movieInfoId, "Excellent Movie", 8.0));
+    });
+
+    @Test
+    void findReviewsByMovieInfoId() {
+        var reviewCache = new ReviewCache(true, 100, 10, meterRegistry);
+
+        StepVerifier.create(reviewCache.findReviewsByMovieInfoId(1L, loader))
+                .expectNextCount(2)
+                .verifyComplete();
+        StepVerifier.create(reviewCache.findReviewsByMovieInfoId(1L, loader))
+                .assertNext(review -> assertEquals(new Review("abc", 1L, "Awesome Movie", 9.0), review))
+                .expectNextCount(1)
+                .verifyComplete();
+
+        assertEquals(1, loads.get());
+        assertEquals(1.0, meterRegistry.get("reviews.cache.hits").counter().count());
+        assertEquals(1.0, meterRegistry.get("reviews.cache.size").gauge().value());
+    }
+
+    @Test
+    void invalidate() {
+        var reviewCache = new ReviewCache(true, 100, 10, meterRegistry);
+        reviewCache.findReviewsByMovieInfoId(1L, loader).blockLast();
+
+        reviewCache.invalidate(1L);
+        reviewCache.findReviewsByMovieInfoId(1L, loader).blockLast();
+
+        assertEquals(2, loads.get());
+    }
+
+    @Test
+    void invalidateDuringLoad() {
+        var reviewCache = new ReviewCache(true, 100, 10, meterRegistry);
+        var pending = Sinks.many().unicast().<Review>onBackpressureBuffer();
+
+        StepVerifier.create(reviewCache.findReviewsByMovieInfoId(1L, movieInfoId -> pending.asFlux()))
+                .then(() -> {
+                    reviewCache.invalidate(1L);
+                    pending.tryEmitNext(new Review("abc", 1L, "Awesome Movie", 9.0));
+                    pending.tryEmitComplete();
+                })
+                .expectNextCount(1)
+                .verifyComplete();
+
+        // the load read state from before the write, it must not be cached
+        assertEquals(0, reviewCache.size());
+    }
+
+    @Test
+    void tooManyReviewsAreNotCached() {
+        var reviewCache = new ReviewCache(true, 100, 1, meterRegistry);
+
+        reviewCache.findReviewsByMovieInfoId(1L, loader).blockLast();
+
+        assertEquals(0, reviewCache.size());
+    }
+
+    @Test
+    void tooManyReviewsAreStreamed() {
+        var reviewCache = new ReviewCache(true, 100, 2, meterRegistry);
+        List<AtomicInteger> reads = new ArrayList<>();
+        Function<Long, Flux<Review>> manyReviews = movieInfoId -> Flux.defer(() -> {
+            var read = new AtomicInteger();
+            reads.add(read);
+            return Flux.range(0, 1_000)
+                    .map(i -> new Review(String.valueOf(i), movieInfoId, "Awesome Movie", 9.0))
+                    .doOnNext(review -> read.incrementAndGet());
+        });
+
+        StepVerifier.create(reviewCache.findReviewsByMovieInfoId(1L, manyReviews))
+                .expectNextCount(1_000)
+                .verifyComplete();
+
+        // the first read stops one review past the limit, the second one is streamed through
+        assertEquals(2, reads.size());
+        assertEquals(3, reads.get(0).get());
+        assertEquals(1_000, reads.get(1).get());
+        assertEquals(0, reviewCache.size());
+    }
+
+    @Test
+    void disabled() {
+        var reviewCache = new ReviewCache(false, 100, 10, meterRegistry);
+
+        reviewCache.findReviewsByMovieInfoId(1L, loader).blockLast();
+        reviewCache.findReviewsByMovieInfoId(1L, loader).blockLast();
+
+        assertEquals(2, loads.get());
+    }
+}
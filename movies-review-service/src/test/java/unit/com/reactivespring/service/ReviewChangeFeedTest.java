@@ -0,0 +1,213 @@
+package com.reactivespring.service;
+
+import com.reactivespring.domain.ChangeType;
+import com.reactivespring.domain.Review;
+import com.reactivespring.domain.ReviewChange;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.reactivestreams.Subscription;
+import reactor.core.Exceptions;
+import reactor.core.publisher.BaseSubscriber;
+import reactor.core.scheduler.Schedulers;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ReviewChangeFeedTest {
+
+    SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @Test
+    void stream_filteredByMovieInfoId() {
+        var changeFeed = new ReviewChangeFeed(2, ReviewChangeFeed.OverflowPolicy.DROP_OLDEST, meterRegistry, Schedulers.immediate());
+
+        StepVerifier.create(changeFeed.stream(1L), 0)
+                .then(() -> {
+                    for (int i = 0; i < 6; i++) {
+                        changeFeed.publish(ChangeType.ADDED, review(String.valueOf(i), i % 2 == 0 ? 1L : 2L));
+                    }
+                })
+                .thenRequest(2)
+                // only reviews of movie 1 are buffered, so the bound is spent on them alone
+                .assertNext(change -> assertEquals("2", change.getReview().getReviewId()))
+                .assertNext(change -> assertEquals("4", change.getReview().getReviewId()))
+                .thenCancel()
+                .verify();
+
+        assertEquals(1.0, meterRegistry.get("reviews.stream.dropped").counter().count());
+        assertEquals(0.0, meterRegistry.get("reviews.stream.subscribers").gauge().value());
+    }
+
+    @Test
+    void stream_disconnect() {
+        var changeFeed = new ReviewChangeFeed(2, ReviewChangeFeed.OverflowPolicy.DISCONNECT, meterRegistry, Schedulers.immediate());
+
+        StepVerifier.create(changeFeed.stream(), 0)
+                .then(() -> {
+                    for (int i = 0; i < 3; i++) {
+                        changeFeed.publish(ChangeType.ADDED, review(String.valueOf(i), 1L));
+                    }
+                })
+                .thenRequest(2)
+                .expectNextCount(2)
+                .expectErrorMatches(Exceptions::isOverflow)
+                .verify();
+
+        assertEquals(1.0, meterRegistry.get("reviews.stream.disconnected").counter().count());
+    }
+
+    // the request path and the write-behind flusher publishing together, per movie subscribers see all of theirs
+    @Test
+    void publish_concurrent() throws Exception {
+        int publishers = 4;
+        int published = 1_000;
+        var changeFeed = new ReviewChangeFeed(publishers * published, ReviewChangeFeed.OverflowPolicy.DROP_OLDEST, meterRegistry);
+        var received = changeFeed.stream(1L).take(publishers * published / 2).count().toFuture();
+
+        var start = new CountDownLatch(1);
+        var executor = Executors.newFixedThreadPool(publishers);
+        try {
+            for (int p = 0; p < publishers; p++) {
+                executor.submit(() -> {
+                    start.await();
+                    for (int i = 0; i < published; i++) {
+                        changeFeed.publish(ChangeType.ADDED, review(String.valueOf(i), i % 2 == 0 ? 1L : 2L));
+                    }
+                    return null;
+                });
+            }
+            start.countDown();
+
+            assertEquals((long) publishers * published / 2, received.get(5, TimeUnit.SECONDS).longValue());
+            assertEquals(0.0, meterRegistry.get("reviews.stream.dropped").counter().count());
+        } finally {
+            executor.shutdownNow();
+            changeFeed.stop();
+        }
+    }
+
+    // a subscriber stuck in onNext holds up the feed thread, the writer only ever enqueues
+    @Test
+    void publish_doesNotRunSubscribers() throws Exception {
+        var changeFeed = new ReviewChangeFeed(4, ReviewChangeFeed.OverflowPolicy.DROP_OLDEST, meterRegistry);
+        var feedThread = new AtomicReference<Thread>();
+        var entered = new CountDownLatch(1);
+        var release = new CountDownLatch(1);
+        var received = new AtomicLong();
+        var subscription = changeFeed.stream().subscribe(change -> {
+            feedThread.set(Thread.currentThread());
+            entered.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            received.incrementAndGet();
+        });
+        try {
+            changeFeed.publish(ChangeType.ADDED, review("0", 1L));
+            assertTrue(entered.await(1, TimeUnit.SECONDS));
+            assertNotSame(Thread.currentThread(), feedThread.get());
+
+            assertTimeoutPreemptively(Duration.ofSeconds(1), () -> {
+                for (int i = 1; i <= 20; i++) {
+                    changeFeed.publish(ChangeType.ADDED, review(String.valueOf(i), 1L));
+                }
+            });
+            // the handoff queue is bounded, what does not fit is dropped instead of blocking the writer
+            long dropped = (long) meterRegistry.get("reviews.stream.dropped").counter().count();
+            assertTrue(dropped > 0);
+
+            release.countDown();
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+            while (received.get() + dropped < 21 && System.nanoTime() < deadline) {
+                Thread.sleep(10);
+            }
+            assertEquals(21, received.get() + dropped);
+        } finally {
+            release.countDown();
+            subscription.dispose();
+            changeFeed.stop();
+        }
+    }
+
+    // thousands of subscribers that never request or request rarely: each holds at most bufferSize reviews,
+    // so retained heap does not grow with the number of published reviews
+    @Test
+    void stream_soak() {
+        int bufferSize = 16;
+        int idleSubscribers = 2_000;
+        int slowSubscribers = 2_000;
+        int published = 5_000;
+        var changeFeed = new ReviewChangeFeed(bufferSize, ReviewChangeFeed.OverflowPolicy.DROP_OLDEST, meterRegistry, Schedulers.immediate());
+
+        var received = new AtomicLong();
+        var subscribers = new ArrayList<BaseSubscriber<ReviewChange>>();
+        for (int i = 0; i < idleSubscribers; i++) {
+            subscribers.add(subscriber(0, received));
+        }
+        var slow = new ArrayList<BaseSubscriber<ReviewChange>>();
+        for (int i = 0; i < slowSubscribers; i++) {
+            slow.add(subscriber(1, received));
+        }
+        subscribers.addAll(slow);
+        subscribers.forEach(subscriber -> changeFeed.stream().subscribe(subscriber));
+        assertEquals((double) (idleSubscribers + slowSubscribers), meterRegistry.get("reviews.stream.subscribers").gauge().value());
+
+        long heapBefore = usedHeap();
+        for (int i = 0; i < published; i++) {
+            changeFeed.publish(ChangeType.ADDED, review(String.valueOf(i), (long) (i % 100)));
+            if (i % 500 == 0) {
+                slow.forEach(subscriber -> subscriber.request(1));
+            }
+        }
+        long heapAfter = usedHeap();
+
+        // everything a subscriber neither received nor still buffers was dropped
+        long delivered = received.get();
+        long buffered = (long) (idleSubscribers + slowSubscribers) * bufferSize;
+        long dropped = (long) meterRegistry.get("reviews.stream.dropped").counter().count();
+        assertEquals((long) (idleSubscribers + slowSubscribers) * published, delivered + buffered + dropped);
+        // an unbounded buffer would retain 20M references here, well over 64MB
+        assertTrue(heapAfter - heapBefore < 64L * 1024 * 1024, "heap grew by " + (heapAfter - heapBefore) + " bytes");
+
+        subscribers.forEach(BaseSubscriber::dispose);
+        assertEquals(0.0, meterRegistry.get("reviews.stream.subscribers").gauge().value());
+    }
+
+    private BaseSubscriber<ReviewChange> subscriber(long initialRequest, AtomicLong received) {
+        return new BaseSubscriber<>() {
+            @Override
+            protected void hookOnSubscribe(Subscription subscription) {
+                if (initialRequest > 0) {
+                    request(initialRequest);
+                }
+            }
+
+            @Override
+            protected void hookOnNext(ReviewChange change) {
+                received.incrementAndGet();
+            }
+        };
+    }
+
+    private static long usedHeap() {
+        var runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    private Review review(String id, Long movieInfoId) {
+        return new Review(id, movieInfoId, "Awesome Movie", 9.0);
+    }
+}
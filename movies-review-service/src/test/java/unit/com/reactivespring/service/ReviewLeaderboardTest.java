@@ -0,0 +1,109 @@
+package com.reactivespring.service;
+
+import com.reactivespring.domain.ReviewRanking;
+import com.reactivespring.domain.ReviewStats;
+import com.reactivespring.repository.ReviewStatsRepository;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Flux;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class ReviewLeaderboardTest {
+
+    ReviewStatsRepository reviewStatsRepository = mock(ReviewStatsRepository.class);
+
+    ReviewLeaderboard reviewLeaderboard = new ReviewLeaderboard(reviewStatsRepository);
+
+    @Test
+    void seed() {
+        when(reviewStatsRepository.findAll())
+                .thenReturn(Flux.just(reviewStats(1L, 2, 16.0), reviewStats(2L, 1, 9.0)));
+
+        reviewLeaderboard.seed();
+
+        assertEquals(List.of(2L, 1L), movieInfoIds(reviewLeaderboard.top(10, 1)));
+    }
+
+    @Test
+    void update() {
+        reviewLeaderboard.update(reviewStats(1L, 2, 16.0));
+        reviewLeaderboard.update(reviewStats(2L, 1, 9.0));
+        reviewLeaderboard.update(reviewStats(3L, 4, 34.0));
+        assertEquals(List.of(2L, 3L, 1L), movieInfoIds(reviewLeaderboard.top(10, 1)));
+
+        // a new rating moves the movie, the old position is gone
+        reviewLeaderboard.update(reviewStats(1L, 3, 26.0));
+        assertEquals(List.of(2L, 1L, 3L), movieInfoIds(reviewLeaderboard.top(10, 1)));
+        assertEquals(3, reviewLeaderboard.size());
+
+        // the last review of a movie was removed
+        reviewLeaderboard.update(reviewStats(2L, 0, 0.0));
+        assertEquals(List.of(1L, 3L), movieInfoIds(reviewLeaderboard.top(10, 1)));
+        assertEquals(2, reviewLeaderboard.size());
+    }
+
+    @Test
+    void update_olderVersionIgnored() {
+        reviewLeaderboard.update(reviewStats(1L, 3, 27.0, 2));
+        reviewLeaderboard.update(reviewStats(2L, 1, 8.0, 1));
+
+        // the stats of the first write arrive after those of the second
+        reviewLeaderboard.update(reviewStats(1L, 2, 14.0, 1));
+
+        var top = reviewLeaderboard.top(10, 1);
+        assertEquals(List.of(1L, 2L), movieInfoIds(top));
+        assertEquals(3, top.get(0).getCount());
+    }
+
+    @Test
+    void top() {
+        reviewLeaderboard.update(reviewStats(1L, 2, 16.0));
+        reviewLeaderboard.update(reviewStats(2L, 1, 9.0));
+        reviewLeaderboard.update(reviewStats(3L, 4, 34.0));
+        reviewLeaderboard.update(reviewStats(4L, 2, 17.0));
+
+        var top = reviewLeaderboard.top(2, 2);
+
+        assertEquals(List.of(3L, 4L), movieInfoIds(top));
+        assertEquals(8.5, top.get(0).getAverage());
+        assertEquals(4, top.get(0).getCount());
+    }
+
+    @Test
+    void top_tiesPreferMoreReviews() {
+        reviewLeaderboard.update(reviewStats(1L, 1, 8.0));
+        reviewLeaderboard.update(reviewStats(2L, 3, 24.0));
+
+        assertEquals(List.of(2L, 1L), movieInfoIds(reviewLeaderboard.top(10, 1)));
+    }
+
+    @Test
+    void remove() {
+        reviewLeaderboard.update(reviewStats(1L, 2, 16.0));
+        reviewLeaderboard.update(reviewStats(2L, 1, 9.0));
+
+        reviewLeaderboard.remove(2L);
+
+        assertEquals(List.of(1L), movieInfoIds(reviewLeaderboard.top(10, 1)));
+    }
+
+    private static List<Long> movieInfoIds(List<ReviewRanking> rankings) {
+        return rankings.stream()
+                .map(ReviewRanking::getMovieInfoId)
+                .collect(Collectors.toList());
+    }
+
+    private static ReviewStats reviewStats(Long movieInfoId, long count, double sum) {
+        return new ReviewStats(movieInfoId, count, sum, null, null, new HashMap<>(), null);
+    }
+
+    private static ReviewStats reviewStats(Long movieInfoId, long count, double sum, long version) {
+        return new ReviewStats(movieInfoId, count, sum, null, null, new HashMap<>(), null, version);
+    }
+}
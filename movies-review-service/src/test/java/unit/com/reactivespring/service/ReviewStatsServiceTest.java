@@ -0,0 +1,126 @@
+package com.reactivespring.service;
+
+import com.reactivespring.domain.Review;
+import com.reactivespring.domain.ReviewStats;
+import com.reactivespring.exception.ReviewStatsRebuildingException;
+import com.reactivespring.repository.ReviewReactiveRepository;
+import com.reactivespring.repository.ReviewStatsRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyDouble;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.*;
+
+class ReviewStatsServiceTest {
+
+    ReviewStatsRepository reviewStatsRepository = mock(ReviewStatsRepository.class);
+
+    ReviewReactiveRepository reviewReactiveRepository = mock(ReviewReactiveRepository.class);
+
+    ReviewLeaderboard reviewLeaderboard = mock(ReviewLeaderboard.class);
+
+    // writes wait at most 200ms for a rebuild
+    ReviewStatsService reviewStatsService = new ReviewStatsService(reviewStatsRepository, reviewReactiveRepository,
+            reviewLeaderboard, Duration.ofMillis(200));
+
+    Sinks.Many<ReviewStats> aggregated = Sinks.many().unicast().onBackpressureBuffer();
+
+    @BeforeEach
+    void setUp() {
+        when(reviewReactiveRepository.aggregateReviewStats()).thenReturn(aggregated.asFlux());
+        when(reviewStatsRepository.replace(any())).thenAnswer(invocation -> Mono.just(invocation.getArgument(0)));
+        when(reviewStatsRepository.removeUpdatedBefore(any())).thenReturn(Flux.empty());
+    }
+
+    @Test
+    void rebuild_waitsForWritesInFlight() throws Exception {
+        Sinks.Empty<Void> write = Sinks.empty();
+        var pendingWrite = reviewStatsService.guardWrite(write.asMono()).subscribe();
+        try {
+            var rebuilt = reviewStatsService.rebuildReviewStats().toFuture();
+
+            verify(reviewReactiveRepository, after(100).never()).aggregateReviewStats();
+
+            write.tryEmitEmpty();
+            verify(reviewReactiveRepository, timeout(1000)).aggregateReviewStats();
+            aggregated.tryEmitNext(reviewStats(1L));
+            aggregated.tryEmitComplete();
+            assertEquals(1L, rebuilt.get(1, TimeUnit.SECONDS));
+        } finally {
+            pendingWrite.dispose();
+        }
+    }
+
+    @Test
+    void guardWrite_waitsForRebuild() {
+        var rebuilt = reviewStatsService.rebuildReviewStats().toFuture();
+        verify(reviewReactiveRepository, timeout(1000)).aggregateReviewStats();
+
+        StepVerifier.create(reviewStatsService.guardWrite(Mono.just("written")))
+                .expectSubscription()
+                .expectNoEvent(Duration.ofMillis(100))
+                .then(aggregated::tryEmitComplete)
+                .expectNext("written")
+                .verifyComplete();
+
+        assertEquals(0L, rebuilt.join());
+    }
+
+    @Test
+    void guardWrite_rejectedWhenRebuildOutlastsWait() {
+        reviewStatsService.rebuildReviewStats().subscribe();
+        verify(reviewReactiveRepository, timeout(1000)).aggregateReviewStats();
+
+        StepVerifier.create(reviewStatsService.guardWrite(Mono.just("written")))
+                .expectError(ReviewStatsRebuildingException.class)
+                .verify(Duration.ofSeconds(1));
+
+        StepVerifier.create(reviewStatsService.rebuildReviewStats())
+                .expectError(ReviewStatsRebuildingException.class)
+                .verify(Duration.ofSeconds(1));
+    }
+
+    // removing the min of 5, 7 and 9 while 3 is added: the first range read misses the 3 and its write
+    // finds the count changed, so the range is read again instead of overwriting the lower min
+    @Test
+    void recordRemoved_rangeReadAgainAfterConcurrentAdd() {
+        when(reviewStatsRepository.applyDelta(any()))
+                .thenReturn(Mono.just(new ReviewStats(1L, 2, 16.0, 5.0, 9.0, Map.of("7", 1L, "9", 1L), null)));
+        when(reviewReactiveRepository.findRatingRange(1L))
+                .thenReturn(Mono.just(range(7.0, 9.0)))
+                .thenReturn(Mono.just(range(3.0, 9.0)));
+        when(reviewStatsRepository.setRange(1L, 2L, 16.0, 7.0, 9.0)).thenReturn(Mono.empty());
+        var afterAdd = new ReviewStats(1L, 3, 19.0, 3.0, 9.0, Map.of("3", 1L, "7", 1L, "9", 1L), null);
+        when(reviewStatsRepository.findById(1L)).thenReturn(Mono.just(afterAdd));
+        when(reviewStatsRepository.setRange(1L, 3L, 19.0, 3.0, 9.0)).thenReturn(Mono.just(afterAdd));
+
+        StepVerifier.create(reviewStatsService.recordRemoved(new Review(null, 1L, "Bad Movie", 5.0)))
+                .assertNext(reviewStats -> assertEquals(3.0, reviewStats.getMin()))
+                .verifyComplete();
+
+        verify(reviewStatsRepository, times(2)).setRange(any(), anyLong(), anyDouble(), any(), any());
+        verify(reviewLeaderboard).update(afterAdd);
+    }
+
+    private static ReviewStats range(double min, double max) {
+        var range = ReviewStats.empty(1L);
+        range.setMin(min);
+        range.setMax(max);
+        return range;
+    }
+
+    private static ReviewStats reviewStats(Long movieInfoId) {
+        return new ReviewStats(movieInfoId, 1, 9.0, 9.0, 9.0, Map.of(ReviewStats.bucket(9.0), 1L), null);
+    }
+}
@@ -0,0 +1,134 @@
+package com.reactivespring.service;
+
+import com.reactivespring.domain.ChangeType;
+import com.reactivespring.domain.Review;
+import com.reactivespring.exception.ReviewQueueFullException;
+import com.reactivespring.repository.ReviewReactiveRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.*;
+
+class ReviewWriteBehindTest {
+
+    ReviewReactiveRepository reviewReactiveRepository = mock(ReviewReactiveRepository.class);
+
+    ReviewStatsService reviewStatsService = mock(ReviewStatsService.class);
+
+    ReviewChangeFeed reviewChangeFeed = mock(ReviewChangeFeed.class);
+
+    ReviewCache reviewCache = mock(ReviewCache.class);
+
+    ReviewActivityTracker reviewActivityTracker = mock(ReviewActivityTracker.class);
+
+    SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    ReviewWriteBehind reviewWriteBehind;
+
+    @BeforeEach
+    void setUp() {
+        when(reviewReactiveRepository.insertUnordered(anyList())).thenReturn(Mono.just(Map.of()));
+        when(reviewStatsService.guardWrite(any())).thenAnswer(invocation -> invocation.getArgument(0));
+        when(reviewStatsService.recordAddedAll(anyList())).thenReturn(Flux.empty());
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        reviewWriteBehind.drain();
+    }
+
+    @Test
+    void flushOnBatchSize() {
+        reviewWriteBehind = writeBehind(10, 3, Duration.ofHours(1));
+        reviewWriteBehind.start();
+
+        for (int i = 0; i < 3; i++) {
+            StepVerifier.create(reviewWriteBehind.enqueue(new Review(null, 1L, "Awesome Movie", 9.0)))
+                    .assertNext(review -> assertNotNull(review.getReviewId()))
+                    .verifyComplete();
+        }
+
+        verify(reviewReactiveRepository, timeout(1000)).insertUnordered(argThat(batch -> batch.size() == 3));
+        verify(reviewStatsService, timeout(1000)).recordAddedAll(anyList());
+        verify(reviewChangeFeed, times(3)).publish(eq(ChangeType.ADDED), any());
+        assertEquals(1, meterRegistry.get("reviews.writebehind.batch.size").summary().count());
+    }
+
+    @Test
+    void flushOnInterval() {
+        reviewWriteBehind = writeBehind(10, 100, Duration.ofMillis(50));
+        reviewWriteBehind.start();
+
+        reviewWriteBehind.enqueue(new Review(null, 1L, "Awesome Movie", 9.0)).block();
+
+        verify(reviewReactiveRepository, timeout(1000)).insertUnordered(argThat(batch -> batch.size() == 1));
+    }
+
+    @Test
+    void rejectWhenFull() {
+        // never flushes on its own, the queue fills up
+        reviewWriteBehind = writeBehind(2, 100, Duration.ofHours(1));
+        reviewWriteBehind.start();
+
+        reviewWriteBehind.enqueue(new Review(null, 1L, "Awesome Movie", 9.0)).block();
+        reviewWriteBehind.enqueue(new Review(null, 1L, "Awesome Movie", 9.0)).block();
+
+        StepVerifier.create(reviewWriteBehind.enqueue(new Review(null, 1L, "Awesome Movie", 9.0)))
+                .expectError(ReviewQueueFullException.class)
+                .verify();
+        assertEquals(1.0, meterRegistry.get("reviews.writebehind.rejected").counter().count());
+        assertEquals(2.0, meterRegistry.get("reviews.writebehind.queue.depth").gauge().value());
+    }
+
+    @Test
+    void drainOnShutdown() throws Exception {
+        reviewWriteBehind = writeBehind(10, 2, Duration.ofHours(1));
+        reviewWriteBehind.start();
+        // the first batch is written when the second review arrives, the third one waits for the drain
+        when(reviewReactiveRepository.insertUnordered(anyList()))
+                .thenReturn(Mono.delay(Duration.ofMillis(100)).thenReturn(Map.of()));
+
+        for (int i = 0; i < 3; i++) {
+            reviewWriteBehind.enqueue(new Review(null, 1L, "Awesome Movie", 9.0)).block();
+        }
+        reviewWriteBehind.drain();
+
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<List<Review>> batches = ArgumentCaptor.forClass(List.class);
+        verify(reviewReactiveRepository, times(2)).insertUnordered(batches.capture());
+        assertEquals(3, batches.getAllValues().stream().mapToInt(List::size).sum());
+        assertEquals(0, reviewWriteBehind.queueDepth());
+    }
+
+    @Test
+    void failedReviewsAreNotCounted() {
+        reviewWriteBehind = writeBehind(10, 2, Duration.ofHours(1));
+        reviewWriteBehind.start();
+        when(reviewReactiveRepository.insertUnordered(anyList())).thenReturn(Mono.just(Map.of(0, "E11000 duplicate key error")));
+
+        reviewWriteBehind.enqueue(new Review("abc", 1L, "Awesome Movie", 9.0)).block();
+        reviewWriteBehind.enqueue(new Review(null, 1L, "Awesome Movie", 8.0)).block();
+
+        verify(reviewStatsService, timeout(1000)).recordAddedAll(argThat(written -> written.size() == 1
+                && written.get(0).getRating() == 8.0));
+        assertEquals(1.0, meterRegistry.get("reviews.writebehind.failed").counter().count());
+    }
+
+    private ReviewWriteBehind writeBehind(int queueCapacity, int batchSize, Duration flushInterval) {
+        return new ReviewWriteBehind(true, queueCapacity, batchSize, flushInterval, Duration.ofSeconds(5),
+                reviewReactiveRepository, reviewStatsService, reviewChangeFeed, reviewCache, reviewActivityTracker, meterRegistry);
+    }
+}
@@ -0,0 +1,26 @@
+package com.reactivespring.client;
+
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.web.reactive.function.BodyExtractors;
+import org.springframework.web.reactive.function.client.ClientResponse;
+import reactor.core.publisher.Mono;
+
+import java.nio.charset.StandardCharsets;
+
+// reads at most maxBytes of an error response, an oversized body is cut off instead of buffered whole
+final class ErrorBodies {
+
+    private ErrorBodies() {
+    }
+
+    static Mono<String> truncated(ClientResponse clientResponse, int maxBytes) {
+        var body = clientResponse.body(BodyExtractors.toDataBuffers());
+        return DataBufferUtils.join(DataBufferUtils.takeUntilByteCount(body, maxBytes))
+                .map(dataBuffer -> {
+                    var text = dataBuffer.toString(StandardCharsets.UTF_8);
+                    DataBufferUtils.release(dataBuffer);
+                    return text;
+                })
+                .defaultIfEmpty("");
+    }
+}
@@ -0,0 +1,37 @@
+package com.reactivespring.client;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+// token bucket that caps hedges at a share of the primary requests: every request adds ratio of a token,
+// every hedge takes a whole one. Tokens are counted in thousandths so the bucket is a single AtomicLong.
+final class HedgeBudget {
+
+    private static final long TOKEN = 1000;
+
+    private final long perRequest;
+
+    private final long capacity;
+
+    private final AtomicLong tokens = new AtomicLong();
+
+    HedgeBudget(double ratio, int maxBurst) {
+        this.perRequest = Math.round(ratio * TOKEN);
+        this.capacity = maxBurst * TOKEN;
+    }
+
+    void onRequest() {
+        tokens.accumulateAndGet(perRequest, (current, added) -> Math.min(capacity, current + added));
+    }
+
+    boolean tryAcquire() {
+        while (true) {
+            long current = tokens.get();
+            if (current < TOKEN) {
+                return false;
+            }
+            if (tokens.compareAndSet(current, current - TOKEN)) {
+                return true;
+            }
+        }
+    }
+}
@@ -0,0 +1,54 @@
+package com.reactivespring.client;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+// a percentile over the most recent call latencies. Recording is one array write, the percentile is
+// recomputed from a sorted copy every RECOMPUTE_EVERY samples so readers never sort.
+final class LatencyTracker {
+
+    private static final int WINDOW = 1024;
+
+    private static final int RECOMPUTE_EVERY = 32;
+
+    private final double percentile;
+
+    private final long initialNanos;
+
+    private final AtomicLongArray samples = new AtomicLongArray(WINDOW);
+
+    private final AtomicLong recorded = new AtomicLong();
+
+    private volatile long percentileNanos;
+
+    LatencyTracker(double percentile, Duration initial) {
+        this.percentile = percentile;
+        this.initialNanos = initial.toNanos();
+        this.percentileNanos = initialNanos;
+    }
+
+    void record(long nanos) {
+        long index = recorded.getAndIncrement();
+        samples.set((int) (index % WINDOW), nanos);
+        if ((index + 1) % RECOMPUTE_EVERY == 0) {
+            recompute();
+        }
+    }
+
+    // the initial value until the first RECOMPUTE_EVERY samples are in
+    Duration percentile() {
+        return Duration.ofNanos(percentileNanos);
+    }
+
+    private void recompute() {
+        int size = (int) Math.min(recorded.get(), WINDOW);
+        var sorted = new long[size];
+        for (int i = 0; i < size; i++) {
+            sorted[i] = samples.get(i);
+        }
+        Arrays.sort(sorted);
+        percentileNanos = sorted[Math.max(0, (int) Math.ceil(percentile * size) - 1)];
+    }
+}
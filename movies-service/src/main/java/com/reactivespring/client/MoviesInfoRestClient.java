@@ -0,0 +1,95 @@
+package com.reactivespring.client;
+
+import com.reactivespring.domain.MovieInfo;
+import com.reactivespring.domain.MovieInfoChange;
+import com.reactivespring.exception.MoviesInfoClientException;
+import com.reactivespring.exception.MoviesInfoServerException;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.client.ClientResponse;
+import org.springframework.web.reactive.function.client.WebClient;
+import org.springframework.web.util.UriComponentsBuilder;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.netty.http.client.HttpClientRequest;
+
+import java.time.Duration;
+import java.util.Collection;
+
+@Component
+public class MoviesInfoRestClient {
+
+    private WebClient webClient;
+
+    private String moviesInfoUrl;
+
+    private int errorBodyMaxBytes;
+
+    public MoviesInfoRestClient(WebClient webClient,
+                                @Value("${restClient.moviesInfoUrl}") String moviesInfoUrl,
+                                @Value("${restClient.error-body-max-bytes:1024}") int errorBodyMaxBytes) {
+        this.webClient = webClient;
+        this.moviesInfoUrl = moviesInfoUrl;
+        this.errorBodyMaxBytes = errorBodyMaxBytes;
+    }
+
+    public Mono<MovieInfo> retrieveMovieInfo(String movieId) {
+        return webClient
+                .get()
+                .uri(moviesInfoUrl + "/{id}", movieId)
+                .retrieve()
+                .onStatus(HttpStatus::is4xxClientError, clientResponse -> {
+                    if (clientResponse.statusCode().equals(HttpStatus.NOT_FOUND)) {
+                        return clientResponse.releaseBody()
+                                .then(Mono.error(new MoviesInfoClientException(
+                                        "There is no MovieInfo Available for the passed in Id : " + movieId,
+                                        clientResponse.rawStatusCode())));
+                    }
+                    return clientException(clientResponse);
+                })
+                .onStatus(HttpStatus::is5xxServerError, this::serverException)
+                .bodyToMono(MovieInfo.class);
+    }
+
+    // one request for many ids, unknown ids are missing from the result
+    public Flux<MovieInfo> retrieveMovieInfos(Collection<String> movieIds) {
+        var url = UriComponentsBuilder.fromHttpUrl(moviesInfoUrl)
+                .queryParam("ids", String.join(",", movieIds))
+                .buildAndExpand()
+                .toUriString();
+
+        return webClient
+                .get()
+                .uri(url)
+                .retrieve()
+                .onStatus(HttpStatus::is4xxClientError, this::clientException)
+                .onStatus(HttpStatus::is5xxServerError, this::serverException)
+                .bodyToFlux(MovieInfo.class);
+    }
+
+    // every movie info added, updated or deleted from now on; the connection may stay quiet for up to idleTimeout
+    // before it counts as dead
+    public Flux<MovieInfoChange> streamMovieInfoChanges(Duration idleTimeout) {
+        return webClient
+                .get()
+                .uri(moviesInfoUrl + "/stream")
+                .accept(MediaType.APPLICATION_NDJSON)
+                .httpRequest(httpRequest -> ((HttpClientRequest) httpRequest.getNativeRequest()).responseTimeout(idleTimeout))
+                .retrieve()
+                .onStatus(HttpStatus::is4xxClientError, this::clientException)
+                .onStatus(HttpStatus::is5xxServerError, this::serverException)
+                .bodyToFlux(MovieInfoChange.class);
+    }
+
+    private Mono<Throwable> clientException(ClientResponse clientResponse) {
+        return ErrorBodies.truncated(clientResponse, errorBodyMaxBytes)
+                .map(body -> new MoviesInfoClientException(body, clientResponse.rawStatusCode()));
+    }
+
+    private Mono<Throwable> serverException(ClientResponse clientResponse) {
+        return ErrorBodies.truncated(clientResponse, errorBodyMaxBytes)
+                .map(body -> new MoviesInfoServerException("Server Exception in MoviesInfoService " + body));
+    }
+}
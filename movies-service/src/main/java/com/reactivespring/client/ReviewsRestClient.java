@@ -0,0 +1,212 @@
+package com.reactivespring.client;
+
+import com.reactivespring.domain.Review;
+import com.reactivespring.domain.ReviewChange;
+import com.reactivespring.domain.ReviewPage;
+import com.reactivespring.domain.ReviewSummary;
+import com.reactivespring.exception.ReviewsClientException;
+import com.reactivespring.exception.ReviewsServerException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.client.ClientResponse;
+import org.springframework.web.reactive.function.client.WebClient;
+import org.springframework.web.util.UriComponentsBuilder;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.SignalType;
+import reactor.netty.http.client.HttpClientRequest;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.List;
+import java.util.function.Function;
+
+@Component
+public class ReviewsRestClient {
+
+    private WebClient webClient;
+
+    private String reviewsUrl;
+
+    private int errorBodyMaxBytes;
+
+    private boolean hedgingEnabled;
+
+    private Duration minHedgeDelay;
+
+    private LatencyTracker latencyTracker;
+
+    private HedgeBudget hedgeBudget;
+
+    private Counter hedgesSent;
+
+    private Counter hedgesWon;
+
+    private Counter hedgesDenied;
+
+    public ReviewsRestClient(WebClient webClient,
+                             @Value("${restClient.reviewsUrl}") String reviewsUrl,
+                             @Value("${restClient.error-body-max-bytes:1024}") int errorBodyMaxBytes,
+                             @Value("${restClient.reviews.hedging.enabled:false}") boolean hedgingEnabled,
+                             @Value("${restClient.reviews.hedging.percentile:0.95}") double hedgePercentile,
+                             @Value("${restClient.reviews.hedging.initial-delay:100ms}") Duration initialHedgeDelay,
+                             @Value("${restClient.reviews.hedging.min-delay:5ms}") Duration minHedgeDelay,
+                             @Value("${restClient.reviews.hedging.budget-ratio:0.05}") double hedgeBudgetRatio,
+                             @Value("${restClient.reviews.hedging.max-burst:10}") int hedgeMaxBurst,
+                             MeterRegistry meterRegistry) {
+        this.webClient = webClient;
+        this.reviewsUrl = reviewsUrl;
+        this.errorBodyMaxBytes = errorBodyMaxBytes;
+        this.hedgingEnabled = hedgingEnabled;
+        this.minHedgeDelay = minHedgeDelay;
+        this.latencyTracker = new LatencyTracker(hedgePercentile, initialHedgeDelay);
+        this.hedgeBudget = new HedgeBudget(hedgeBudgetRatio, hedgeMaxBurst);
+        this.hedgesSent = meterRegistry.counter("movies.reviews.hedge", "result", "sent");
+        this.hedgesWon = meterRegistry.counter("movies.reviews.hedge", "result", "won");
+        this.hedgesDenied = meterRegistry.counter("movies.reviews.hedge", "result", "denied");
+        Gauge.builder("movies.reviews.hedge.delay", this, client -> client.hedgeDelay().toMillis())
+                .baseUnit("milliseconds")
+                .register(meterRegistry);
+    }
+
+    public Flux<Review> retrieveReviews(String movieId) {
+        var url = UriComponentsBuilder.fromHttpUrl(reviewsUrl)
+                .queryParam("movieInfoId", movieId)
+                .buildAndExpand()
+                .toUriString();
+
+        if (!hedgingEnabled) {
+            return retrieve(url);
+        }
+        return hedged(url);
+    }
+
+    // the reviews of several movies in one request, in no particular order
+    public Flux<Review> retrieveReviews(Collection<String> movieIds) {
+        var url = UriComponentsBuilder.fromHttpUrl(reviewsUrl)
+                .queryParam("movieInfoIds", String.join(",", movieIds))
+                .buildAndExpand()
+                .toUriString();
+
+        return retrieve(url);
+    }
+
+    // every review added, updated or deleted from now on; the connection may stay quiet for up to idleTimeout
+    // before it counts as dead
+    public Flux<ReviewChange> streamReviews(Duration idleTimeout) {
+        return webClient
+                .get()
+                .uri(reviewsUrl + "/stream")
+                .accept(MediaType.TEXT_EVENT_STREAM)
+                .httpRequest(httpRequest -> ((HttpClientRequest) httpRequest.getNativeRequest()).responseTimeout(idleTimeout))
+                .retrieve()
+                .onStatus(HttpStatus::is4xxClientError, this::clientException)
+                .onStatus(HttpStatus::is5xxServerError, this::serverException)
+                .bodyToFlux(ReviewChange.class);
+    }
+
+    // the newest limit reviews of a movie, the reviews service reads no more than that;
+    // afterToken is the nextReviewsToken of the previous page
+    public Mono<ReviewPage> retrieveReviewPage(String movieId, int limit, String afterToken) {
+        var url = UriComponentsBuilder.fromHttpUrl(reviewsUrl + "/page")
+                .queryParam("movieInfoId", movieId)
+                .queryParam("limit", limit);
+        if (afterToken != null) {
+            url.queryParam("after", afterToken);
+        }
+
+        return webClient
+                .get()
+                .uri(url.toUriString())
+                .retrieve()
+                .onStatus(HttpStatus::is4xxClientError, this::clientException)
+                .onStatus(HttpStatus::is5xxServerError, this::serverException)
+                .bodyToMono(ReviewPage.class);
+    }
+
+    // count, average and rating histogram over all reviews of a movie, kept up to date by the reviews service
+    public Mono<ReviewSummary> retrieveReviewSummary(String movieId) {
+        return webClient
+                .get()
+                .uri(reviewsUrl + "/stats?movieInfoId={movieInfoId}", movieId)
+                .retrieve()
+                .onStatus(HttpStatus::is4xxClientError, this::clientException)
+                .onStatus(HttpStatus::is5xxServerError, this::serverException)
+                .bodyToMono(ReviewSummary.class);
+    }
+
+    // a second identical request goes out when the first has not answered within the observed percentile,
+    // the first attempt to signal wins and the other one is cancelled. Errors are not hedged.
+    private Flux<Review> hedged(String url) {
+        return Mono.defer(() -> {
+                    hedgeBudget.onRequest();
+                    var primary = timedPrimary(url);
+                    var hedge = Mono.delay(hedgeDelay())
+                            .flatMap(tick -> {
+                                if (!hedgeBudget.tryAcquire()) {
+                                    hedgesDenied.increment();
+                                    return Mono.<List<Review>>never();
+                                }
+                                hedgesSent.increment();
+                                return retrieve(url).collectList().doOnNext(reviews -> hedgesWon.increment());
+                            });
+                    return Mono.firstWithSignal(primary, hedge);
+                })
+                .flatMapIterable(Function.identity());
+    }
+
+    // only primaries are sampled, from their start until they answer or a winning hedge cancels them;
+    // a cancelled primary took at least that long, so the delay does not drift down to the hedges' latency
+    private Mono<List<Review>> timedPrimary(String url) {
+        return Mono.defer(() -> {
+            long start = System.nanoTime();
+            return retrieve(url)
+                    .collectList()
+                    .doFinally(signal -> {
+                        if (signal != SignalType.ON_ERROR) {
+                            latencyTracker.record(System.nanoTime() - start);
+                        }
+                    });
+        });
+    }
+
+    Duration hedgeDelay() {
+        var percentile = latencyTracker.percentile();
+        return percentile.compareTo(minHedgeDelay) < 0 ? minHedgeDelay : percentile;
+    }
+
+    private Flux<Review> retrieve(String url) {
+        return webClient
+                .get()
+                .uri(url)
+                .exchangeToFlux(clientResponse -> {
+                    var status = clientResponse.statusCode();
+                    // a movie nobody reviewed yet is not an error for the caller
+                    if (status.equals(HttpStatus.NOT_FOUND)) {
+                        return clientResponse.releaseBody().thenMany(Flux.empty());
+                    }
+                    if (status.is4xxClientError()) {
+                        return clientException(clientResponse).flatMapMany(Flux::error);
+                    }
+                    if (status.is5xxServerError()) {
+                        return serverException(clientResponse).flatMapMany(Flux::error);
+                    }
+                    return clientResponse.bodyToFlux(Review.class);
+                });
+    }
+
+    private Mono<Throwable> clientException(ClientResponse clientResponse) {
+        return ErrorBodies.truncated(clientResponse, errorBodyMaxBytes)
+                .map(ReviewsClientException::new);
+    }
+
+    private Mono<Throwable> serverException(ClientResponse clientResponse) {
+        return ErrorBodies.truncated(clientResponse, errorBodyMaxBytes)
+                .map(body -> new ReviewsServerException("Server Exception in ReviewsService " + body));
+    }
+}
@@ -0,0 +1,49 @@
+package com.reactivespring.config;
+
+import io.netty.channel.ChannelOption;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.client.reactive.ReactorClientHttpConnector;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.resources.ConnectionProvider;
+
+import java.time.Duration;
+
+@Configuration
+public class WebClientConfig {
+
+    // one pool for both downstream services, connections are kept per remote address inside it
+    @Bean(destroyMethod = "dispose")
+    public ConnectionProvider connectionProvider(@Value("${restClient.pool.max-connections:200}") int maxConnections,
+                                                 @Value("${restClient.pool.pending-acquire-max-count:1000}") int pendingAcquireMaxCount,
+                                                 @Value("${restClient.pool.pending-acquire-timeout:2s}") Duration pendingAcquireTimeout,
+                                                 @Value("${restClient.pool.max-idle-time:30s}") Duration maxIdleTime,
+                                                 @Value("${restClient.pool.max-life-time:5m}") Duration maxLifeTime) {
+        return ConnectionProvider.builder("movies-service")
+                .maxConnections(maxConnections)
+                .pendingAcquireMaxCount(pendingAcquireMaxCount)
+                .pendingAcquireTimeout(pendingAcquireTimeout)
+                // closed before the downstream or a load balancer drops them idle
+                .maxIdleTime(maxIdleTime)
+                .maxLifeTime(maxLifeTime)
+                .evictInBackground(Duration.ofSeconds(30))
+                .metrics(true)
+                .build();
+    }
+
+    @Bean
+    public WebClient webClient(WebClient.Builder builder,
+                               ConnectionProvider connectionProvider,
+                               @Value("${restClient.connect-timeout:1s}") Duration connectTimeout,
+                               @Value("${restClient.response-timeout:3s}") Duration responseTimeout) {
+        var httpClient = HttpClient.create(connectionProvider)
+                .option(ChannelOption.CONNECT_TIMEOUT_MILLIS, (int) connectTimeout.toMillis())
+                .responseTimeout(responseTimeout)
+                .compress(true);
+        return builder
+                .clientConnector(new ReactorClientHttpConnector(httpClient))
+                .build();
+    }
+}
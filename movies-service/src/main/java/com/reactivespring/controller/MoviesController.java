@@ -0,0 +1,84 @@
+package com.reactivespring.controller;
+
+import com.reactivespring.domain.Movie;
+import com.reactivespring.domain.MovieInvalidation;
+import com.reactivespring.service.MovieCache;
+import com.reactivespring.service.MovieStream;
+import com.reactivespring.service.MoviesService;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.ResponseStatus;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ResponseStatusException;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+
+@RestController
+@RequestMapping("/v1/movies")
+public class MoviesController {
+
+    private MovieCache movieCache;
+
+    private MovieStream movieStream;
+
+    private MoviesService moviesService;
+
+    public MoviesController(MovieCache movieCache, MovieStream movieStream, MoviesService moviesService) {
+        this.movieCache = movieCache;
+        this.movieStream = movieStream;
+        this.moviesService = moviesService;
+    }
+
+    // the recently changed movies first, then the movie again whenever its info or one of its reviews changes
+    @GetMapping(value = "/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public Flux<Movie> streamMovies() {
+        return movieStream.stream();
+    }
+
+    // with reviewLimit the movie carries a rating summary and only the newest reviews, the rest are paged
+    // through with reviewsAfter; such pages are read from the downstream services and not cached
+    @GetMapping("/{id}")
+    public Mono<Movie> retrieveMovieById(@PathVariable("id") String movieId,
+                                         @RequestParam(value = "reviewLimit", required = false) Integer reviewLimit,
+                                         @RequestParam(value = "reviewsAfter", required = false) String reviewsAfter) {
+        if (reviewLimit == null) {
+            if (reviewsAfter != null) {
+                return Mono.error(new ResponseStatusException(HttpStatus.BAD_REQUEST, "reviewsAfter requires reviewLimit"));
+            }
+            return movieCache.get(movieId);
+        }
+        if (reviewLimit < 1 || reviewLimit > MoviesService.MAX_REVIEW_LIMIT) {
+            return Mono.error(new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                    "reviewLimit must be between 1 and " + MoviesService.MAX_REVIEW_LIMIT));
+        }
+        return moviesService.retrieveMovieById(movieId, reviewLimit, reviewsAfter);
+    }
+
+    @GetMapping(params = "ids")
+    public Flux<Movie> retrieveMovies(@RequestParam("ids") List<String> movieIds) {
+        if (movieIds.isEmpty() || movieIds.size() > MoviesService.MAX_BATCH_IDS) {
+            return Flux.error(new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                    "ids must hold between 1 and " + MoviesService.MAX_BATCH_IDS + " values"));
+        }
+        return movieCache.getAll(movieIds);
+    }
+
+    // for changes the upstream change feeds do not carry, i.e. fixes made directly in the databases
+    @PostMapping("/invalidations")
+    @ResponseStatus(HttpStatus.ACCEPTED)
+    public Mono<Void> invalidate(@RequestBody MovieInvalidation movieInvalidation) {
+        if (movieInvalidation.getMovieInfoIds() == null || movieInvalidation.getMovieInfoIds().isEmpty()) {
+            return Mono.error(new ResponseStatusException(HttpStatus.BAD_REQUEST, "movieInfoIds must be present"));
+        }
+        movieCache.invalidate(movieInvalidation.getMovieInfoIds());
+        return Mono.empty();
+    }
+}
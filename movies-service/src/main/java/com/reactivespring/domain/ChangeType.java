@@ -0,0 +1,7 @@
+package com.reactivespring.domain;
+
+public enum ChangeType {
+    ADDED,
+    UPDATED,
+    REMOVED
+}
@@ -1,6 +1,7 @@
 package com.reactivespring.domain;
 
 
+import com.fasterxml.jackson.annotation.JsonInclude;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
@@ -14,4 +15,29 @@ public class Movie {
 
     private MovieInfo movieInfo;
     private List<Review> reviewList;
+    // true when the reviews could not be fetched in time; reviewList is then empty or, when stale, the last known good reviews
+    private boolean reviewsUnavailable;
+    // true when the movie info or the reviews are the last known good values of an unavailable downstream
+    private boolean stale;
+    // only set when reviewList is limited to one page of the newest reviews
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private ReviewSummary reviewSummary;
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private String nextReviewsToken;
+    // only set on /v1/movies/stream when the movie info was deleted; movieInfo then only carries the movieInfoId
+    @JsonInclude(JsonInclude.Include.NON_DEFAULT)
+    private boolean removed;
+
+    public Movie(MovieInfo movieInfo, List<Review> reviewList) {
+        this(movieInfo, reviewList, false);
+    }
+
+    public Movie(MovieInfo movieInfo, List<Review> reviewList, boolean reviewsUnavailable) {
+        this(movieInfo, reviewList, reviewsUnavailable, false, null, null);
+    }
+
+    public Movie(MovieInfo movieInfo, List<Review> reviewList, boolean reviewsUnavailable, boolean stale,
+                 ReviewSummary reviewSummary, String nextReviewsToken) {
+        this(movieInfo, reviewList, reviewsUnavailable, stale, reviewSummary, nextReviewsToken, false);
+    }
 }
@@ -0,0 +1,16 @@
+package com.reactivespring.domain;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+// one event of the movies-info-service change feed; a removed movie info only carries its movieInfoId
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class MovieInfoChange {
+
+    private ChangeType type;
+
+    private MovieInfo movieInfo;
+}
@@ -0,0 +1,16 @@
+package com.reactivespring.domain;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+// pushed by movies-info-service or movies-review-service when movies changed
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class MovieInvalidation {
+
+    private List<String> movieInfoIds;
+}
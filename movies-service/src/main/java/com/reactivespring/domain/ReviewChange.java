@@ -0,0 +1,16 @@
+package com.reactivespring.domain;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+// one event of the movies-review-service change feed; a removed review is sent as it was before the delete
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ReviewChange {
+
+    private ChangeType type;
+
+    private Review review;
+}
@@ -0,0 +1,18 @@
+package com.reactivespring.domain;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+// reviews of one movie, newest first; nextReviewsToken is null on the last page
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ReviewPage {
+
+    private Long movieInfoId;
+    private List<Review> reviews;
+    private String nextReviewsToken;
+}
@@ -0,0 +1,21 @@
+package com.reactivespring.domain;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.Map;
+
+// rating aggregate over all reviews of a movie, read from the reviews service stats
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ReviewSummary {
+
+    private long count;
+    private Double average;
+    private Double min;
+    private Double max;
+    // rating rounded down to a whole number -> number of reviews
+    private Map<String, Long> histogram;
+}
@@ -0,0 +1,107 @@
+package com.reactivespring.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Function;
+
+// collects the keys loaded within one window into a single batch call. A key that is already being
+// fetched, by this request or another one, shares that fetch instead of being queued again.
+public final class BatchLoader<K, V> {
+
+    private final Function<List<K>, Mono<Map<K, V>>> batchFunction;
+
+    private final int maxBatchSize;
+
+    private final Duration window;
+
+    private final Map<K, Sinks.One<V>> inFlight = new ConcurrentHashMap<>();
+
+    private final Queue<K> queued = new ConcurrentLinkedQueue<>();
+
+    private final AtomicBoolean scheduled = new AtomicBoolean();
+
+    private final DistributionSummary batchSize;
+
+    private final Counter shared;
+
+    public BatchLoader(String name,
+                       Function<List<K>, Mono<Map<K, V>>> batchFunction,
+                       int maxBatchSize,
+                       Duration window,
+                       MeterRegistry meterRegistry) {
+        this.batchFunction = batchFunction;
+        this.maxBatchSize = maxBatchSize;
+        this.window = window;
+        this.batchSize = DistributionSummary.builder("movies.batch.size")
+                .tag("loader", name)
+                .register(meterRegistry);
+        this.shared = meterRegistry.counter("movies.batch.shared", "loader", name);
+    }
+
+    // completes empty when the batch result has no value for the key
+    public Mono<V> load(K key) {
+        return Mono.defer(() -> {
+            var sink = Sinks.<V>one();
+            var existing = inFlight.putIfAbsent(key, sink);
+            if (existing != null) {
+                shared.increment();
+                return existing.asMono();
+            }
+            queued.add(key);
+            if (scheduled.compareAndSet(false, true)) {
+                Mono.delay(window).subscribe(tick -> {
+                    scheduled.set(false);
+                    dispatch();
+                });
+            }
+            return sink.asMono();
+        });
+    }
+
+    int inFlight() {
+        return inFlight.size();
+    }
+
+    private void dispatch() {
+        var batch = new ArrayList<K>(maxBatchSize);
+        for (K key = queued.poll(); key != null; key = queued.poll()) {
+            batch.add(key);
+            if (batch.size() == maxBatchSize) {
+                execute(batch);
+                batch = new ArrayList<>(maxBatchSize);
+            }
+        }
+        if (!batch.isEmpty()) {
+            execute(batch);
+        }
+    }
+
+    private void execute(List<K> batch) {
+        batchSize.record(batch.size());
+        Mono.defer(() -> batchFunction.apply(batch))
+                .defaultIfEmpty(Map.of())
+                .subscribe(results -> batch.forEach(key -> {
+                            // removed before completing, so a load after this point starts a fresh fetch
+                            var sink = inFlight.remove(key);
+                            var value = results.get(key);
+                            if (value == null) {
+                                sink.tryEmitEmpty();
+                            } else {
+                                sink.tryEmitValue(value);
+                            }
+                        }),
+                        throwable -> batch.forEach(key -> inFlight.remove(key).tryEmitError(throwable)));
+    }
+}
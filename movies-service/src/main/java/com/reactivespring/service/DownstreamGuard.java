@@ -0,0 +1,100 @@
+package com.reactivespring.service;
+
+import com.reactivespring.exception.MoviesInfoServerException;
+import com.reactivespring.exception.ReviewsServerException;
+import io.github.resilience4j.bulkhead.Bulkhead;
+import io.github.resilience4j.bulkhead.BulkheadConfig;
+import io.github.resilience4j.bulkhead.BulkheadFullException;
+import io.github.resilience4j.bulkhead.BulkheadRegistry;
+import io.github.resilience4j.circuitbreaker.CallNotPermittedException;
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerConfig;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerRegistry;
+import io.github.resilience4j.micrometer.tagged.TaggedBulkheadMetrics;
+import io.github.resilience4j.micrometer.tagged.TaggedCircuitBreakerMetrics;
+import io.github.resilience4j.reactor.bulkhead.operator.BulkheadOperator;
+import io.github.resilience4j.reactor.circuitbreaker.operator.CircuitBreakerOperator;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.client.WebClientRequestException;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.concurrent.TimeoutException;
+
+// a circuit breaker and a concurrency bulkhead per downstream service. Only server errors, timeouts and
+// connection failures count against the breaker, a 4xx is the caller's problem and not an outage.
+@Component
+public class DownstreamGuard {
+
+    public static final String MOVIES_INFO = "moviesInfo";
+
+    public static final String REVIEWS = "reviews";
+
+    private final CircuitBreakerRegistry circuitBreakerRegistry;
+
+    private final BulkheadRegistry bulkheadRegistry;
+
+    private final MeterRegistry meterRegistry;
+
+    public DownstreamGuard(@Value("${movies.resilience.circuit-breaker.failure-rate-threshold:50}") float failureRateThreshold,
+                           @Value("${movies.resilience.circuit-breaker.sliding-window-size:20}") int slidingWindowSize,
+                           @Value("${movies.resilience.circuit-breaker.minimum-number-of-calls:10}") int minimumNumberOfCalls,
+                           @Value("${movies.resilience.circuit-breaker.wait-duration-in-open-state:10s}") Duration waitDurationInOpenState,
+                           @Value("${movies.resilience.circuit-breaker.permitted-calls-in-half-open-state:3}") int permittedCallsInHalfOpenState,
+                           @Value("${movies.resilience.bulkhead.max-concurrent-calls:100}") int maxConcurrentCalls,
+                           @Value("${movies.resilience.bulkhead.max-wait:0ms}") Duration maxWait,
+                           MeterRegistry meterRegistry) {
+        var circuitBreakerConfig = CircuitBreakerConfig.custom()
+                .failureRateThreshold(failureRateThreshold)
+                .slidingWindowSize(slidingWindowSize)
+                .minimumNumberOfCalls(minimumNumberOfCalls)
+                .waitDurationInOpenState(waitDurationInOpenState)
+                .permittedNumberOfCallsInHalfOpenState(permittedCallsInHalfOpenState)
+                .recordExceptions(MoviesInfoServerException.class, ReviewsServerException.class,
+                        TimeoutException.class, WebClientRequestException.class)
+                .build();
+        // no waiting by default: a full bulkhead rejects at once instead of queueing callers behind a slow service
+        var bulkheadConfig = BulkheadConfig.custom()
+                .maxConcurrentCalls(maxConcurrentCalls)
+                .maxWaitDuration(maxWait)
+                .build();
+        this.circuitBreakerRegistry = CircuitBreakerRegistry.of(circuitBreakerConfig);
+        this.bulkheadRegistry = BulkheadRegistry.of(bulkheadConfig);
+        this.meterRegistry = meterRegistry;
+        circuitBreakerRegistry.circuitBreaker(MOVIES_INFO);
+        circuitBreakerRegistry.circuitBreaker(REVIEWS);
+        bulkheadRegistry.bulkhead(MOVIES_INFO);
+        bulkheadRegistry.bulkhead(REVIEWS);
+        TaggedCircuitBreakerMetrics.ofCircuitBreakerRegistry(circuitBreakerRegistry).bindTo(meterRegistry);
+        TaggedBulkheadMetrics.ofBulkheadRegistry(bulkheadRegistry).bindTo(meterRegistry);
+    }
+
+    // the bulkhead is outermost, so a rejected call never takes a breaker permission
+    public <T> Mono<T> protect(String downstream, Mono<T> call) {
+        return call
+                .transformDeferred(CircuitBreakerOperator.of(circuitBreaker(downstream)))
+                .transformDeferred(BulkheadOperator.of(bulkheadRegistry.bulkhead(downstream)))
+                .doOnError(CallNotPermittedException.class, ex -> rejected(downstream, "circuit_open"))
+                .doOnError(BulkheadFullException.class, ex -> rejected(downstream, "bulkhead_full"));
+    }
+
+    public CircuitBreaker circuitBreaker(String downstream) {
+        return circuitBreakerRegistry.circuitBreaker(downstream);
+    }
+
+    // true for the errors of a call that failed fast or failed on the downstream side
+    public static boolean isUnavailable(Throwable throwable) {
+        return throwable instanceof CallNotPermittedException
+                || throwable instanceof BulkheadFullException
+                || throwable instanceof TimeoutException
+                || throwable instanceof MoviesInfoServerException
+                || throwable instanceof ReviewsServerException
+                || throwable instanceof WebClientRequestException;
+    }
+
+    private void rejected(String downstream, String reason) {
+        meterRegistry.counter("movies.downstream.rejected", "downstream", downstream, "reason", reason).increment();
+    }
+}
@@ -0,0 +1,87 @@
+package com.reactivespring.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.reactivespring.domain.MovieInfo;
+import com.reactivespring.domain.Review;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.List;
+
+// the last successful answer of each downstream per movie, served while that downstream is unavailable
+@Component
+public class LastKnownGood {
+
+    private final boolean enabled;
+
+    private final Cache<String, MovieInfo> movieInfos;
+
+    private final Cache<String, List<Review>> reviews;
+
+    private final MeterRegistry meterRegistry;
+
+    public LastKnownGood(@Value("${movies.fallback.enabled:true}") boolean enabled,
+                         @Value("${movies.fallback.maximum-size:10000}") long maximumSize,
+                         @Value("${movies.fallback.ttl:1h}") Duration ttl,
+                         MeterRegistry meterRegistry) {
+        this.enabled = enabled;
+        this.movieInfos = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(ttl)
+                .recordStats()
+                .build();
+        this.reviews = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(ttl)
+                .recordStats()
+                .build();
+        this.meterRegistry = meterRegistry;
+        CaffeineCacheMetrics.monitor(meterRegistry, movieInfos, "lastKnownGood.movieInfo");
+        CaffeineCacheMetrics.monitor(meterRegistry, reviews, "lastKnownGood.reviews");
+    }
+
+    public Mono<Served<MovieInfo>> movieInfo(String movieId, Mono<MovieInfo> fresh) {
+        return withFallback(DownstreamGuard.MOVIES_INFO, movieId, fresh, movieInfos);
+    }
+
+    public Mono<Served<List<Review>>> reviews(String movieId, Mono<List<Review>> fresh) {
+        return withFallback(DownstreamGuard.REVIEWS, movieId, fresh, reviews);
+    }
+
+    // without a stored value the original error goes on, so the caller still fails fast
+    private <T> Mono<Served<T>> withFallback(String downstream, String movieId, Mono<T> fresh, Cache<String, T> cache) {
+        if (!enabled) {
+            return fresh.map(value -> new Served<>(value, false));
+        }
+        return fresh
+                .doOnNext(value -> cache.put(movieId, value))
+                .map(value -> new Served<>(value, false))
+                .onErrorResume(DownstreamGuard::isUnavailable, throwable -> Mono.justOrEmpty(cache.getIfPresent(movieId))
+                        .doOnNext(value -> fallback(downstream, "stale"))
+                        .map(value -> new Served<>(value, true))
+                        .switchIfEmpty(Mono.defer(() -> {
+                            fallback(downstream, "none");
+                            return Mono.error(throwable);
+                        })));
+    }
+
+    private void fallback(String downstream, String result) {
+        meterRegistry.counter("movies.downstream.fallback", "downstream", downstream, "result", result).increment();
+    }
+
+    // stale when the value is the last known good one rather than a fresh answer
+    @Data
+    @AllArgsConstructor
+    public static final class Served<T> {
+
+        private final T value;
+        private final boolean stale;
+    }
+}
@@ -0,0 +1,156 @@
+package com.reactivespring.service;
+
+import com.github.benmanes.caffeine.cache.AsyncCacheLoader;
+import com.github.benmanes.caffeine.cache.AsyncLoadingCache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.github.benmanes.caffeine.cache.Ticker;
+import com.reactivespring.domain.Movie;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Function;
+
+// assembled movies. Past the soft TTL a read still gets the cached movie at once and a single background
+// refresh runs; past the hard TTL the movie is gone and the next read waits for a fresh one.
+@Component
+public class MovieCache {
+
+    private final boolean enabled;
+
+    private final MoviesService moviesService;
+
+    private final AsyncLoadingCache<String, Movie> cache;
+
+    private final Timer refreshLatency;
+
+    private final Counter invalidations;
+
+    @Autowired
+    public MovieCache(@Value("${movies.cache.enabled:true}") boolean enabled,
+                      @Value("${movies.cache.maximum-size:10000}") long maximumSize,
+                      @Value("${movies.cache.soft-ttl:30s}") Duration softTtl,
+                      @Value("${movies.cache.hard-ttl:5m}") Duration hardTtl,
+                      @Value("${movies.cache.degraded-ttl:5s}") Duration degradedTtl,
+                      MoviesService moviesService,
+                      MeterRegistry meterRegistry) {
+        this(enabled, maximumSize, softTtl, hardTtl, degradedTtl, moviesService, meterRegistry, Ticker.systemTicker(), ForkJoinPool.commonPool());
+    }
+
+    MovieCache(boolean enabled, long maximumSize, Duration softTtl, Duration hardTtl, Duration degradedTtl,
+               MoviesService moviesService, MeterRegistry meterRegistry, Ticker ticker, Executor executor) {
+        this.enabled = enabled;
+        this.moviesService = moviesService;
+        this.refreshLatency = Timer.builder("movies.cache.refresh.latency")
+                .publishPercentiles(0.5, 0.99)
+                .register(meterRegistry);
+        this.invalidations = meterRegistry.counter("movies.cache.invalidations");
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                // a movie served without fresh reviews or info is retried soon instead of living for the hard TTL
+                .expireAfter(new Expiry<String, Movie>() {
+                    @Override
+                    public long expireAfterCreate(String movieId, Movie movie, long currentTime) {
+                        return movie.isReviewsUnavailable() || movie.isStale() ? degradedTtl.toNanos() : hardTtl.toNanos();
+                    }
+
+                    @Override
+                    public long expireAfterUpdate(String movieId, Movie movie, long currentTime, long currentDuration) {
+                        return expireAfterCreate(movieId, movie, currentTime);
+                    }
+
+                    @Override
+                    public long expireAfterRead(String movieId, Movie movie, long currentTime, long currentDuration) {
+                        return currentDuration;
+                    }
+                })
+                .refreshAfterWrite(softTtl)
+                .ticker(ticker)
+                .executor(executor)
+                .recordStats()
+                .buildAsync(new MovieLoader());
+        CaffeineCacheMetrics.monitor(meterRegistry, cache.synchronous(), "movies");
+    }
+
+    public Mono<Movie> get(String movieId) {
+        if (!enabled) {
+            return moviesService.retrieveMovieById(movieId);
+        }
+        // a copy, so a cancelled caller does not cancel the load other callers wait on
+        return Mono.fromFuture(() -> cache.get(movieId).copy());
+    }
+
+    // cached movies are served as they are, the misses are loaded with one batched call
+    public Flux<Movie> getAll(Collection<String> movieIds) {
+        if (!enabled) {
+            return moviesService.retrieveMovies(movieIds);
+        }
+        var ids = new LinkedHashSet<>(movieIds);
+        return Mono.fromFuture(() -> cache.getAll(ids).copy())
+                .flatMapIterable(movies -> {
+                    var ordered = new ArrayList<Movie>(movies.size());
+                    ids.forEach(movieId -> {
+                        var movie = movies.get(movieId);
+                        if (movie != null) {
+                            ordered.add(movie);
+                        }
+                    });
+                    return ordered;
+                });
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void invalidate(Collection<String> movieIds) {
+        invalidations.increment(movieIds.size());
+        cache.synchronous().invalidateAll(movieIds);
+    }
+
+    public void invalidateAll() {
+        invalidations.increment(cache.synchronous().estimatedSize());
+        cache.synchronous().invalidateAll();
+    }
+
+    private class MovieLoader implements AsyncCacheLoader<String, Movie> {
+
+        // an empty result completes with null, which Caffeine does not store
+        @Override
+        public CompletableFuture<Movie> asyncLoad(String movieId, Executor executor) {
+            return moviesService.retrieveMovieById(movieId).toFuture();
+        }
+
+        @Override
+        public CompletableFuture<Map<String, Movie>> asyncLoadAll(Iterable<? extends String> movieIds, Executor executor) {
+            var ids = new ArrayList<String>();
+            movieIds.forEach(ids::add);
+            return moviesService.retrieveMovies(ids)
+                    .collectMap(movie -> movie.getMovieInfo().getMovieInfoId(), Function.identity())
+                    .toFuture();
+        }
+
+        // a failed refresh keeps the stale movie until its hard TTL
+        @Override
+        public CompletableFuture<Movie> asyncReload(String movieId, Movie oldMovie, Executor executor) {
+            var sample = Timer.start();
+            return asyncLoad(movieId, executor)
+                    .whenComplete((movie, throwable) -> sample.stop(refreshLatency));
+        }
+    }
+}
@@ -0,0 +1,318 @@
+package com.reactivespring.service;
+
+import com.reactivespring.client.MoviesInfoRestClient;
+import com.reactivespring.client.ReviewsRestClient;
+import com.reactivespring.domain.ChangeType;
+import com.reactivespring.domain.Movie;
+import com.reactivespring.domain.MovieInfo;
+import com.reactivespring.domain.MovieInfoChange;
+import com.reactivespring.domain.Review;
+import com.reactivespring.domain.ReviewChange;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import reactor.core.Disposable;
+import reactor.core.publisher.BufferOverflowStrategy;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.util.retry.Retry;
+
+import javax.annotation.PreDestroy;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Supplier;
+
+// Joins the movie info and review change feeds into updated movies for every /v1/movies/stream client.
+// The first client opens one connection to each upstream feed and the last one closes them after a grace period.
+// Added and updated movie infos and reviews are joined into the movie, a deleted review is dropped from it and a
+// deleted movie info is emitted once more with removed set. A client that connects, or reconnects, first gets the most recently changed movies and then live updates;
+// updates it missed while away are not replayed. An upstream feed that fails or ends is reconnected with backoff,
+// the join state is dropped then, so every movie is read again on its next change instead of being patched
+// on top of whatever changed during the gap.
+// While the movie cache is enabled the feeds stay open without clients too, so that every change reaches the cache.
+@Slf4j
+@Component
+public class MovieStream {
+
+    static final String MOVIES_INFO = "moviesInfo";
+
+    static final String REVIEWS = "reviews";
+
+    private final MoviesInfoRestClient moviesInfoRestClient;
+
+    private final ReviewsRestClient reviewsRestClient;
+
+    private final MovieCache movieCache;
+
+    private final MeterRegistry meterRegistry;
+
+    private final Duration upstreamIdleTimeout;
+
+    private final Duration minBackoff;
+
+    private final Duration maxBackoff;
+
+    private final int snapshotSize;
+
+    private final int bufferSize;
+
+    private final boolean invalidateCache;
+
+    // most recently changed movies last, only touched while holding its lock
+    private final LinkedHashMap<String, Movie> recentMovies;
+
+    private final Flux<MovieChange> changes;
+
+    private final Flux<Movie> updates;
+
+    private final Counter unjoinedReviews;
+
+    private final Counter droppedUpdates;
+
+    private Disposable cacheInvalidation;
+
+    public MovieStream(MoviesInfoRestClient moviesInfoRestClient,
+                       ReviewsRestClient reviewsRestClient,
+                       MovieCache movieCache,
+                       @Value("${movies.stream.maximum-size:10000}") int maximumSize,
+                       @Value("${movies.stream.snapshot-size:100}") int snapshotSize,
+                       @Value("${movies.stream.buffer-size:256}") int bufferSize,
+                       @Value("${movies.stream.upstream-idle-timeout:10m}") Duration upstreamIdleTimeout,
+                       @Value("${movies.stream.reconnect.min-backoff:1s}") Duration minBackoff,
+                       @Value("${movies.stream.reconnect.max-backoff:30s}") Duration maxBackoff,
+                       @Value("${movies.stream.grace-period:30s}") Duration gracePeriod,
+                       @Value("${movies.stream.invalidate-cache:true}") boolean invalidateCache,
+                       MeterRegistry meterRegistry) {
+        this.moviesInfoRestClient = moviesInfoRestClient;
+        this.reviewsRestClient = reviewsRestClient;
+        this.movieCache = movieCache;
+        this.meterRegistry = meterRegistry;
+        this.upstreamIdleTimeout = upstreamIdleTimeout;
+        this.minBackoff = minBackoff;
+        this.maxBackoff = maxBackoff;
+        this.snapshotSize = snapshotSize;
+        this.bufferSize = bufferSize;
+        this.invalidateCache = invalidateCache;
+        this.recentMovies = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Movie> eldest) {
+                return size() > maximumSize;
+            }
+        };
+        this.unjoinedReviews = meterRegistry.counter("movies.stream.unjoined");
+        this.droppedUpdates = meterRegistry.counter("movies.stream.dropped");
+        Gauge.builder("movies.stream.movies", this, MovieStream::size)
+                .register(meterRegistry);
+
+        // REST readers see a change on their next read, whether or not a stream client is connected
+        this.changes = Flux.defer(() -> Flux.merge(
+                        upstream(MOVIES_INFO, () -> moviesInfoRestClient.streamMovieInfoChanges(upstreamIdleTimeout))
+                                .map(MovieChange::new),
+                        upstream(REVIEWS, () -> reviewsRestClient.streamReviews(upstreamIdleTimeout))
+                                .map(MovieChange::new)))
+                .doOnNext(this::invalidate)
+                .publish()
+                .refCount(1, gracePeriod);
+
+        // changes are applied one at a time, so two changes of the same movie never overtake each other
+        this.updates = Flux.defer(() -> {
+                    // nothing was joined while no client was connected
+                    clear();
+                    return changes;
+                })
+                .concatMap(this::apply)
+                .publish()
+                .refCount(1, gracePeriod);
+    }
+
+    public Flux<Movie> stream() {
+        // subscribed before the snapshot is taken, so a change is either in the snapshot or follows it
+        return Flux.merge(updates, Flux.defer(() -> Flux.fromIterable(snapshot())))
+                .onBackpressureBuffer(bufferSize, movie -> droppedUpdates.increment(), BufferOverflowStrategy.DROP_OLDEST);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        if (!invalidateCache || !movieCache.isEnabled() || cacheInvalidation != null) {
+            return;
+        }
+        cacheInvalidation = changes.subscribe();
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (cacheInvalidation != null) {
+            cacheInvalidation.dispose();
+        }
+    }
+
+    private <T> Flux<T> upstream(String name, Supplier<Flux<T>> feed) {
+        var reconnects = meterRegistry.counter("movies.stream.upstream.reconnects", "upstream", name);
+        var connected = new AtomicBoolean();
+        return Flux.defer(() -> {
+                    if (connected.getAndSet(true)) {
+                        reconnects.increment();
+                        resync();
+                    }
+                    return feed.get();
+                })
+                .doOnError(throwable -> log.warn("Upstream {} stream failed : {}", name, throwable.toString()))
+                // a feed that ends cleanly, e.g. on a restart of the upstream service, is reopened as well
+                .repeatWhen(completed -> completed.delayElements(minBackoff))
+                // the backoff starts over once the feed delivers again
+                .retryWhen(Retry.backoff(Long.MAX_VALUE, minBackoff)
+                        .maxBackoff(maxBackoff)
+                        .transientErrors(true));
+    }
+
+    private Mono<Movie> apply(MovieChange change) {
+        var movieId = change.movieId();
+        if (movieId == null) {
+            return Mono.empty();
+        }
+        if (change.removesMovie()) {
+            remove(movieId);
+            return Mono.just(change.removedMovie());
+        }
+        return current(movieId)
+                .map(change::applyTo)
+                .switchIfEmpty(Mono.fromSupplier(change::withoutReviews))
+                .doOnNext(movie -> put(movieId, movie));
+    }
+
+    // the movie as last joined, or read through the cache when it is not part of the recent movies
+    private Mono<Movie> current(String movieId) {
+        var movie = get(movieId);
+        if (movie != null) {
+            return Mono.just(movie);
+        }
+        return movieCache.get(movieId)
+                .onErrorResume(throwable -> {
+                    log.warn("Could not read movie {} to join a change : {}", movieId, throwable.toString());
+                    return Mono.empty();
+                });
+    }
+
+    private void invalidate(MovieChange change) {
+        var movieId = change.movieId();
+        if (movieId != null) {
+            movieCache.invalidate(List.of(movieId));
+        }
+    }
+
+    // any cached movie may have changed while an upstream was disconnected
+    private void resync() {
+        clear();
+        movieCache.invalidateAll();
+    }
+
+    private Movie get(String movieId) {
+        synchronized (recentMovies) {
+            return recentMovies.get(movieId);
+        }
+    }
+
+    private void put(String movieId, Movie movie) {
+        synchronized (recentMovies) {
+            recentMovies.put(movieId, movie);
+        }
+    }
+
+    private void remove(String movieId) {
+        synchronized (recentMovies) {
+            recentMovies.remove(movieId);
+        }
+    }
+
+    private void clear() {
+        synchronized (recentMovies) {
+            recentMovies.clear();
+        }
+    }
+
+    List<Movie> snapshot() {
+        synchronized (recentMovies) {
+            var movies = new ArrayList<>(recentMovies.values());
+            return new ArrayList<>(movies.subList(Math.max(0, movies.size() - snapshotSize), movies.size()));
+        }
+    }
+
+    int size() {
+        synchronized (recentMovies) {
+            return recentMovies.size();
+        }
+    }
+
+    // a movie info or review change, applied to a copy so emitted movies are never modified
+    private final class MovieChange {
+
+        private final ChangeType type;
+
+        private final MovieInfo movieInfo;
+
+        private final Review review;
+
+        private MovieChange(MovieInfoChange change) {
+            this.type = change.getType();
+            this.movieInfo = change.getMovieInfo();
+            this.review = null;
+        }
+
+        private MovieChange(ReviewChange change) {
+            this.type = change.getType();
+            this.movieInfo = null;
+            this.review = change.getReview();
+        }
+
+        private String movieId() {
+            if (movieInfo != null) {
+                return movieInfo.getMovieInfoId();
+            }
+            return review == null || review.getMovieInfoId() == null ? null : String.valueOf(review.getMovieInfoId());
+        }
+
+        private boolean removesMovie() {
+            return movieInfo != null && type == ChangeType.REMOVED;
+        }
+
+        // a deleted movie is emitted once more so clients can drop it, its reviews are not read for that
+        private Movie removedMovie() {
+            return new Movie(movieInfo, List.of(), false, false, null, null, true);
+        }
+
+        private Movie applyTo(Movie movie) {
+            if (movieInfo != null) {
+                return new Movie(movieInfo, movie.getReviewList(), movie.isReviewsUnavailable(), movie.isStale(), null, null);
+            }
+            // an updated review replaces the one with its id, a removed one only drops it
+            var reviews = new ArrayList<Review>();
+            if (movie.getReviewList() != null) {
+                movie.getReviewList().stream()
+                        .filter(existing -> existing.getReviewId() == null || !existing.getReviewId().equals(review.getReviewId()))
+                        .forEach(reviews::add);
+            }
+            if (type != ChangeType.REMOVED) {
+                reviews.add(review);
+            }
+            return new Movie(movie.getMovieInfo(), reviews, movie.isReviewsUnavailable(), movie.isStale(), null, null);
+        }
+
+        // a review is only emitted together with its movie info
+        private Movie withoutReviews() {
+            if (movieInfo == null) {
+                unjoinedReviews.increment();
+                return null;
+            }
+            return new Movie(movieInfo, List.of(), true);
+        }
+    }
+}
@@ -0,0 +1,145 @@
+package com.reactivespring.service;
+
+import com.reactivespring.client.MoviesInfoRestClient;
+import com.reactivespring.client.ReviewsRestClient;
+import com.reactivespring.domain.Movie;
+import com.reactivespring.domain.MovieInfo;
+import com.reactivespring.domain.Review;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+@Service
+@Slf4j
+public class MoviesService {
+
+    public static final int MAX_BATCH_IDS = 100;
+
+    public static final int MAX_REVIEW_LIMIT = 100;
+
+    private MoviesInfoRestClient moviesInfoRestClient;
+
+    private ReviewsRestClient reviewsRestClient;
+
+    private Duration infoTimeout;
+
+    private Duration reviewsTimeout;
+
+    private BatchLoader<String, MovieInfo> movieInfoLoader;
+
+    private BatchLoader<String, List<Review>> reviewsLoader;
+
+    private DownstreamGuard downstreamGuard;
+
+    private LastKnownGood lastKnownGood;
+
+    public MoviesService(MoviesInfoRestClient moviesInfoRestClient,
+                         ReviewsRestClient reviewsRestClient,
+                         DownstreamGuard downstreamGuard,
+                         LastKnownGood lastKnownGood,
+                         @Value("${movies.aggregation.info-timeout:2s}") Duration infoTimeout,
+                         @Value("${movies.aggregation.reviews-timeout:500ms}") Duration reviewsTimeout,
+                         @Value("${movies.batch.max-size:100}") int batchMaxSize,
+                         @Value("${movies.batch.window:5ms}") Duration batchWindow,
+                         MeterRegistry meterRegistry) {
+        this.moviesInfoRestClient = moviesInfoRestClient;
+        this.reviewsRestClient = reviewsRestClient;
+        this.downstreamGuard = downstreamGuard;
+        this.lastKnownGood = lastKnownGood;
+        this.infoTimeout = infoTimeout;
+        this.reviewsTimeout = reviewsTimeout;
+        this.movieInfoLoader = new BatchLoader<>("movieInfo", this::loadMovieInfos, batchMaxSize, batchWindow, meterRegistry);
+        this.reviewsLoader = new BatchLoader<>("reviews", this::loadReviews, batchMaxSize, batchWindow, meterRegistry);
+    }
+
+    // both calls are subscribed at once, so the latency is the slower of the two rather than their sum
+    public Mono<Movie> retrieveMovieById(String movieId) {
+        var movieInfo = downstreamGuard.protect(DownstreamGuard.MOVIES_INFO, moviesInfoRestClient.retrieveMovieInfo(movieId)
+                .timeout(infoTimeout));
+        var reviews = downstreamGuard.protect(DownstreamGuard.REVIEWS, reviewsRestClient.retrieveReviews(movieId)
+                .collectList()
+                .timeout(reviewsTimeout));
+        return aggregate(movieId, movieInfo, reviews);
+    }
+
+    // the newest reviewLimit reviews and a summary over all of them, reviewsAfter continues from an earlier page.
+    // The remaining reviews are never fetched; pages are not stored as last known good values.
+    public Mono<Movie> retrieveMovieById(String movieId, int reviewLimit, String reviewsAfter) {
+        var movieInfo = downstreamGuard.protect(DownstreamGuard.MOVIES_INFO, moviesInfoRestClient.retrieveMovieInfo(movieId)
+                .timeout(infoTimeout));
+        var reviews = downstreamGuard.protect(DownstreamGuard.REVIEWS, Mono.zip(
+                        reviewsRestClient.retrieveReviewPage(movieId, reviewLimit, reviewsAfter),
+                        reviewsRestClient.retrieveReviewSummary(movieId))
+                .timeout(reviewsTimeout));
+        return Mono.zip(lastKnownGood.movieInfo(movieId, movieInfo), degradeReviews(movieId, reviews))
+                .map(tuple -> {
+                    var info = tuple.getT1();
+                    return tuple.getT2()
+                            .map(pageAndSummary -> new Movie(info.getValue(), pageAndSummary.getT1().getReviews(), false, info.isStale(),
+                                    pageAndSummary.getT2(), pageAndSummary.getT1().getNextReviewsToken()))
+                            .orElseGet(() -> new Movie(info.getValue(), List.of(), true, info.isStale(), null, null));
+                });
+    }
+
+    // ids of all concurrent callers are coalesced into one bulk request per downstream; unknown ids are left out
+    public Flux<Movie> retrieveMovies(Collection<String> movieIds) {
+        return Flux.fromIterable(new LinkedHashSet<>(movieIds))
+                .flatMapSequential(movieId -> aggregate(movieId, movieInfoLoader.load(movieId), reviewsLoader.load(movieId)),
+                        MAX_BATCH_IDS);
+    }
+
+    // last known good reviews still count as unavailable, so callers and the movie cache treat the movie as degraded
+    private Mono<Movie> aggregate(String movieId, Mono<MovieInfo> movieInfo, Mono<List<Review>> reviews) {
+        return Mono.zip(lastKnownGood.movieInfo(movieId, movieInfo),
+                        degradeReviews(movieId, lastKnownGood.reviews(movieId, reviews)))
+                .map(tuple -> {
+                    var info = tuple.getT1();
+                    return tuple.getT2()
+                            .map(reviewList -> new Movie(info.getValue(), reviewList.getValue(), reviewList.isStale(),
+                                    info.isStale() || reviewList.isStale(), null, null))
+                            .orElseGet(() -> new Movie(info.getValue(), List.of(), true, info.isStale(), null, null));
+                });
+    }
+
+    // an empty Optional means the reviews were slow or failing and nothing was stored for the movie,
+    // it is served without them
+    private <T> Mono<Optional<T>> degradeReviews(String movieId, Mono<T> reviews) {
+        return reviews
+                .map(Optional::of)
+                .onErrorResume(DownstreamGuard::isUnavailable, throwable -> {
+                    log.warn("Reviews unavailable for movie {} : {}", movieId, throwable.toString());
+                    return Mono.just(Optional.empty());
+                });
+    }
+
+    private Mono<Map<String, MovieInfo>> loadMovieInfos(List<String> movieIds) {
+        return downstreamGuard.protect(DownstreamGuard.MOVIES_INFO, moviesInfoRestClient.retrieveMovieInfos(movieIds)
+                .collectMap(MovieInfo::getMovieInfoId, Function.identity())
+                .timeout(infoTimeout));
+    }
+
+    // every requested id gets a list, an empty one when the movie has no reviews
+    private Mono<Map<String, List<Review>>> loadReviews(List<String> movieIds) {
+        return downstreamGuard.protect(DownstreamGuard.REVIEWS, reviewsRestClient.retrieveReviews(movieIds)
+                .collect(Collectors.groupingBy(review -> String.valueOf(review.getMovieInfoId())))
+                .timeout(reviewsTimeout))
+                .map(reviewsByMovie -> {
+                    var results = new HashMap<String, List<Review>>(reviewsByMovie);
+                    movieIds.forEach(movieId -> results.putIfAbsent(movieId, List.of()));
+                    return results;
+                });
+    }
+}
@@ -0,0 +1,215 @@
+package com.reactivespring.client;
+
+import com.reactivespring.exception.MoviesInfoClientException;
+import com.reactivespring.exception.MoviesInfoServerException;
+import com.reactivespring.exception.ReviewsClientException;
+import com.reactivespring.exception.ReviewsServerException;
+import io.micrometer.core.instrument.Metrics;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.cloud.contract.wiremock.AutoConfigureWireMock;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.web.reactive.function.client.WebClientRequestException;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+
+import static com.github.tomakehurst.wiremock.client.WireMock.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@AutoConfigureWireMock(port = 8084)
+@TestPropertySource(properties = {
+        "restClient.moviesInfoUrl=http://localhost:8084/v1/movieinfos",
+        "restClient.reviewsUrl=http://localhost:8084/v1/reviews",
+        "restClient.response-timeout=500ms",
+        "restClient.error-body-max-bytes=64",
+        // no stubs for the change feeds
+        "movies.stream.invalidate-cache=false"
+})
+class RestClientIntgTest {
+
+    @Autowired
+    MoviesInfoRestClient moviesInfoRestClient;
+
+    @Autowired
+    ReviewsRestClient reviewsRestClient;
+
+    @Test
+    void retrieveMovieInfo() {
+        stubFor(get(urlEqualTo("/v1/movieinfos/1"))
+                .willReturn(aResponse()
+                        .withHeader("Content-Type", "application/json")
+                        .withBodyFile("movieinfo.json")));
+
+        StepVerifier.create(moviesInfoRestClient.retrieveMovieInfo("1"))
+                .assertNext(movieInfo -> {
+                    assertEquals("1", movieInfo.getMovieInfoId());
+                    assertEquals("Batman Begins", movieInfo.getName());
+                })
+                .verifyComplete();
+    }
+
+    @Test
+    void retrieveMovieInfo_404() {
+        stubFor(get(urlEqualTo("/v1/movieinfos/1"))
+                .willReturn(aResponse().withStatus(404)));
+
+        StepVerifier.create(moviesInfoRestClient.retrieveMovieInfo("1"))
+                .expectErrorSatisfies(throwable -> {
+                    assertTrue(throwable instanceof MoviesInfoClientException);
+                    assertEquals(404, ((MoviesInfoClientException) throwable).getStatusCode());
+                    assertEquals("There is no MovieInfo Available for the passed in Id : 1", throwable.getMessage());
+                })
+                .verify();
+    }
+
+    @Test
+    void retrieveMovieInfo_400() {
+        stubFor(get(urlEqualTo("/v1/movieinfos/1"))
+                .willReturn(aResponse()
+                        .withStatus(400)
+                        .withBody("movieInfo.name must be present")));
+
+        StepVerifier.create(moviesInfoRestClient.retrieveMovieInfo("1"))
+                .expectErrorSatisfies(throwable -> {
+                    assertTrue(throwable instanceof MoviesInfoClientException);
+                    assertEquals(400, ((MoviesInfoClientException) throwable).getStatusCode());
+                    assertEquals("movieInfo.name must be present", throwable.getMessage());
+                })
+                .verify();
+    }
+
+    @Test
+    void retrieveMovieInfo_5XX_truncatesBody() {
+        stubFor(get(urlEqualTo("/v1/movieinfos/1"))
+                .willReturn(aResponse()
+                        .withStatus(500)
+                        .withBody("x".repeat(100_000))));
+
+        StepVerifier.create(moviesInfoRestClient.retrieveMovieInfo("1"))
+                .expectErrorSatisfies(throwable -> {
+                    assertTrue(throwable instanceof MoviesInfoServerException);
+                    assertEquals("Server Exception in MoviesInfoService " + "x".repeat(64), throwable.getMessage());
+                })
+                .verify();
+    }
+
+    @Test
+    void retrieveMovieInfo_responseTimeout() {
+        stubFor(get(urlEqualTo("/v1/movieinfos/1"))
+                .willReturn(aResponse()
+                        .withHeader("Content-Type", "application/json")
+                        .withBodyFile("movieinfo.json")
+                        .withFixedDelay(2000)));
+
+        StepVerifier.create(moviesInfoRestClient.retrieveMovieInfo("1"))
+                .expectError(WebClientRequestException.class)
+                .verify(Duration.ofSeconds(2));
+    }
+
+    @Test
+    void retrieveReviews() {
+        stubFor(get(urlPathEqualTo("/v1/reviews"))
+                .withQueryParam("movieInfoId", equalTo("1"))
+                .willReturn(aResponse()
+                        .withHeader("Content-Type", "application/json")
+                        .withBodyFile("reviews.json")));
+
+        StepVerifier.create(reviewsRestClient.retrieveReviews("1"))
+                .expectNextCount(2)
+                .verifyComplete();
+    }
+
+    @Test
+    void retrieveReviews_404() {
+        stubFor(get(urlPathEqualTo("/v1/reviews"))
+                .willReturn(aResponse().withStatus(404)));
+
+        StepVerifier.create(reviewsRestClient.retrieveReviews("1"))
+                .verifyComplete();
+    }
+
+    @Test
+    void retrieveReviews_400() {
+        stubFor(get(urlPathEqualTo("/v1/reviews"))
+                .willReturn(aResponse()
+                        .withStatus(400)
+                        .withBody("movieInfoId must be a number")));
+
+        StepVerifier.create(reviewsRestClient.retrieveReviews("abc"))
+                .expectErrorSatisfies(throwable -> {
+                    assertTrue(throwable instanceof ReviewsClientException);
+                    assertEquals("movieInfoId must be a number", throwable.getMessage());
+                })
+                .verify();
+    }
+
+    @Test
+    void retrieveReviews_5XX() {
+        stubFor(get(urlPathEqualTo("/v1/reviews"))
+                .willReturn(aResponse()
+                        .withStatus(503)
+                        .withBody("Review queue is full")));
+
+        StepVerifier.create(reviewsRestClient.retrieveReviews("1"))
+                .expectErrorSatisfies(throwable -> {
+                    assertTrue(throwable instanceof ReviewsServerException);
+                    assertEquals("Server Exception in ReviewsService Review queue is full", throwable.getMessage());
+                })
+                .verify();
+    }
+
+    @Test
+    void retrieveReviewPage() {
+        stubFor(get(urlPathEqualTo("/v1/reviews/page"))
+                .withQueryParam("movieInfoId", equalTo("1"))
+                .withQueryParam("limit", equalTo("2"))
+                .withQueryParam("after", equalTo("abc"))
+                .willReturn(aResponse()
+                        .withHeader("Content-Type", "application/json")
+                        .withBody("{\"movieInfoId\":1,\"reviews\":[{\"reviewId\":\"2\",\"movieInfoId\":1,\"comment\":\"Excellent Movie\",\"rating\":8.0}],"
+                                + "\"nextReviewsToken\":\"2\"}")));
+
+        StepVerifier.create(reviewsRestClient.retrieveReviewPage("1", 2, "abc"))
+                .assertNext(reviewPage -> {
+                    assertEquals(1, reviewPage.getReviews().size());
+                    assertEquals("2", reviewPage.getNextReviewsToken());
+                })
+                .verifyComplete();
+    }
+
+    @Test
+    void retrieveReviewSummary() {
+        stubFor(get(urlPathEqualTo("/v1/reviews/stats"))
+                .withQueryParam("movieInfoId", equalTo("1"))
+                .willReturn(aResponse()
+                        .withHeader("Content-Type", "application/json")
+                        .withBody("{\"movieInfoId\":1,\"count\":2,\"sum\":17.0,\"min\":8.0,\"max\":9.0,"
+                                + "\"histogram\":{\"8\":1,\"9\":1},\"average\":8.5}")));
+
+        StepVerifier.create(reviewsRestClient.retrieveReviewSummary("1"))
+                .assertNext(reviewSummary -> {
+                    assertEquals(2, reviewSummary.getCount());
+                    assertEquals(8.5, reviewSummary.getAverage());
+                    assertEquals(1L, reviewSummary.getHistogram().get("9"));
+                })
+                .verifyComplete();
+    }
+
+    @Test
+    void connectionPoolMetrics() {
+        stubFor(get(urlEqualTo("/v1/movieinfos/1"))
+                .willReturn(aResponse()
+                        .withHeader("Content-Type", "application/json")
+                        .withBodyFile("movieinfo.json")));
+
+        moviesInfoRestClient.retrieveMovieInfo("1").block();
+
+        var totalConnections = Metrics.globalRegistry.find("reactor.netty.connection.provider.total.connections")
+                .tag("name", "movies-service")
+                .gauge();
+        assertNotNull(totalConnections);
+    }
+}
@@ -0,0 +1,137 @@
+package com.reactivespring.client;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.netty.DisposableServer;
+import reactor.netty.http.server.HttpServer;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// reviews stub with a long tail: most answers take about 10ms, 2% take 300ms
+class ReviewsHedgingBenchmarkIntgTest {
+
+    static final String REVIEWS_JSON = "[{\"reviewId\":\"1\",\"movieInfoId\":1,\"comment\":\"Awesome Movie\",\"rating\":9.0}]";
+
+    static final int REQUESTS = 2000;
+
+    static final int CONCURRENCY = 20;
+
+    static DisposableServer stub;
+
+    static AtomicInteger stubRequests = new AtomicInteger();
+
+    // the first request after a reset is slow, all others are fast
+    static AtomicInteger firstSlow = new AtomicInteger(-1);
+
+    @BeforeAll
+    static void startStub() {
+        stub = HttpServer.create()
+                .port(0)
+                .route(routes -> routes.get("/v1/reviews", (request, response) -> {
+                    int n = stubRequests.incrementAndGet();
+                    long delayMillis;
+                    if (firstSlow.get() >= 0) {
+                        delayMillis = firstSlow.compareAndSet(0, 1) ? 1000 : 10;
+                    } else {
+                        delayMillis = ThreadLocalRandom.current().nextDouble() < 0.02 ? 300 : 8 + n % 5;
+                    }
+                    return Mono.delay(Duration.ofMillis(delayMillis))
+                            .then(response.header("Content-Type", "application/json")
+                                    .sendString(Mono.just(REVIEWS_JSON))
+                                    .then());
+                }))
+                .bindNow();
+    }
+
+    @AfterAll
+    static void stopStub() {
+        stub.disposeNow();
+    }
+
+    @Test
+    void hedgedRequest_winsOverSlowPrimary() {
+        var meterRegistry = new SimpleMeterRegistry();
+        var client = client(true, 1.0, meterRegistry);
+        firstSlow.set(-1);
+        // earn budget and a latency estimate
+        run(client, 64);
+
+        var won = meterRegistry.counter("movies.reviews.hedge", "result", "won");
+        double wonBefore = won.count();
+        firstSlow.set(0);
+        try {
+            long start = System.nanoTime();
+            var reviews = client.retrieveReviews("1").collectList().block(Duration.ofSeconds(2));
+            long elapsedMillis = Duration.ofNanos(System.nanoTime() - start).toMillis();
+
+            assertEquals(1, reviews.size());
+            assertTrue(elapsedMillis < 500, "took " + elapsedMillis + "ms");
+            assertEquals(wonBefore + 1, won.count());
+        } finally {
+            firstSlow.set(-1);
+        }
+    }
+
+    @Test
+    void hedgingBenchmark() {
+        var plainRegistry = new SimpleMeterRegistry();
+        var hedgedRegistry = new SimpleMeterRegistry();
+        var plainClient = client(false, 0.05, plainRegistry);
+        var hedgedClient = client(true, 0.05, hedgedRegistry);
+        run(plainClient, 200);
+        run(hedgedClient, 200);
+
+        stubRequests.set(0);
+        var plain = run(plainClient, REQUESTS);
+        int plainStubRequests = stubRequests.getAndSet(0);
+        var hedged = run(hedgedClient, REQUESTS);
+        int hedgedStubRequests = stubRequests.get();
+
+        // the 300ms tail is cut at least in half
+        long plainP99 = percentile(plain, 0.99);
+        long hedgedP99 = percentile(hedged, 0.99);
+        assertTrue(hedgedP99 * 2 < plainP99, "p99 plain " + plainP99 + "ms, hedged " + hedgedP99 + "ms");
+        // the budget holds the extra load near 5%, plus the burst allowance
+        double sent = hedgedRegistry.counter("movies.reviews.hedge", "result", "sent").count();
+        assertTrue(sent <= REQUESTS * 0.05 + 10 + 10, "hedges sent " + sent);
+        // a hedge cancelled before it went out never reaches the stub
+        assertTrue(hedgedStubRequests <= plainStubRequests + sent,
+                "stub requests plain " + plainStubRequests + ", hedged " + hedgedStubRequests);
+    }
+
+    private static List<Long> run(ReviewsRestClient client, int requests) {
+        var latencies = Collections.synchronizedList(new ArrayList<Long>());
+        Flux.range(0, requests)
+                .flatMap(i -> Mono.defer(() -> {
+                    long start = System.nanoTime();
+                    return client.retrieveReviews("1")
+                            .then()
+                            .doOnSuccess(done -> latencies.add(Duration.ofNanos(System.nanoTime() - start).toMillis()));
+                }), CONCURRENCY)
+                .blockLast(Duration.ofMinutes(2));
+        return latencies;
+    }
+
+    private static long percentile(List<Long> latencies, double percentile) {
+        var sorted = new ArrayList<>(latencies);
+        Collections.sort(sorted);
+        return sorted.get((int) Math.ceil(percentile * sorted.size()) - 1);
+    }
+
+    private static ReviewsRestClient client(boolean hedging, double budgetRatio, SimpleMeterRegistry meterRegistry) {
+        return new ReviewsRestClient(WebClient.create(), "http://localhost:" + stub.port() + "/v1/reviews", 1024,
+                hedging, 0.95, Duration.ofMillis(100), Duration.ofMillis(5), budgetRatio, 10, meterRegistry);
+    }
+}
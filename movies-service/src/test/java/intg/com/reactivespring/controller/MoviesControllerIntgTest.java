@@ -1,4 +1,199 @@
 package com.reactivespring.controller;
 
-public class MoviesControllerIntgTest {
+import com.reactivespring.domain.Movie;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.reactive.AutoConfigureWebTestClient;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.cloud.contract.wiremock.AutoConfigureWireMock;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.web.reactive.server.WebTestClient;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static com.github.tomakehurst.wiremock.client.WireMock.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@AutoConfigureWebTestClient
+@AutoConfigureWireMock(port = 8084)
+@TestPropertySource(properties = {
+        "restClient.moviesInfoUrl=http://localhost:8084/v1/movieinfos",
+        "restClient.reviewsUrl=http://localhost:8084/v1/reviews",
+        "movies.aggregation.info-timeout=2s",
+        "movies.aggregation.reviews-timeout=500ms",
+        "movies.cache.enabled=false",
+        // every test sees the downstream stubs it set up, never values stored by an earlier test
+        "movies.fallback.enabled=false"
+})
+class MoviesControllerIntgTest {
+
+    @Autowired
+    WebTestClient webTestClient;
+
+    static String MOVIES_URL = "/v1/movies";
+
+    @BeforeEach
+    void setUp() {
+        webTestClient = webTestClient.mutate()
+                .responseTimeout(Duration.ofSeconds(5))
+                .build();
+    }
+
+    @Test
+    void retrieveMovieById() {
+        stubMovieInfo(0);
+        stubReviews(0);
+
+        var movie = retrieveMovie();
+
+        assertEquals("Batman Begins", movie.getMovieInfo().getName());
+        assertEquals(2, movie.getReviewList().size());
+        assertFalse(movie.isReviewsUnavailable());
+    }
+
+    @Test
+    void retrieveMovieById_404() {
+        stubFor(get(urlEqualTo("/v1/movieinfos/1"))
+                .willReturn(aResponse().withStatus(404)));
+        stubReviews(0);
+
+        webTestClient
+                .get()
+                .uri(MOVIES_URL + "/{id}", "1")
+                .exchange()
+                .expectStatus()
+                .isNotFound();
+    }
+
+    @Test
+    void retrieveMovieById_infoServerError() {
+        stubFor(get(urlEqualTo("/v1/movieinfos/1"))
+                .willReturn(aResponse().withStatus(500).withBody("MovieInfo Service Unavailable")));
+        stubReviews(0);
+
+        webTestClient
+                .get()
+                .uri(MOVIES_URL + "/{id}", "1")
+                .exchange()
+                .expectStatus()
+                .isEqualTo(502);
+    }
+
+    @Test
+    void retrieveMovieById_reviewsServerError() {
+        stubMovieInfo(0);
+        stubFor(get(urlPathEqualTo("/v1/reviews"))
+                .willReturn(aResponse().withStatus(500).withBody("Review Service Not Available")));
+
+        var movie = retrieveMovie();
+
+        assertEquals("Batman Begins", movie.getMovieInfo().getName());
+        assertEquals(List.of(), movie.getReviewList());
+        assertTrue(movie.isReviewsUnavailable());
+    }
+
+    @Test
+    void retrieveMovies() {
+        stubFor(get(urlPathEqualTo("/v1/movieinfos"))
+                .withQueryParam("ids", equalTo("1,2"))
+                .willReturn(aResponse()
+                        .withHeader("Content-Type", "application/json")
+                        .withBody("[{\"movieInfoId\":\"1\",\"name\":\"Batman Begins\",\"year\":2005,\"cast\":[\"Christian Bale\"]},"
+                                + "{\"movieInfoId\":\"2\",\"name\":\"The Dark Knight\",\"year\":2008,\"cast\":[\"Christian Bale\"]}]")));
+        stubFor(get(urlPathEqualTo("/v1/reviews"))
+                .withQueryParam("movieInfoIds", equalTo("1,2"))
+                .willReturn(aResponse()
+                        .withHeader("Content-Type", "application/json")
+                        .withBodyFile("reviews.json")));
+
+        webTestClient
+                .get()
+                .uri(MOVIES_URL + "?ids={ids}", "1,2")
+                .exchange()
+                .expectStatus()
+                .isOk()
+                .expectBodyList(Movie.class)
+                .hasSize(2)
+                .consumeWith(exchangeResult -> {
+                    var movies = exchangeResult.getResponseBody();
+                    assertEquals("Batman Begins", movies.get(0).getMovieInfo().getName());
+                    assertEquals(2, movies.get(0).getReviewList().size());
+                    assertEquals(List.of(), movies.get(1).getReviewList());
+                });
+
+        verify(1, getRequestedFor(urlPathEqualTo("/v1/movieinfos")));
+        verify(1, getRequestedFor(urlPathEqualTo("/v1/reviews")));
+    }
+
+    @Test
+    void latency_isMaxOfDownstreams() {
+        stubMovieInfo(300);
+        stubReviews(300);
+
+        // sequential calls would put every request above 600ms
+        var p99 = p99Millis(40);
+        assertTrue(p99 < 500, "p99 " + p99 + "ms");
+    }
+
+    @Test
+    void latency_slowReviewsDegrade() {
+        stubMovieInfo(100);
+        stubReviews(2000);
+
+        var movie = retrieveMovie();
+        assertTrue(movie.isReviewsUnavailable());
+
+        // bounded by the reviews timeout, not by the 2s reviews latency
+        var p99 = p99Millis(10);
+        assertTrue(p99 < 900, "p99 " + p99 + "ms");
+    }
+
+    private long p99Millis(int requests) {
+        // warm up connections and JIT before measuring
+        for (int i = 0; i < 3; i++) {
+            retrieveMovie();
+        }
+        var latencies = new ArrayList<Long>();
+        for (int i = 0; i < requests; i++) {
+            long start = System.nanoTime();
+            retrieveMovie();
+            latencies.add(Duration.ofNanos(System.nanoTime() - start).toMillis());
+        }
+        Collections.sort(latencies);
+        return latencies.get((int) Math.ceil(latencies.size() * 0.99) - 1);
+    }
+
+    private Movie retrieveMovie() {
+        return webTestClient
+                .get()
+                .uri(MOVIES_URL + "/{id}", "1")
+                .exchange()
+                .expectStatus()
+                .isOk()
+                .expectBody(Movie.class)
+                .returnResult()
+                .getResponseBody();
+    }
+
+    private static void stubMovieInfo(int delayMillis) {
+        stubFor(get(urlEqualTo("/v1/movieinfos/1"))
+                .willReturn(aResponse()
+                        .withHeader("Content-Type", "application/json")
+                        .withBodyFile("movieinfo.json")
+                        .withFixedDelay(delayMillis)));
+    }
+
+    private static void stubReviews(int delayMillis) {
+        stubFor(get(urlPathEqualTo("/v1/reviews"))
+                .withQueryParam("movieInfoId", equalTo("1"))
+                .willReturn(aResponse()
+                        .withHeader("Content-Type", "application/json")
+                        .withBodyFile("reviews.json")
+                        .withFixedDelay(delayMillis)));
+    }
 }
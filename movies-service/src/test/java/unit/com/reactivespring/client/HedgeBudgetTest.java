@@ -0,0 +1,39 @@
+package com.reactivespring.client;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class HedgeBudgetTest {
+
+    @Test
+    void tryAcquire_capsHedgesAtRatio() {
+        var hedgeBudget = new HedgeBudget(0.05, 10);
+
+        int hedges = 0;
+        for (int i = 0; i < 1000; i++) {
+            hedgeBudget.onRequest();
+            // every request would like to hedge
+            if (hedgeBudget.tryAcquire()) {
+                hedges++;
+            }
+        }
+
+        assertEquals(50, hedges);
+    }
+
+    @Test
+    void tryAcquire_burstIsBounded() {
+        var hedgeBudget = new HedgeBudget(0.05, 10);
+        for (int i = 0; i < 10_000; i++) {
+            hedgeBudget.onRequest();
+        }
+
+        int hedges = 0;
+        while (hedgeBudget.tryAcquire()) {
+            hedges++;
+        }
+
+        assertEquals(10, hedges);
+    }
+}
@@ -0,0 +1,43 @@
+package com.reactivespring.client;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LatencyTrackerTest {
+
+    LatencyTracker latencyTracker = new LatencyTracker(0.95, Duration.ofMillis(100));
+
+    @Test
+    void percentile_initialUntilEnoughSamples() {
+        for (int i = 0; i < 31; i++) {
+            latencyTracker.record(Duration.ofMillis(1).toNanos());
+        }
+
+        assertEquals(Duration.ofMillis(100), latencyTracker.percentile());
+    }
+
+    @Test
+    void percentile() {
+        for (int i = 1; i <= 1024; i++) {
+            latencyTracker.record(Duration.ofMillis(i).toNanos());
+        }
+
+        assertEquals(Duration.ofMillis(973), latencyTracker.percentile());
+    }
+
+    @Test
+    void percentile_followsRecentLatencies() {
+        for (int i = 0; i < 1024; i++) {
+            latencyTracker.record(Duration.ofMillis(500).toNanos());
+        }
+        // a full window of faster calls replaces the old ones
+        for (int i = 0; i < 1024; i++) {
+            latencyTracker.record(Duration.ofMillis(10).toNanos());
+        }
+
+        assertEquals(Duration.ofMillis(10), latencyTracker.percentile());
+    }
+}
@@ -0,0 +1,48 @@
+package com.reactivespring.client;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.web.reactive.function.client.ClientResponse;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ReviewsRestClientHedgingTest {
+
+    static final String REVIEWS_JSON = "[{\"reviewId\":\"1\",\"movieInfoId\":1,\"comment\":\"Awesome Movie\",\"rating\":9.0}]";
+
+    AtomicInteger requests = new AtomicInteger();
+
+    // every 10th request takes 300ms, the others 10ms
+    WebClient webClient = WebClient.builder()
+            .exchangeFunction(request -> Mono.delay(Duration.ofMillis(requests.incrementAndGet() % 10 == 0 ? 300 : 10))
+                    .map(tick -> ClientResponse.create(HttpStatus.OK)
+                            .header(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)
+                            .body(REVIEWS_JSON)
+                            .build()))
+            .build();
+
+    // every hedge is allowed, starting from a 100ms delay
+    ReviewsRestClient reviewsRestClient = new ReviewsRestClient(webClient, "http://localhost:8081/v1/reviews", 1024,
+            true, 0.95, Duration.ofMillis(100), Duration.ofMillis(5), 1.0, 1000, new SimpleMeterRegistry());
+
+    // the slow primaries lose to their hedges; were only the winners timed, the p95 would fall to the 10ms
+    // of the fast answers and every request would soon be hedged
+    @Test
+    void hedgeDelay_doesNotDriftDownUnderSlowTail() {
+        Flux.range(0, 400)
+                .flatMap(i -> reviewsRestClient.retrieveReviews("1").then(), 20)
+                .blockLast(Duration.ofSeconds(30));
+
+        var hedgeDelay = reviewsRestClient.hedgeDelay();
+        assertTrue(hedgeDelay.compareTo(Duration.ofMillis(100)) >= 0, "hedge delay " + hedgeDelay);
+    }
+}
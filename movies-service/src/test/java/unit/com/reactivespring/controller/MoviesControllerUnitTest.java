@@ -1,4 +1,369 @@
 package com.reactivespring.controller;
 
-public class MoviesControllerUnitTest {
+import com.reactivespring.client.MoviesInfoRestClient;
+import com.reactivespring.client.ReviewsRestClient;
+import com.reactivespring.domain.Movie;
+import com.reactivespring.domain.MovieInfo;
+import com.reactivespring.domain.MovieInvalidation;
+import com.reactivespring.domain.Review;
+import com.reactivespring.domain.ReviewPage;
+import com.reactivespring.domain.ReviewSummary;
+import com.reactivespring.exception.MoviesInfoClientException;
+import com.reactivespring.exception.ReviewsServerException;
+import com.reactivespring.exceptionhandler.GlobalErrorHandler;
+import com.reactivespring.service.DownstreamGuard;
+import com.reactivespring.service.LastKnownGood;
+import com.reactivespring.service.MovieCache;
+import com.reactivespring.service.MovieStream;
+import com.reactivespring.service.MoviesService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.reactive.AutoConfigureWebTestClient;
+import org.springframework.boot.test.autoconfigure.web.reactive.WebFluxTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.http.HttpHeaders;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.web.reactive.server.WebTestClient;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@WebFluxTest(controllers = MoviesController.class)
+@ContextConfiguration(classes = {MoviesController.class, MovieCache.class, MoviesService.class, DownstreamGuard.class, LastKnownGood.class,
+        GlobalErrorHandler.class, SimpleMeterRegistry.class})
+@AutoConfigureWebTestClient
+@TestPropertySource(properties = {
+        "movies.aggregation.info-timeout=1s",
+        "movies.aggregation.reviews-timeout=200ms",
+        "movies.cache.enabled=false"
+})
+class MoviesControllerUnitTest {
+
+    @MockBean
+    MoviesInfoRestClient moviesInfoRestClient;
+
+    @MockBean
+    ReviewsRestClient reviewsRestClient;
+
+    @MockBean
+    MovieStream movieStream;
+
+    @Autowired
+    WebTestClient webTestClient;
+
+    @Autowired
+    DownstreamGuard downstreamGuard;
+
+    static String MOVIES_URL = "/v1/movies";
+
+    // breakers and the last known good values live in the shared context, each test uses its own movie id
+    @BeforeEach
+    void setUp() {
+        downstreamGuard.circuitBreaker(DownstreamGuard.MOVIES_INFO).reset();
+        downstreamGuard.circuitBreaker(DownstreamGuard.REVIEWS).reset();
+    }
+
+    @Test
+    void retrieveMovieById() {
+        when(moviesInfoRestClient.retrieveMovieInfo("1")).thenReturn(Mono.just(movieInfo()));
+        when(reviewsRestClient.retrieveReviews("1")).thenReturn(Flux.fromIterable(reviews()));
+
+        var movie = retrieveMovie("1");
+
+        assertEquals("Batman Begins", movie.getMovieInfo().getName());
+        assertEquals(2, movie.getReviewList().size());
+        assertFalse(movie.isReviewsUnavailable());
+    }
+
+    @Test
+    void retrieveMovieById_callsAreConcurrent() {
+        // 150ms each, sequential calls would take at least 300ms
+        when(moviesInfoRestClient.retrieveMovieInfo("1"))
+                .thenReturn(Mono.just(movieInfo()).delayElement(Duration.ofMillis(150)));
+        when(reviewsRestClient.retrieveReviews("1"))
+                .thenReturn(Flux.fromIterable(reviews()).delaySubscription(Duration.ofMillis(150)));
+        retrieveMovie("1");
+
+        long start = System.nanoTime();
+        var movie = retrieveMovie("1");
+        long elapsedMillis = Duration.ofNanos(System.nanoTime() - start).toMillis();
+
+        assertEquals(2, movie.getReviewList().size());
+        assertTrue(elapsedMillis < 280, "took " + elapsedMillis + "ms");
+    }
+
+    @Test
+    void retrieveMovieById_reviewsTimeout() {
+        when(moviesInfoRestClient.retrieveMovieInfo("2")).thenReturn(Mono.just(movieInfo()));
+        when(reviewsRestClient.retrieveReviews("2")).thenReturn(Flux.never());
+
+        var movie = retrieveMovie("2");
+
+        assertEquals("Batman Begins", movie.getMovieInfo().getName());
+        assertEquals(List.of(), movie.getReviewList());
+        assertTrue(movie.isReviewsUnavailable());
+    }
+
+    @Test
+    void retrieveMovieById_reviewsServerError() {
+        when(moviesInfoRestClient.retrieveMovieInfo("3")).thenReturn(Mono.just(movieInfo()));
+        when(reviewsRestClient.retrieveReviews("3"))
+                .thenReturn(Flux.error(new ReviewsServerException("Server Exception in ReviewsService")));
+
+        var movie = retrieveMovie("3");
+
+        assertEquals(List.of(), movie.getReviewList());
+        assertTrue(movie.isReviewsUnavailable());
+    }
+
+    @Test
+    void retrieveMovieById_infoNotFound() {
+        when(moviesInfoRestClient.retrieveMovieInfo("4"))
+                .thenReturn(Mono.error(new MoviesInfoClientException("There is no MovieInfo Available for the passed in Id : 4", 404)));
+        when(reviewsRestClient.retrieveReviews("4")).thenReturn(Flux.fromIterable(reviews()));
+
+        webTestClient
+                .get()
+                .uri(MOVIES_URL + "/{id}", "4")
+                .exchange()
+                .expectStatus()
+                .isNotFound()
+                .expectBody(String.class)
+                .isEqualTo("There is no MovieInfo Available for the passed in Id : 4");
+    }
+
+    @Test
+    void retrieveMovieById_infoTimeout() {
+        when(moviesInfoRestClient.retrieveMovieInfo("5")).thenReturn(Mono.never());
+        when(reviewsRestClient.retrieveReviews("5")).thenReturn(Flux.fromIterable(reviews()));
+
+        webTestClient
+                .get()
+                .uri(MOVIES_URL + "/{id}", "5")
+                .exchange()
+                .expectStatus()
+                .isEqualTo(504);
+    }
+
+    @Test
+    void retrieveMovieById_circuitOpen_servesLastKnownGood() {
+        when(moviesInfoRestClient.retrieveMovieInfo("6")).thenReturn(Mono.just(movieInfo()));
+        when(reviewsRestClient.retrieveReviews("6")).thenReturn(Flux.fromIterable(reviews()));
+        retrieveMovie("6");
+
+        downstreamGuard.circuitBreaker(DownstreamGuard.MOVIES_INFO).transitionToOpenState();
+        downstreamGuard.circuitBreaker(DownstreamGuard.REVIEWS).transitionToOpenState();
+        var movie = retrieveMovie("6");
+
+        assertEquals("Batman Begins", movie.getMovieInfo().getName());
+        assertEquals(2, movie.getReviewList().size());
+        assertTrue(movie.isStale());
+        assertTrue(movie.isReviewsUnavailable());
+        // failed fast, the downstream calls were never subscribed to
+        assertEquals(1, downstreamGuard.circuitBreaker(DownstreamGuard.MOVIES_INFO).getMetrics().getNumberOfNotPermittedCalls());
+        assertEquals(1, downstreamGuard.circuitBreaker(DownstreamGuard.REVIEWS).getMetrics().getNumberOfNotPermittedCalls());
+    }
+
+    @Test
+    void retrieveMovieById_circuitOpen_withoutLastKnownGood() {
+        when(moviesInfoRestClient.retrieveMovieInfo("7")).thenReturn(Mono.just(movieInfo()));
+        when(reviewsRestClient.retrieveReviews("7")).thenReturn(Flux.fromIterable(reviews()));
+        downstreamGuard.circuitBreaker(DownstreamGuard.MOVIES_INFO).transitionToOpenState();
+
+        webTestClient
+                .get()
+                .uri(MOVIES_URL + "/{id}", "7")
+                .exchange()
+                .expectStatus()
+                .isEqualTo(503)
+                .expectHeader()
+                .exists(HttpHeaders.RETRY_AFTER);
+    }
+
+    @Test
+    void retrieveMovieById_reviewsCircuitOpen_degrades() {
+        when(moviesInfoRestClient.retrieveMovieInfo("8")).thenReturn(Mono.just(movieInfo()));
+        when(reviewsRestClient.retrieveReviews("8")).thenReturn(Flux.fromIterable(reviews()));
+        downstreamGuard.circuitBreaker(DownstreamGuard.REVIEWS).transitionToOpenState();
+
+        var movie = retrieveMovie("8");
+
+        assertEquals(List.of(), movie.getReviewList());
+        assertTrue(movie.isReviewsUnavailable());
+    }
+
+    @Test
+    void retrieveMovies() {
+        when(moviesInfoRestClient.retrieveMovieInfos(anyCollection()))
+                .thenReturn(Flux.just(movieInfo(), new MovieInfo("2", "The Dark Knight", 2008, List.of("Christian Bale"), null)));
+        when(reviewsRestClient.retrieveReviews(anyCollection()))
+                .thenReturn(Flux.fromIterable(reviews()));
+
+        var movies = webTestClient
+                .get()
+                .uri(MOVIES_URL + "?ids={ids}", "2,1,3,1")
+                .exchange()
+                .expectStatus()
+                .isOk()
+                .expectBodyList(Movie.class)
+                .returnResult()
+                .getResponseBody();
+
+        // in request order, the unknown id left out
+        assertEquals(List.of("2", "1"), movies.stream().map(movie -> movie.getMovieInfo().getMovieInfoId()).collect(Collectors.toList()));
+        assertEquals(List.of(), movies.get(0).getReviewList());
+        assertEquals(2, movies.get(1).getReviewList().size());
+        // one bulk request per downstream for the whole page
+        verify(moviesInfoRestClient).retrieveMovieInfos(List.of("2", "1", "3"));
+        verify(reviewsRestClient).retrieveReviews(List.of("2", "1", "3"));
+        verify(moviesInfoRestClient, never()).retrieveMovieInfo(anyString());
+    }
+
+    @Test
+    void retrieveMovies_tooManyIds() {
+        var ids = IntStream.rangeClosed(1, MoviesService.MAX_BATCH_IDS + 1)
+                .mapToObj(String::valueOf)
+                .collect(Collectors.joining(","));
+
+        webTestClient
+                .get()
+                .uri(MOVIES_URL + "?ids={ids}", ids)
+                .exchange()
+                .expectStatus()
+                .isBadRequest();
+    }
+
+    @Test
+    void invalidate() {
+        webTestClient
+                .post()
+                .uri(MOVIES_URL + "/invalidations")
+                .bodyValue(new MovieInvalidation(List.of("1", "2")))
+                .exchange()
+                .expectStatus()
+                .isAccepted();
+
+        webTestClient
+                .post()
+                .uri(MOVIES_URL + "/invalidations")
+                .bodyValue(new MovieInvalidation(List.of()))
+                .exchange()
+                .expectStatus()
+                .isBadRequest();
+    }
+
+    @Test
+    void retrieveMovieById_reviewLimit() {
+        when(moviesInfoRestClient.retrieveMovieInfo("9")).thenReturn(Mono.just(movieInfo()));
+        when(reviewsRestClient.retrieveReviewPage("9", 2, "abc"))
+                .thenReturn(Mono.just(new ReviewPage(9L, reviews(), "2")));
+        when(reviewsRestClient.retrieveReviewSummary("9"))
+                .thenReturn(Mono.just(new ReviewSummary(40, 8.5, 6.0, 10.0, Map.of("8", 30L, "9", 10L))));
+
+        webTestClient
+                .get()
+                .uri(MOVIES_URL + "/{id}?reviewLimit={reviewLimit}&reviewsAfter={reviewsAfter}", "9", 2, "abc")
+                .exchange()
+                .expectStatus()
+                .isOk()
+                .expectBody()
+                .jsonPath("$.reviewList.length()").isEqualTo(2)
+                .jsonPath("$.reviewSummary.count").isEqualTo(40)
+                .jsonPath("$.reviewSummary.average").isEqualTo(8.5)
+                .jsonPath("$.nextReviewsToken").isEqualTo("2");
+
+        verify(reviewsRestClient, never()).retrieveReviews("9");
+    }
+
+    @Test
+    void retrieveMovieById_reviewLimit_reviewsTimeout() {
+        when(moviesInfoRestClient.retrieveMovieInfo("10")).thenReturn(Mono.just(movieInfo()));
+        when(reviewsRestClient.retrieveReviewPage("10", 2, null))
+                .thenReturn(Mono.just(new ReviewPage(10L, reviews(), null)).delayElement(Duration.ofSeconds(1)));
+        when(reviewsRestClient.retrieveReviewSummary("10")).thenReturn(Mono.just(new ReviewSummary()));
+
+        webTestClient
+                .get()
+                .uri(MOVIES_URL + "/{id}?reviewLimit={reviewLimit}", "10", 2)
+                .exchange()
+                .expectStatus()
+                .isOk()
+                .expectBody()
+                .jsonPath("$.reviewList.length()").isEqualTo(0)
+                .jsonPath("$.reviewsUnavailable").isEqualTo(true)
+                .jsonPath("$.reviewSummary").doesNotExist();
+    }
+
+    @Test
+    void retrieveMovieById_invalidReviewLimit() {
+        webTestClient
+                .get()
+                .uri(MOVIES_URL + "/{id}?reviewLimit={reviewLimit}", "1", MoviesService.MAX_REVIEW_LIMIT + 1)
+                .exchange()
+                .expectStatus()
+                .isBadRequest();
+
+        webTestClient
+                .get()
+                .uri(MOVIES_URL + "/{id}?reviewsAfter={reviewsAfter}", "1", "abc")
+                .exchange()
+                .expectStatus()
+                .isBadRequest();
+    }
+
+    @Test
+    void streamMovies() {
+        when(movieStream.stream()).thenReturn(Flux.just(new Movie(movieInfo(), reviews())));
+
+        var movies = webTestClient
+                .get()
+                .uri(MOVIES_URL + "/stream")
+                .exchange()
+                .expectStatus()
+                .isOk()
+                .returnResult(Movie.class)
+                .getResponseBody()
+                .collectList()
+                .block(Duration.ofSeconds(5));
+
+        assertEquals(1, movies.size());
+        assertEquals(2, movies.get(0).getReviewList().size());
+    }
+
+    private Movie retrieveMovie(String movieId) {
+        return webTestClient
+                .get()
+                .uri(MOVIES_URL + "/{id}", movieId)
+                .exchange()
+                .expectStatus()
+                .isOk()
+                .expectBody(Movie.class)
+                .returnResult()
+                .getResponseBody();
+    }
+
+    static MovieInfo movieInfo() {
+        return new MovieInfo("1", "Batman Begins", 2005, List.of("Christian Bale", "Michael Cane"), LocalDate.parse("2005-06-15"));
+    }
+
+    static List<Review> reviews() {
+        return List.of(new Review("1", 1L, "Awesome Movie", 9.0),
+                new Review("2", 1L, "Excellent Movie", 8.0));
+    }
 }
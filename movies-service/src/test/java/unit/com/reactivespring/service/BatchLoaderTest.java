@@ -0,0 +1,95 @@
+package com.reactivespring.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BatchLoaderTest {
+
+    SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    List<List<String>> batches = new CopyOnWriteArrayList<>();
+
+    BatchLoader<String, String> batchLoader = new BatchLoader<>("test", keys -> {
+        batches.add(keys);
+        return Mono.just(keys.stream()
+                .filter(key -> !key.equals("unknown"))
+                .collect(Collectors.toMap(Function.identity(), key -> "value-" + key)));
+    }, 3, Duration.ofMillis(20), meterRegistry);
+
+    @Test
+    void load_coalescesKeysOfOneWindow() {
+        var values = Flux.just("1", "2", "unknown")
+                .flatMapSequential(batchLoader::load)
+                .collectList()
+                .block(Duration.ofSeconds(1));
+
+        assertEquals(List.of("value-1", "value-2"), values);
+        assertEquals(List.of(List.of("1", "2", "unknown")), batches);
+        assertEquals(0, batchLoader.inFlight());
+    }
+
+    @Test
+    void load_splitsAtMaxBatchSize() {
+        var values = Flux.just("1", "2", "3", "4", "5")
+                .flatMapSequential(batchLoader::load)
+                .collectList()
+                .block(Duration.ofSeconds(1));
+
+        assertEquals(5, values.size());
+        assertEquals(List.of(List.of("1", "2", "3"), List.of("4", "5")), batches);
+        assertEquals(2, meterRegistry.summary("movies.batch.size", "loader", "test").count());
+    }
+
+    @Test
+    void load_sharesInFlightFetch() {
+        var response = Sinks.<Map<String, String>>one();
+        var calls = new CopyOnWriteArrayList<List<String>>();
+        var slowLoader = new BatchLoader<String, String>("slow", keys -> {
+            calls.add(keys);
+            return response.asMono();
+        }, 10, Duration.ofMillis(5), meterRegistry);
+
+        // two callers, the second one arrives while the first fetch is still running
+        var first = slowLoader.load("1").toFuture();
+        Mono.delay(Duration.ofMillis(50)).block();
+        var second = slowLoader.load("1").toFuture();
+        response.tryEmitValue(Map.of("1", "value-1"));
+
+        assertEquals("value-1", first.join());
+        assertEquals("value-1", second.join());
+        assertEquals(List.of(List.of("1")), calls);
+        assertEquals(1.0, meterRegistry.counter("movies.batch.shared", "loader", "slow").count());
+
+        // completed fetches are not cached, the next load asks again
+        slowLoader.load("1").block(Duration.ofSeconds(1));
+        assertEquals(2, calls.size());
+    }
+
+    @Test
+    void load_errorReachesEveryKey() {
+        var failingLoader = new BatchLoader<String, String>("failing",
+                keys -> Mono.error(new IllegalStateException("downstream down")), 10, Duration.ofMillis(5), meterRegistry);
+
+        StepVerifier.create(Flux.just("1", "2").flatMap(key -> failingLoader.load(key).onErrorReturn("failed-" + key)).collectList())
+                .assertNext(values -> assertEquals(2, values.size()))
+                .verifyComplete();
+
+        StepVerifier.create(failingLoader.load("1"))
+                .expectErrorMessage("downstream down")
+                .verify(Duration.ofSeconds(1));
+        assertEquals(0, failingLoader.inFlight());
+    }
+}
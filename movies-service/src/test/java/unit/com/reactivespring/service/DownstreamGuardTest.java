@@ -0,0 +1,79 @@
+package com.reactivespring.service;
+
+import com.reactivespring.exception.ReviewsClientException;
+import com.reactivespring.exception.ReviewsServerException;
+import io.github.resilience4j.bulkhead.BulkheadFullException;
+import io.github.resilience4j.circuitbreaker.CallNotPermittedException;
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DownstreamGuardTest {
+
+    SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    // opens after 4 calls at 50% failures, one concurrent call per downstream
+    DownstreamGuard downstreamGuard = new DownstreamGuard(50, 4, 4, Duration.ofSeconds(10), 1,
+            1, Duration.ZERO, meterRegistry);
+
+    @Test
+    void protect_serverErrorsOpenTheCircuit() {
+        for (int i = 0; i < 4; i++) {
+            StepVerifier.create(downstreamGuard.protect(DownstreamGuard.REVIEWS, Mono.error(new ReviewsServerException("down"))))
+                    .expectError(ReviewsServerException.class)
+                    .verify();
+        }
+
+        assertEquals(CircuitBreaker.State.OPEN, downstreamGuard.circuitBreaker(DownstreamGuard.REVIEWS).getState());
+        StepVerifier.create(downstreamGuard.protect(DownstreamGuard.REVIEWS, Mono.just("reviews")))
+                .expectError(CallNotPermittedException.class)
+                .verify();
+        assertEquals(1.0, meterRegistry.counter("movies.downstream.rejected", "downstream", DownstreamGuard.REVIEWS, "reason", "circuit_open").count());
+        // the other downstream has its own breaker
+        StepVerifier.create(downstreamGuard.protect(DownstreamGuard.MOVIES_INFO, Mono.just("movieInfo")))
+                .expectNext("movieInfo")
+                .verifyComplete();
+    }
+
+    @Test
+    void protect_clientErrorsKeepTheCircuitClosed() {
+        for (int i = 0; i < 8; i++) {
+            StepVerifier.create(downstreamGuard.protect(DownstreamGuard.REVIEWS, Mono.error(new ReviewsClientException("bad id"))))
+                    .expectError(ReviewsClientException.class)
+                    .verify();
+        }
+
+        assertEquals(CircuitBreaker.State.CLOSED, downstreamGuard.circuitBreaker(DownstreamGuard.REVIEWS).getState());
+    }
+
+    @Test
+    void protect_fullBulkheadRejectsAtOnce() {
+        var slowCall = downstreamGuard.protect(DownstreamGuard.REVIEWS, Mono.never()).subscribe();
+        try {
+            StepVerifier.create(downstreamGuard.protect(DownstreamGuard.REVIEWS, Mono.just("reviews")))
+                    .expectError(BulkheadFullException.class)
+                    .verify(Duration.ofMillis(500));
+        } finally {
+            slowCall.dispose();
+        }
+
+        // the permit is back once the slow call is cancelled, and rejections did not count against the breaker
+        StepVerifier.create(downstreamGuard.protect(DownstreamGuard.REVIEWS, Mono.just("reviews")))
+                .expectNext("reviews")
+                .verifyComplete();
+        assertEquals(0, downstreamGuard.circuitBreaker(DownstreamGuard.REVIEWS).getMetrics().getNumberOfFailedCalls());
+        assertEquals(1.0, meterRegistry.counter("movies.downstream.rejected", "downstream", DownstreamGuard.REVIEWS, "reason", "bulkhead_full").count());
+    }
+
+    @Test
+    void isUnavailable() {
+        assertTrue(DownstreamGuard.isUnavailable(new ReviewsServerException("down")));
+        assertFalse(DownstreamGuard.isUnavailable(new ReviewsClientException("bad id")));
+    }
+}
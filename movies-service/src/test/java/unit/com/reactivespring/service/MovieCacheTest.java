@@ -0,0 +1,179 @@
+package com.reactivespring.service;
+
+import com.github.benmanes.caffeine.cache.Ticker;
+import com.reactivespring.domain.Movie;
+import com.reactivespring.domain.MovieInfo;
+import com.reactivespring.domain.Review;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.Mockito.*;
+
+class MovieCacheTest {
+
+    MoviesService moviesService = mock(MoviesService.class);
+
+    SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    AtomicLong nanos = new AtomicLong();
+
+    Ticker ticker = nanos::get;
+
+    // soft 30s, hard 5m, degraded 5s; refreshes run on the calling thread
+    MovieCache movieCache = new MovieCache(true, 100, Duration.ofSeconds(30), Duration.ofMinutes(5), Duration.ofSeconds(5),
+            moviesService, meterRegistry, ticker, Runnable::run);
+
+    @Test
+    void get_cachesMovie() {
+        when(moviesService.retrieveMovieById("1")).thenReturn(Mono.just(movie("1", "Batman Begins")));
+
+        assertEquals("Batman Begins", name(movieCache.get("1").block()));
+        assertEquals("Batman Begins", name(movieCache.get("1").block()));
+
+        verify(moviesService, times(1)).retrieveMovieById("1");
+        assertEquals(1.0, meterRegistry.get("cache.gets").tag("cache", "movies").tag("result", "hit").functionCounter().count());
+    }
+
+    @Test
+    void get_sharesOneLoad() {
+        var loaded = Sinks.<Movie>one();
+        when(moviesService.retrieveMovieById("1")).thenReturn(loaded.asMono());
+
+        var first = movieCache.get("1").toFuture();
+        var second = movieCache.get("1").toFuture();
+        loaded.tryEmitValue(movie("1", "Batman Begins"));
+
+        assertEquals("Batman Begins", name(first.join()));
+        assertEquals("Batman Begins", name(second.join()));
+        verify(moviesService, times(1)).retrieveMovieById("1");
+    }
+
+    @Test
+    void get_servesStaleWhileRefreshing() {
+        var refreshed = Sinks.<Movie>one();
+        when(moviesService.retrieveMovieById("1"))
+                .thenReturn(Mono.just(movie("1", "Batman Begins")))
+                .thenReturn(refreshed.asMono());
+        movieCache.get("1").block();
+
+        nanos.addAndGet(Duration.ofSeconds(31).toNanos());
+        // past the soft TTL: the stale movie is answered at once and one refresh is started
+        assertEquals("Batman Begins", name(movieCache.get("1").block(Duration.ofMillis(100))));
+        assertEquals("Batman Begins", name(movieCache.get("1").block(Duration.ofMillis(100))));
+        verify(moviesService, times(2)).retrieveMovieById("1");
+
+        refreshed.tryEmitValue(movie("1", "Batman Begins (Director's Cut)"));
+        assertEquals("Batman Begins (Director's Cut)", name(movieCache.get("1").block()));
+        assertEquals(1, meterRegistry.timer("movies.cache.refresh.latency").count());
+    }
+
+    @Test
+    void get_failedRefreshKeepsStaleMovie() {
+        when(moviesService.retrieveMovieById("1"))
+                .thenReturn(Mono.just(movie("1", "Batman Begins")))
+                .thenReturn(Mono.error(new IllegalStateException("downstream down")));
+        movieCache.get("1").block();
+
+        nanos.addAndGet(Duration.ofSeconds(31).toNanos());
+        assertEquals("Batman Begins", name(movieCache.get("1").block()));
+        assertEquals("Batman Begins", name(movieCache.get("1").block()));
+    }
+
+    @Test
+    void get_hardTtl() {
+        when(moviesService.retrieveMovieById("1"))
+                .thenReturn(Mono.just(movie("1", "Batman Begins")))
+                .thenReturn(Mono.just(movie("1", "Batman Begins (Remastered)")));
+        movieCache.get("1").block();
+
+        nanos.addAndGet(Duration.ofMinutes(6).toNanos());
+        assertEquals("Batman Begins (Remastered)", name(movieCache.get("1").block()));
+    }
+
+    @Test
+    void get_degradedMovieExpiresSooner() {
+        when(moviesService.retrieveMovieById("1"))
+                .thenReturn(Mono.just(new Movie(movieInfo("1", "Batman Begins"), List.of(), true)))
+                .thenReturn(Mono.just(movie("1", "Batman Begins")));
+        assertTrue(movieCache.get("1").block().isReviewsUnavailable());
+
+        nanos.addAndGet(Duration.ofSeconds(6).toNanos());
+        assertFalse(movieCache.get("1").block().isReviewsUnavailable());
+    }
+
+    @Test
+    void get_errorIsNotCached() {
+        when(moviesService.retrieveMovieById("1"))
+                .thenReturn(Mono.error(new IllegalStateException("downstream down")))
+                .thenReturn(Mono.just(movie("1", "Batman Begins")));
+
+        assertThrows(IllegalStateException.class, () -> movieCache.get("1").block());
+        assertEquals("Batman Begins", name(movieCache.get("1").block()));
+    }
+
+    @Test
+    void getAll_loadsOnlyMisses() {
+        when(moviesService.retrieveMovieById("1")).thenReturn(Mono.just(movie("1", "Batman Begins")));
+        when(moviesService.retrieveMovies(anyCollection()))
+                .thenReturn(Flux.just(movie("2", "The Dark Knight")));
+        movieCache.get("1").block();
+
+        var movies = movieCache.getAll(List.of("2", "1", "3")).collectList().block();
+
+        assertEquals(List.of("The Dark Knight", "Batman Begins"), movies.stream().map(MovieCacheTest::name).collect(Collectors.toList()));
+        verify(moviesService).retrieveMovies(List.of("2", "3"));
+    }
+
+    @Test
+    void invalidate() {
+        when(moviesService.retrieveMovieById("1"))
+                .thenReturn(Mono.just(movie("1", "Batman Begins")))
+                .thenReturn(Mono.just(movie("1", "Batman Begins (Remastered)")));
+        movieCache.get("1").block();
+
+        movieCache.invalidate(List.of("1"));
+
+        assertEquals("Batman Begins (Remastered)", name(movieCache.get("1").block()));
+        assertEquals(1.0, meterRegistry.counter("movies.cache.invalidations").count());
+    }
+
+    @Test
+    void invalidateAll() {
+        when(moviesService.retrieveMovieById("1"))
+                .thenReturn(Mono.just(movie("1", "Batman Begins")))
+                .thenReturn(Mono.just(movie("1", "Batman Begins (Remastered)")));
+        when(moviesService.retrieveMovieById("2"))
+                .thenReturn(Mono.just(movie("2", "The Dark Knight")));
+        movieCache.get("1").block();
+        movieCache.get("2").block();
+
+        movieCache.invalidateAll();
+
+        assertEquals("Batman Begins (Remastered)", name(movieCache.get("1").block()));
+        movieCache.get("2").block();
+        verify(moviesService, times(2)).retrieveMovieById("2");
+        assertEquals(2.0, meterRegistry.counter("movies.cache.invalidations").count());
+    }
+
+    private static String name(Movie movie) {
+        return movie.getMovieInfo().getName();
+    }
+
+    private static Movie movie(String movieId, String name) {
+        return new Movie(movieInfo(movieId, name), List.of(new Review("1", Long.valueOf(movieId), "Awesome Movie", 9.0)));
+    }
+
+    private static MovieInfo movieInfo(String movieId, String name) {
+        return new MovieInfo(movieId, name, 2005, List.of("Christian Bale"), null);
+    }
+}
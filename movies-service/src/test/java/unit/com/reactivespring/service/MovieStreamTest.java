@@ -0,0 +1,244 @@
+package com.reactivespring.service;
+
+import com.reactivespring.client.MoviesInfoRestClient;
+import com.reactivespring.client.ReviewsRestClient;
+import com.reactivespring.domain.ChangeType;
+import com.reactivespring.domain.Movie;
+import com.reactivespring.domain.MovieInfo;
+import com.reactivespring.domain.MovieInfoChange;
+import com.reactivespring.domain.Review;
+import com.reactivespring.domain.ReviewChange;
+import com.reactivespring.exception.MoviesInfoServerException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+class MovieStreamTest {
+
+    MoviesInfoRestClient moviesInfoRestClient = mock(MoviesInfoRestClient.class);
+
+    ReviewsRestClient reviewsRestClient = mock(ReviewsRestClient.class);
+
+    MovieCache movieCache = mock(MovieCache.class);
+
+    SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    // at most 2 recent movies, reconnects after 10ms
+    MovieStream movieStream = new MovieStream(moviesInfoRestClient, reviewsRestClient, movieCache, 2, 100, 256,
+            Duration.ofMinutes(10), Duration.ofMillis(10), Duration.ofMillis(50), Duration.ofSeconds(10), true, meterRegistry);
+
+    Sinks.Many<MovieInfoChange> movieInfos = Sinks.many().unicast().onBackpressureBuffer();
+
+    Sinks.Many<ReviewChange> reviews = Sinks.many().unicast().onBackpressureBuffer();
+
+    @BeforeEach
+    void setUp() {
+        when(moviesInfoRestClient.streamMovieInfoChanges(any())).thenReturn(movieInfos.asFlux());
+        when(reviewsRestClient.streamReviews(any())).thenReturn(reviews.asFlux());
+    }
+
+    @Test
+    void stream_joinsInfoAndReviews() {
+        when(movieCache.get("1")).thenReturn(Mono.just(new Movie(movieInfo("1", "Batman Begins"), List.of(review("1", 1L)))));
+
+        StepVerifier.create(movieStream.stream())
+                .then(() -> movieInfos.tryEmitNext(added(movieInfo("1", "The Dark Knight"))))
+                .assertNext(movie -> {
+                    assertEquals("The Dark Knight", movie.getMovieInfo().getName());
+                    assertEquals(List.of("1"), reviewIds(movie));
+                })
+                .then(() -> reviews.tryEmitNext(added(review("2", 1L))))
+                .assertNext(movie -> {
+                    assertEquals("The Dark Knight", movie.getMovieInfo().getName());
+                    assertEquals(List.of("1", "2"), reviewIds(movie));
+                })
+                // a review delivered again replaces the one already joined
+                .then(() -> reviews.tryEmitNext(added(review("2", 1L))))
+                .assertNext(movie -> assertEquals(List.of("1", "2"), reviewIds(movie)))
+                .thenCancel()
+                .verify(Duration.ofSeconds(5));
+
+        // read once, then joined in memory
+        verify(movieCache, times(1)).get("1");
+        verify(movieCache, times(3)).invalidate(List.of("1"));
+    }
+
+    @Test
+    void stream_appliesReviewUpdateAndDelete() {
+        when(movieCache.get("1")).thenReturn(Mono.just(new Movie(movieInfo("1", "Batman Begins"),
+                List.of(review("1", 1L), review("2", 1L)))));
+
+        StepVerifier.create(movieStream.stream())
+                .then(() -> reviews.tryEmitNext(new ReviewChange(ChangeType.UPDATED,
+                        new Review("1", 1L, "Not an Awesome Movie", 8.0))))
+                .assertNext(movie -> {
+                    assertEquals(List.of("2", "1"), reviewIds(movie));
+                    assertEquals(8.0, movie.getReviewList().get(1).getRating());
+                })
+                .then(() -> reviews.tryEmitNext(new ReviewChange(ChangeType.REMOVED, review("2", 1L))))
+                .assertNext(movie -> assertEquals(List.of("1"), reviewIds(movie)))
+                .thenCancel()
+                .verify(Duration.ofSeconds(5));
+
+        verify(movieCache, times(1)).get("1");
+        verify(movieCache, times(2)).invalidate(List.of("1"));
+    }
+
+    @Test
+    void stream_emitsRemovedMovie() {
+        when(movieCache.get(any())).thenReturn(Mono.empty());
+
+        StepVerifier.create(movieStream.stream())
+                .then(() -> movieInfos.tryEmitNext(added(movieInfo("1", "Batman Begins"))))
+                .expectNextCount(1)
+                .then(() -> movieInfos.tryEmitNext(new MovieInfoChange(ChangeType.REMOVED,
+                        new MovieInfo("1", null, null, null, null))))
+                .assertNext(movie -> {
+                    assertTrue(movie.isRemoved());
+                    assertEquals("1", movie.getMovieInfo().getMovieInfoId());
+                    assertEquals(List.of(), movie.getReviewList());
+                })
+                .thenCancel()
+                .verify(Duration.ofSeconds(5));
+
+        // the deleted movie is neither read nor handed to late joiners
+        verify(movieCache, times(1)).get("1");
+        verify(movieCache, times(2)).invalidate(List.of("1"));
+        assertEquals(0, movieStream.size());
+    }
+
+    @Test
+    void stream_lateJoinerGetsRecentMovies() {
+        when(movieCache.get(any())).thenReturn(Mono.empty());
+        var first = movieStream.stream().subscribe();
+        try {
+            movieInfos.tryEmitNext(added(movieInfo("1", "Batman Begins")));
+            movieInfos.tryEmitNext(added(movieInfo("2", "The Dark Knight")));
+            movieInfos.tryEmitNext(added(movieInfo("3", "Dark Knight Rises")));
+
+            // the oldest movie is no longer held
+            StepVerifier.create(movieStream.stream())
+                    .assertNext(movie -> assertEquals("2", movie.getMovieInfo().getMovieInfoId()))
+                    .assertNext(movie -> {
+                        assertEquals("3", movie.getMovieInfo().getMovieInfoId());
+                        assertTrue(movie.isReviewsUnavailable());
+                    })
+                    .thenCancel()
+                    .verify(Duration.ofSeconds(5));
+
+            assertEquals(2, movieStream.size());
+        } finally {
+            first.dispose();
+        }
+    }
+
+    @Test
+    void stream_reconnectsAfterUpstreamRestart() {
+        Sinks.Many<MovieInfoChange> restarted = Sinks.many().unicast().onBackpressureBuffer();
+        when(moviesInfoRestClient.streamMovieInfoChanges(any()))
+                .thenReturn(movieInfos.asFlux())
+                .thenReturn(restarted.asFlux());
+        when(movieCache.get("1")).thenReturn(Mono.just(new Movie(movieInfo("1", "Batman Begins"), List.of())));
+
+        StepVerifier.create(movieStream.stream())
+                .then(() -> movieInfos.tryEmitNext(added(movieInfo("1", "Batman Begins"))))
+                .expectNextCount(1)
+                .then(() -> movieInfos.tryEmitComplete())
+                .then(() -> verify(moviesInfoRestClient, timeout(1000).times(2)).streamMovieInfoChanges(any()))
+                .then(() -> restarted.tryEmitNext(added(movieInfo("1", "The Dark Knight"))))
+                .assertNext(movie -> assertEquals("The Dark Knight", movie.getMovieInfo().getName()))
+                .thenCancel()
+                .verify(Duration.ofSeconds(5));
+
+        // the join state was dropped, so the movie is read again after the gap
+        verify(movieCache, times(2)).get("1");
+        verify(movieCache).invalidateAll();
+        assertEquals(1.0, meterRegistry.counter("movies.stream.upstream.reconnects", "upstream", MovieStream.MOVIES_INFO).count());
+    }
+
+    @Test
+    void stream_retriesFailedUpstream_dropsUnjoinedReview() {
+        Sinks.Many<ReviewChange> retried = Sinks.many().unicast().onBackpressureBuffer();
+        when(reviewsRestClient.streamReviews(any()))
+                .thenReturn(reviews.asFlux())
+                .thenReturn(retried.asFlux());
+        when(movieCache.get("1")).thenReturn(Mono.error(new MoviesInfoServerException("Server Exception in MoviesInfoService")));
+        when(movieCache.get("2")).thenReturn(Mono.just(new Movie(movieInfo("2", "The Dark Knight"), List.of())));
+
+        StepVerifier.create(movieStream.stream())
+                .then(() -> reviews.tryEmitError(new IllegalStateException("connection reset")))
+                .then(() -> verify(reviewsRestClient, timeout(1000).times(2)).streamReviews(any()))
+                // no movie info to join with, the review is skipped
+                .then(() -> retried.tryEmitNext(added(review("1", 1L))))
+                .then(() -> retried.tryEmitNext(added(review("2", 2L))))
+                .assertNext(movie -> {
+                    assertEquals("2", movie.getMovieInfo().getMovieInfoId());
+                    assertEquals(List.of("2"), reviewIds(movie));
+                })
+                .thenCancel()
+                .verify(Duration.ofSeconds(5));
+
+        assertEquals(1.0, meterRegistry.counter("movies.stream.unjoined").count());
+    }
+
+    @Test
+    void start_invalidatesCacheWithoutStreamClients() {
+        when(movieCache.isEnabled()).thenReturn(true);
+        movieStream.start();
+        try {
+            movieInfos.tryEmitNext(added(movieInfo("1", "Batman Begins")));
+            reviews.tryEmitNext(added(review("1", 2L)));
+
+            verify(movieCache, timeout(1000)).invalidate(List.of("1"));
+            verify(movieCache, timeout(1000)).invalidate(List.of("2"));
+            // nothing is joined without a stream client
+            verify(movieCache, never()).get(any());
+            assertEquals(0, movieStream.size());
+        } finally {
+            movieStream.stop();
+        }
+    }
+
+    @Test
+    void start_cacheDisabled() {
+        when(movieCache.isEnabled()).thenReturn(false);
+        movieStream.start();
+
+        verify(moviesInfoRestClient, never()).streamMovieInfoChanges(any());
+        verify(reviewsRestClient, never()).streamReviews(any());
+    }
+
+    private static List<String> reviewIds(Movie movie) {
+        return movie.getReviewList().stream()
+                .map(Review::getReviewId)
+                .collect(Collectors.toList());
+    }
+
+    private static MovieInfoChange added(MovieInfo movieInfo) {
+        return new MovieInfoChange(ChangeType.ADDED, movieInfo);
+    }
+
+    private static ReviewChange added(Review review) {
+        return new ReviewChange(ChangeType.ADDED, review);
+    }
+
+    private static MovieInfo movieInfo(String movieInfoId, String name) {
+        return new MovieInfo(movieInfoId, name, 2005, List.of("Christian Bale"), LocalDate.parse("2005-06-15"));
+    }
+
+    private static Review review(String reviewId, Long movieInfoId) {
+        return new Review(reviewId, movieInfoId, "Awesome Movie", 9.0);
+    }
+}